@@ -0,0 +1,111 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.ops4j.pax.wicket.benchmarks.support.Fixtures;
+import org.ops4j.pax.wicket.benchmarks.support.StubBundle;
+import org.ops4j.pax.wicket.benchmarks.support.StubFramework;
+import org.ops4j.pax.wicket.internal.BundleDelegatingClassResolver;
+import org.ops4j.pax.wicket.internal.DelegatingClassResolver;
+import org.ops4j.pax.wicket.internal.extender.ExtendedBundle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Class resolution through the {@link DelegatingClassResolver} of an application backed by a
+ * {@link BundleDelegatingClassResolver} with <code>bundleCount</code> bundles. The class looked up is contained in
+ * the last bundle added.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.ops4j.pax.logging.DefaultServiceLog.level=WARN")
+@State(Scope.Thread)
+public class ClassResolutionBenchmark {
+
+    private static final int CLASSES_PER_BUNDLE = 10;
+
+    @Param({ "1", "10", "100" })
+    public int bundleCount;
+
+    private BundleDelegatingClassResolver bundleResolver;
+    private DelegatingClassResolver resolver;
+    private ExtendedBundle firstBundle;
+    private String knownClass;
+
+    @Setup
+    public void setup() {
+        StubFramework framework = new StubFramework();
+        StubBundle paxWicket = Fixtures.createBundle(framework, -1, 0);
+        bundleResolver = new BundleDelegatingClassResolver(paxWicket.getBundleContext(), Fixtures.APPLICATION_NAME);
+        bundleResolver.start();
+        for (int i = 0; i < bundleCount; i++) {
+            ExtendedBundle bundle = Fixtures.extend(Fixtures.createBundle(framework, i, CLASSES_PER_BUNDLE),
+                Fixtures.getSyntheticPackageName(i));
+            if (i == 0) {
+                firstBundle = bundle;
+            }
+            bundleResolver.addBundle(bundle);
+        }
+        knownClass = Fixtures.getSyntheticClassName(bundleCount - 1, CLASSES_PER_BUNDLE - 1);
+        resolver = new DelegatingClassResolver(paxWicket.getBundleContext(), Fixtures.APPLICATION_NAME);
+        resolver.intialize();
+    }
+
+    @TearDown
+    public void tearDown() {
+        resolver.dispose();
+        bundleResolver.stop();
+    }
+
+    @Benchmark
+    public Class<?> resolveKnownClass() throws ClassNotFoundException {
+        return resolver.resolveClass(knownClass);
+    }
+
+    @Benchmark
+    public Object resolveUnknownClass() {
+        try {
+            return resolver.resolveClass("benchmark.unknown.Class");
+        } catch (ClassNotFoundException e) {
+            return e;
+        }
+    }
+
+    /**
+     * A lookup right after a bundle of the application changed, so nothing remembered can be used. Includes the
+     * bookkeeping of removing and adding the bundle.
+     */
+    @Benchmark
+    public Class<?> resolveAfterBundleChange() throws ClassNotFoundException {
+        bundleResolver.removeBundle(firstBundle);
+        bundleResolver.addBundle(firstBundle);
+        return resolver.resolveClass(knownClass);
+    }
+}
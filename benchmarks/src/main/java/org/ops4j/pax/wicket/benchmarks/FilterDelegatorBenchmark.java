@@ -0,0 +1,164 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.benchmarks;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServlet;
+
+import org.apache.wicket.protocol.http.mock.MockHttpServletRequest;
+import org.apache.wicket.protocol.http.mock.MockHttpServletResponse;
+import org.apache.wicket.protocol.http.mock.MockServletContext;
+import org.ops4j.pax.wicket.api.ConfigurableFilterConfig;
+import org.ops4j.pax.wicket.api.Constants;
+import org.ops4j.pax.wicket.api.FilterFactory;
+import org.ops4j.pax.wicket.benchmarks.support.Fixtures;
+import org.ops4j.pax.wicket.benchmarks.support.StubBundle;
+import org.ops4j.pax.wicket.benchmarks.support.StubFramework;
+import org.ops4j.pax.wicket.internal.filter.FilterDelegator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A request passing the {@link FilterDelegator} of an application with <code>filterCount</code> registered
+ * {@link FilterFactory}s whose filters just continue the chain, ending in a servlet doing nothing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.ops4j.pax.logging.DefaultServiceLog.level=WARN")
+@State(Scope.Thread)
+public class FilterDelegatorBenchmark {
+
+    @Param({ "0", "1", "10" })
+    public int filterCount;
+
+    private FilterDelegator delegator;
+    private Filter[] superFilter;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setup() throws ServletException {
+        StubFramework framework = new StubFramework();
+        StubBundle bundle = Fixtures.createBundle(framework, 0, 0);
+        for (int i = 0; i < filterCount; i++) {
+            Hashtable<String, Object> properties = new Hashtable<>();
+            properties.put(Constants.APPLICATION_NAME, Fixtures.APPLICATION_NAME);
+            properties.put(FilterFactory.FILTER_PRIORITY, i);
+            bundle.getBundleContext().registerService(FilterFactory.class, new PassThroughFilterFactory(),
+                properties);
+        }
+        final MockServletContext servletContext = new MockServletContext(null, null);
+        HttpServlet servlet = new NoOpServlet();
+        servlet.init(new ServletConfig() {
+            @Override
+            public String getServletName() {
+                return "benchmark";
+            }
+
+            @Override
+            public ServletContext getServletContext() {
+                return servletContext;
+            }
+
+            @Override
+            public String getInitParameter(String name) {
+                return null;
+            }
+
+            @Override
+            public Enumeration<String> getInitParameterNames() {
+                return Collections.emptyEnumeration();
+            }
+        });
+        delegator = new FilterDelegator(bundle.getBundleContext(), Fixtures.APPLICATION_NAME);
+        delegator.setServlet(servlet);
+        delegator.start();
+        superFilter = new Filter[0];
+        request = new MockHttpServletRequest(null, null, servletContext);
+        request.setURL("/app/page");
+        response = new MockHttpServletResponse(request);
+    }
+
+    @TearDown
+    public void tearDown() {
+        delegator.stop();
+    }
+
+    @Benchmark
+    public Object doFilter() throws ServletException, IOException {
+        delegator.doFilter(superFilter, request, response);
+        return response;
+    }
+
+    private static final class PassThroughFilterFactory implements FilterFactory {
+
+        @Override
+        public Filter createFilter(ConfigurableFilterConfig filterConfig) {
+            return new PassThroughFilter();
+        }
+    }
+
+    private static final class PassThroughFilter implements Filter {
+
+        @Override
+        public void init(FilterConfig filterConfig) {
+        }
+
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+            chain.doFilter(request, response);
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+
+    private static final class NoOpServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void service(ServletRequest req, ServletResponse res) {
+        }
+    }
+}
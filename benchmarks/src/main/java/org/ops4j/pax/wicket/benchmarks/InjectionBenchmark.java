@@ -0,0 +1,168 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.benchmarks;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.ops4j.pax.wicket.api.PaxWicketBeanInjectionSource;
+import org.ops4j.pax.wicket.benchmarks.support.Fixtures;
+import org.ops4j.pax.wicket.benchmarks.support.Greeter;
+import org.ops4j.pax.wicket.benchmarks.support.StubBundle;
+import org.ops4j.pax.wicket.benchmarks.support.StubFramework;
+import org.ops4j.pax.wicket.internal.injection.BundleAnalysingComponentInstantiationListener;
+import org.ops4j.pax.wicket.internal.injection.BundleDelegatingComponentInstanciationListener;
+import org.ops4j.pax.wicket.spi.ProxyTargetLocatorFactory;
+import org.ops4j.pax.wicket.spi.support.DelegatingComponentInstanciationListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.util.tracker.ServiceTracker;
+
+/**
+ * Injection of a component with two service fields. The component class is contained in the last of
+ * <code>bundleCount</code> application bundles, each containing <code>classCount</code> classes, so the delegating
+ * listener has to find the right bundle first. With <code>sharedProxies</code> all components get the same proxies.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.ops4j.pax.logging.DefaultServiceLog.level=WARN")
+@State(Scope.Thread)
+public class InjectionBenchmark {
+
+    @Param({ "1", "10", "100" })
+    public int bundleCount;
+
+    @Param({ "10", "1000" })
+    public int classCount;
+
+    @Param({ "false", "true" })
+    public boolean sharedProxies;
+
+    private DelegatingComponentInstanciationListener applicationListener;
+    private BundleDelegatingComponentInstanciationListener delegatingListener;
+    private BundleAnalysingComponentInstantiationListener analysingListener;
+    private ServiceTracker<ProxyTargetLocatorFactory, ProxyTargetLocatorFactory> factoryTracker;
+
+    @Setup
+    public void setup() {
+        StubFramework framework = new StubFramework();
+        framework.setProperty(BundleAnalysingComponentInstantiationListener.SHARED_PROXIES_PROPERTY,
+            String.valueOf(sharedProxies));
+        StubBundle paxWicket = framework.createBundle("org.ops4j.pax.wicket.service",
+            Collections.<String, Class<?>> emptyMap());
+        Fixtures.registerServiceRegistryInjection(paxWicket);
+        Fixtures.registerGreeters(paxWicket, 1);
+
+        delegatingListener = new BundleDelegatingComponentInstanciationListener(paxWicket.getBundleContext(),
+            Fixtures.APPLICATION_NAME);
+        delegatingListener.start();
+        StubBundle bundle = null;
+        for (int i = 0; i < bundleCount; i++) {
+            bundle = i == bundleCount - 1
+                    ? Fixtures.createBundle(framework, i, classCount, InjectedComponent.class)
+                    : Fixtures.createBundle(framework, i, classCount);
+            delegatingListener.addBundle(Fixtures.extend(bundle));
+        }
+
+        applicationListener = new DelegatingComponentInstanciationListener(paxWicket.getBundleContext(),
+            Fixtures.APPLICATION_NAME);
+        applicationListener.intialize();
+
+        factoryTracker = new ServiceTracker<>(paxWicket.getBundleContext(), ProxyTargetLocatorFactory.class, null);
+        factoryTracker.open();
+        analysingListener = new BundleAnalysingComponentInstantiationListener(bundle.getBundleContext(),
+            PaxWicketBeanInjectionSource.INJECTION_SOURCE_SCAN, factoryTracker);
+    }
+
+    @TearDown
+    public void tearDown() {
+        factoryTracker.close();
+        applicationListener.dispose();
+        delegatingListener.stop();
+    }
+
+    /**
+     * Injection as done by the application for every component instantiated, walking the class hierarchy of the
+     * component and selecting an injector for each level
+     */
+    @Benchmark
+    public Object injectByApplication() {
+        InjectedComponent component = new InjectedComponent();
+        applicationListener.inject(component, InjectedComponent.class);
+        return component;
+    }
+
+    /**
+     * Injection as done for every component instantiated, including the search for the bundle of the component
+     */
+    @Benchmark
+    public Object inject() {
+        InjectedComponent component = new InjectedComponent();
+        delegatingListener.inject(component, InjectedComponent.class);
+        return component;
+    }
+
+    /**
+     * Injection by the listener of the bundle containing the component
+     */
+    @Benchmark
+    public Object injectByBundle() {
+        InjectedComponent component = new InjectedComponent();
+        analysingListener.inject(component, InjectedComponent.class);
+        return component;
+    }
+
+    @Benchmark
+    public boolean injectionPossible() {
+        return analysingListener.injectionPossible(InjectedComponent.class);
+    }
+
+    @Benchmark
+    public boolean injectionNotPossible() {
+        return analysingListener.injectionPossible(InjectionBenchmark.class);
+    }
+
+    public static class InjectedComponent {
+
+        @Inject
+        private Greeter greeter;
+
+        @Inject
+        private Greeter otherGreeter;
+
+        public Greeter getGreeter() {
+            return greeter;
+        }
+
+        public Greeter getOtherGreeter() {
+            return otherGreeter;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.benchmarks;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.ops4j.pax.wicket.benchmarks.InjectionBenchmark.InjectedComponent;
+import org.ops4j.pax.wicket.benchmarks.support.Fixtures;
+import org.ops4j.pax.wicket.benchmarks.support.StubBundle;
+import org.ops4j.pax.wicket.benchmarks.support.StubFramework;
+import org.ops4j.pax.wicket.internal.extender.ExtendedBundle;
+import org.ops4j.pax.wicket.internal.injection.BundleDelegatingComponentInstanciationListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Injection of components by several request threads sharing one application, as happens while pages are constructed
+ * concurrently. The component class is contained in the last of <code>bundleCount</code> application bundles. The
+ * <code>churn</code> group additionally adds and removes another bundle all the time, as the extender does while
+ * bundles are (re)started. Use <code>-t</code> to change the number of threads of the <code>inject</code> benchmark.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.ops4j.pax.logging.DefaultServiceLog.level=WARN")
+@State(Scope.Benchmark)
+public class InjectionContentionBenchmark {
+
+    @Param({ "1", "10" })
+    public int bundleCount;
+
+    private BundleDelegatingComponentInstanciationListener delegatingListener;
+    private ExtendedBundle changingBundle;
+
+    @Setup
+    public void setup() {
+        StubFramework framework = new StubFramework();
+        StubBundle paxWicket = framework.createBundle("org.ops4j.pax.wicket.service",
+            Collections.<String, Class<?>> emptyMap());
+        Fixtures.registerServiceRegistryInjection(paxWicket);
+        Fixtures.registerGreeters(paxWicket, 1);
+
+        delegatingListener = new BundleDelegatingComponentInstanciationListener(paxWicket.getBundleContext(),
+            Fixtures.APPLICATION_NAME);
+        delegatingListener.start();
+        for (int i = 0; i < bundleCount; i++) {
+            StubBundle bundle = i == bundleCount - 1
+                    ? Fixtures.createBundle(framework, i, 100, InjectedComponent.class)
+                    : Fixtures.createBundle(framework, i, 100);
+            delegatingListener.addBundle(Fixtures.extend(bundle));
+        }
+        changingBundle = Fixtures.extend(Fixtures.createBundle(framework, bundleCount, 100));
+    }
+
+    @TearDown
+    public void tearDown() {
+        delegatingListener.stop();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object inject() {
+        InjectedComponent component = new InjectedComponent();
+        delegatingListener.inject(component, InjectedComponent.class);
+        return component;
+    }
+
+    @Benchmark
+    @Group("churn")
+    @GroupThreads(7)
+    public Object injectWhileBundlesChange() {
+        return inject();
+    }
+
+    @Benchmark
+    @Group("churn")
+    @GroupThreads(1)
+    public void changeBundles() {
+        delegatingListener.addBundle(changingBundle);
+        delegatingListener.removeBundle(changingBundle);
+    }
+}
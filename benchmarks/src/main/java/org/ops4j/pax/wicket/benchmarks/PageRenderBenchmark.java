@@ -0,0 +1,197 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.benchmarks;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import net.sf.cglib.proxy.Callback;
+import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.proxy.MethodInterceptor;
+
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.ThreadContext;
+import org.apache.wicket.core.util.string.ComponentRenderer;
+import org.apache.wicket.markup.IMarkupCacheKeyProvider;
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.protocol.http.mock.MockServletContext;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.ops4j.pax.wicket.benchmarks.support.Fixtures;
+import org.ops4j.pax.wicket.benchmarks.support.StubFramework;
+import org.ops4j.pax.wicket.spi.support.ComponentProxy;
+import org.ops4j.pax.wicket.spi.support.PageFactoryDecorator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Creation and rendering of a page with <code>depth</code> nested containers holding <code>width</code> labels each.
+ * The page is either created directly (<code>plain</code>), by a {@link PageFactoryDecorator} (<code>decorated</code>)
+ * or as subclass routing every method through a {@link ComponentProxy} (<code>intercepted</code>), the way decorated
+ * pages used to be generated.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.ops4j.pax.logging.DefaultServiceLog.level=WARN")
+@State(Scope.Thread)
+public class PageRenderBenchmark {
+
+    @Param({ "10", "50" })
+    public int depth;
+
+    @Param({ "5" })
+    public int width;
+
+    @Param({ "plain", "decorated", "intercepted" })
+    public String page;
+
+    private MockApplication application;
+    private ComponentRenderer renderer;
+    private PageFactoryDecorator decorator;
+    private Supplier<WebPage> pageSupplier;
+
+    @Setup
+    public void setup() throws Exception {
+        application = new MockApplication();
+        application.setName(PageRenderBenchmark.class.getSimpleName());
+        application.setServletContext(new MockServletContext(application, null));
+        ThreadContext.setApplication(application);
+        application.initApplication();
+        renderer = new ComponentRenderer(application);
+
+        final PageParameters parameters = new PageParameters().set("depth", depth).set("width", width);
+        if ("plain".equals(page)) {
+            pageSupplier = () -> new DeepPage(parameters);
+        } else if ("decorated".equals(page)) {
+            StubFramework framework = new StubFramework();
+            decorator = new PageFactoryDecorator();
+            decorator.setBundleContext(Fixtures.createBundle(framework, 0, 0).getBundleContext());
+            decorator.setApplicationName(Fixtures.APPLICATION_NAME);
+            decorator.setPageId("deepPage");
+            decorator.setPageName("deepPage");
+            decorator.setPageClass(castPageClass(DeepPage.class));
+            decorator.start();
+            pageSupplier = () -> decorator.createPage(parameters);
+        } else {
+            pageSupplier = createInterceptedPageSupplier(parameters);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (decorator != null) {
+            decorator.stop();
+        }
+        renderer.destroy();
+        application.internalDestroy();
+        ThreadContext.detach();
+    }
+
+    @Benchmark
+    public CharSequence render() {
+        return renderer.renderPage(pageSupplier);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<WebPage> castPageClass(Class<? extends WebPage> pageClass) {
+        return (Class<WebPage>) pageClass;
+    }
+
+    private static Supplier<WebPage> createInterceptedPageSupplier(final PageParameters parameters) throws Exception {
+        Enhancer enhancer = new Enhancer();
+        enhancer.setSuperclass(DeepPage.class);
+        enhancer.setCallbackType(MethodInterceptor.class);
+        Class<?> enhancedClass = enhancer.createClass();
+        final Method setThreadCallbacks = enhancedClass.getDeclaredMethod("CGLIB$SET_THREAD_CALLBACKS",
+            Callback[].class);
+        final Constructor<?> constructor = enhancedClass.getConstructor(PageParameters.class);
+        final Callback[] callbacks = { new ComponentProxy(null, null) };
+        return () -> {
+            try {
+                setThreadCallbacks.invoke(null, (Object) callbacks);
+                try {
+                    return (WebPage) constructor.newInstance(parameters);
+                } finally {
+                    setThreadCallbacks.invoke(null, (Object) null);
+                }
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    public static class DeepPage extends WebPage implements IMarkupResourceStreamProvider, IMarkupCacheKeyProvider {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int depth;
+        private final int width;
+
+        public DeepPage(PageParameters parameters) {
+            super(parameters);
+            depth = parameters.get("depth").toInt();
+            width = parameters.get("width").toInt();
+            MarkupContainer parent = this;
+            for (int i = 0; i < depth; i++) {
+                WebMarkupContainer container = new WebMarkupContainer("c");
+                parent.add(container);
+                for (int j = 0; j < width; j++) {
+                    container.add(new Label("l" + j, "label " + i + "." + j));
+                }
+                parent = container;
+            }
+        }
+
+        @Override
+        public IResourceStream getMarkupResourceStream(MarkupContainer container, Class<?> containerClass) {
+            StringBuilder markup = new StringBuilder("<html><body>");
+            for (int i = 0; i < depth; i++) {
+                markup.append("<div wicket:id=\"c\">");
+                for (int j = 0; j < width; j++) {
+                    markup.append("<span wicket:id=\"l").append(j).append("\"></span>");
+                }
+            }
+            for (int i = 0; i < depth; i++) {
+                markup.append("</div>");
+            }
+            return new StringResourceStream(markup.append("</body></html>"));
+        }
+
+        @Override
+        public String getCacheKey(MarkupContainer container, Class<?> containerClass) {
+            return containerClass.getName() + "_" + depth + "x" + width;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.benchmarks;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wicket.ThreadContext;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.protocol.http.mock.MockServletContext;
+import org.ops4j.pax.wicket.benchmarks.support.Greeter;
+import org.ops4j.pax.wicket.benchmarks.support.GreeterLocator;
+import org.ops4j.pax.wicket.benchmarks.support.SimpleGreeter;
+import org.ops4j.pax.wicket.util.proxy.LazyInitProxyFactory;
+import org.ops4j.pax.wicket.util.serialization.PaxWicketSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Restore of a stored page holding <code>proxyCount</code> injected proxies of the same field, as done on every back
+ * button or ajax request to an older page. All proxies share their locator, so the time is dominated by recreating
+ * the proxies rather than by reading their locators.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.ops4j.pax.logging.DefaultServiceLog.level=WARN")
+@State(Scope.Thread)
+public class PageRestoreBenchmark {
+
+    @Param({ "100", "500" })
+    public int proxyCount;
+
+    @Param({ "interface", "class" })
+    public String proxyType;
+
+    private MockApplication application;
+    private PaxWicketSerializer serializer;
+    private byte[] serialized;
+
+    @Setup
+    public void setup() {
+        application = new MockApplication();
+        application.setName(PageRestoreBenchmark.class.getSimpleName());
+        application.setServletContext(new MockServletContext(application, null));
+        ThreadContext.setApplication(application);
+        application.initApplication();
+        serializer = new PaxWicketSerializer(application.getApplicationKey());
+        Class<?> type = "interface".equals(proxyType) ? Greeter.class : SimpleGreeter.class;
+        GreeterLocator locator = new GreeterLocator("Hello", StoredPage.class);
+        StoredPage page = new StoredPage();
+        for (int i = 0; i < proxyCount; i++) {
+            page.proxies.add((Greeter) LazyInitProxyFactory.createProxy(type, locator));
+        }
+        serialized = serializer.serialize(page);
+    }
+
+    @TearDown
+    public void tearDown() {
+        application.internalDestroy();
+        ThreadContext.detach();
+    }
+
+    @Benchmark
+    public Object restore() {
+        return serializer.deserialize(serialized);
+    }
+
+    public static class StoredPage implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Greeter> proxies = new ArrayList<>();
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.benchmarks;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.ops4j.pax.wicket.benchmarks.support.Fixtures;
+import org.ops4j.pax.wicket.benchmarks.support.Greeter;
+import org.ops4j.pax.wicket.benchmarks.support.SimpleGreeter;
+import org.ops4j.pax.wicket.benchmarks.support.StubBundle;
+import org.ops4j.pax.wicket.benchmarks.support.StubFramework;
+import org.ops4j.pax.wicket.internal.injection.registry.OSGiServiceRegistryProxyTargetLocator;
+import org.ops4j.pax.wicket.util.proxy.LazyInitProxyFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Creation of lazy init proxies and calls through them to a service located by an
+ * {@link OSGiServiceRegistryProxyTargetLocator} among <code>serviceCount</code> registered services, both with the
+ * classic lookup per call and with tracked services.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.ops4j.pax.logging.DefaultServiceLog.level=WARN")
+@State(Scope.Thread)
+public class ProxyBenchmark {
+
+    @Param({ "1", "10", "100" })
+    public int serviceCount;
+
+    @Param({ "false", "true" })
+    public boolean trackServices;
+
+    private OSGiServiceRegistryProxyTargetLocator locator;
+    private Greeter direct;
+    private Greeter interfaceProxy;
+    private Greeter classProxy;
+
+    @Setup
+    public void setup() {
+        StubFramework framework = new StubFramework();
+        framework.setProperty(OSGiServiceRegistryProxyTargetLocator.TRACK_SERVICES_PROPERTY,
+            String.valueOf(trackServices));
+        StubBundle bundle = framework.createBundle("benchmark.services", Collections.<String, Class<?>> emptyMap());
+        Fixtures.registerGreeters(bundle, serviceCount);
+
+        direct = new SimpleGreeter();
+        locator = new OSGiServiceRegistryProxyTargetLocator(bundle.getBundleContext(), null, Greeter.class,
+            ProxyBenchmark.class);
+        interfaceProxy = (Greeter) LazyInitProxyFactory.createProxy(Greeter.class, locator);
+        classProxy = (Greeter) LazyInitProxyFactory.createProxy(SimpleGreeter.class, locator);
+    }
+
+    /**
+     * Baseline without any proxy
+     */
+    @Benchmark
+    public String directCall() {
+        return direct.greet("world");
+    }
+
+    @Benchmark
+    public String interfaceProxyCall() {
+        return interfaceProxy.greet("world");
+    }
+
+    @Benchmark
+    public String classProxyCall() {
+        return classProxy.greet("world");
+    }
+
+    /**
+     * Creation as done for every injected interface field
+     */
+    @Benchmark
+    public Object createInterfaceProxy() {
+        return LazyInitProxyFactory.createProxy(Greeter.class, locator);
+    }
+
+    /**
+     * Creation as done for every injected class field
+     */
+    @Benchmark
+    public Object createClassProxy() {
+        return LazyInitProxyFactory.createProxy(SimpleGreeter.class, locator);
+    }
+}
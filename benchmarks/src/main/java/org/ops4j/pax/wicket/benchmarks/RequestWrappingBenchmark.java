@@ -0,0 +1,130 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.wicket.protocol.http.mock.MockHttpServletRequest;
+import org.apache.wicket.protocol.http.mock.MockServletContext;
+import org.ops4j.pax.wicket.internal.servlet.MountPointServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the {@link MountPointServletRequest} with the reflective {@link Proxy} based request rewriting used before,
+ * both for creating the wrapper and for the accessors wicket calls on every request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RequestWrappingBenchmark {
+
+    private HttpServletRequest request;
+    private HttpServletRequest proxyRequest;
+    private HttpServletRequest wrappedRequest;
+
+    @Setup
+    public void setup() {
+        MockServletContext context = new MockServletContext(null, null);
+        MockHttpServletRequest mock = new MockHttpServletRequest(null, null, context);
+        mock.setURL("/app/page");
+        mock.addHeader("Accept", "text/html");
+        mock.setParameter("id", "42");
+        mock.setAttribute("attribute", "value");
+        request = mock;
+        proxyRequest = newProxyRequest(request);
+        wrappedRequest = new MountPointServletRequest(request);
+    }
+
+    @Benchmark
+    public Object createProxy() {
+        return newProxyRequest(request);
+    }
+
+    @Benchmark
+    public Object createWrapper() {
+        return new MountPointServletRequest(request);
+    }
+
+    @Benchmark
+    public void accessorsProxy(Blackhole blackhole) {
+        access(proxyRequest, blackhole);
+    }
+
+    @Benchmark
+    public void accessorsWrapper(Blackhole blackhole) {
+        access(wrappedRequest, blackhole);
+    }
+
+    private static void access(HttpServletRequest request, Blackhole blackhole) {
+        blackhole.consume(request.getHeader("Accept"));
+        blackhole.consume(request.getParameter("id"));
+        blackhole.consume(request.getAttribute("attribute"));
+        blackhole.consume(request.getContextPath());
+        blackhole.consume(request.getServletPath());
+        blackhole.consume(request.getPathInfo());
+        blackhole.consume(request.getRequestURI());
+    }
+
+    private static HttpServletRequest newProxyRequest(HttpServletRequest request) {
+        return (HttpServletRequest) Proxy.newProxyInstance(RequestWrappingBenchmark.class.getClassLoader(),
+            new Class<?>[]{ HttpServletRequest.class }, new RootMountPointInvocationHandler(request));
+    }
+
+    /**
+     * The invocation handler formerly used by pax wicket for applications mounted at the root
+     */
+    private static final class RootMountPointInvocationHandler implements InvocationHandler {
+
+        private final HttpServletRequest request;
+
+        private RootMountPointInvocationHandler(HttpServletRequest request) {
+            this.request = request;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] arguments) throws Throwable {
+            try {
+                String methodName = method.getName();
+                if ("getContextPath".equals(methodName) || "getServletPath".equals(methodName)) {
+                    return "";
+                } else if ("getPathInfo".equals(methodName)) {
+                    return request.getServletPath();
+                }
+                return method.invoke(request, arguments);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.benchmarks;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wicket.ThreadContext;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.protocol.http.mock.MockServletContext;
+import org.ops4j.pax.wicket.benchmarks.support.Greeter;
+import org.ops4j.pax.wicket.benchmarks.support.GreeterLocator;
+import org.ops4j.pax.wicket.benchmarks.support.SimpleGreeter;
+import org.ops4j.pax.wicket.util.proxy.LazyInitProxyFactory;
+import org.ops4j.pax.wicket.util.serialization.PaxWicketSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serialization of a page-like object graph holding <code>proxyCount</code> injected proxies, half of them interface
+ * and half of them class based, with the {@link PaxWicketSerializer} as wicket does for every stored page, in default
+ * and in compact mode.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.ops4j.pax.logging.DefaultServiceLog.level=WARN")
+@State(Scope.Thread)
+public class SerializerBenchmark {
+
+    @Param({ "1", "10", "100" })
+    public int proxyCount;
+
+    @Param({ "false", "true" })
+    public boolean compact;
+
+    private MockApplication application;
+    private PaxWicketSerializer serializer;
+    private ProxyHolder holder;
+    private byte[] serialized;
+
+    @Setup
+    public void setup() {
+        // the serializer needs the class resolver of the application bound to the benchmark thread
+        application = new MockApplication();
+        application.setName(SerializerBenchmark.class.getSimpleName());
+        application.setServletContext(new MockServletContext(application, null));
+        ThreadContext.setApplication(application);
+        application.initApplication();
+        serializer = new PaxWicketSerializer(application.getApplicationKey(), compact);
+        holder = new ProxyHolder();
+        for (int i = 0; i < proxyCount; i++) {
+            GreeterLocator locator = new GreeterLocator("Hello " + i, ProxyHolder.class);
+            Class<?> type = i % 2 == 0 ? Greeter.class : SimpleGreeter.class;
+            holder.proxies.add((Greeter) LazyInitProxyFactory.createProxy(type, locator));
+            holder.labels.add("label " + i);
+        }
+        serialized = serializer.serialize(holder);
+    }
+
+    @TearDown
+    public void tearDown() {
+        application.internalDestroy();
+        ThreadContext.detach();
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(holder);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(serialized);
+    }
+
+    @Benchmark
+    public Object roundTrip() {
+        return serializer.deserialize(serializer.serialize(holder));
+    }
+
+    public static class ProxyHolder implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Greeter> proxies = new ArrayList<>();
+
+        private final List<String> labels = new ArrayList<>();
+    }
+}
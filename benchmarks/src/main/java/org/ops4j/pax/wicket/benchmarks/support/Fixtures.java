@@ -0,0 +1,123 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.benchmarks.support;
+
+import java.util.Arrays;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Set;
+
+import org.ops4j.pax.wicket.internal.extender.ExtendedBundle;
+import org.ops4j.pax.wicket.internal.injection.registry.OSGiServiceRegistryProxyTargetLocatorFactory;
+import org.ops4j.pax.wicket.spi.ProxyTargetLocatorFactory;
+import org.osgi.framework.Constants;
+
+/**
+ * Helpers to populate a {@link StubFramework} the way the benchmarks need it
+ */
+public final class Fixtures {
+
+    /** Application name used by all benchmarks */
+    public static final String APPLICATION_NAME = "benchmark";
+
+    private Fixtures() {
+    }
+
+    /**
+     * Creates a bundle with the given number of synthetic classes in its own package. All synthetic names load
+     * {@link Object}, the additional classes load themselves.
+     *
+     * @param framework the framework to create the bundle in
+     * @param index used to make symbolic name and package unique
+     * @param classCount number of synthetic classes
+     * @param additional real classes the bundle contains as well
+     * @return the bundle
+     */
+    public static StubBundle createBundle(StubFramework framework, int index, int classCount,
+            Class<?>... additional) {
+        Map<String, Class<?>> classes = new HashMap<>();
+        for (int i = 0; i < classCount; i++) {
+            classes.put(getSyntheticClassName(index, i), Object.class);
+        }
+        for (Class<?> clazz : additional) {
+            classes.put(clazz.getName(), clazz);
+        }
+        return framework.createBundle("benchmark.bundle" + index, classes);
+    }
+
+    /**
+     * @param bundleIndex the index passed to {@link #createBundle}
+     * @param classIndex the index of the class within the bundle
+     * @return the name of a synthetic class
+     */
+    public static String getSyntheticClassName(int bundleIndex, int classIndex) {
+        return getSyntheticPackageName(bundleIndex) + ".Class" + classIndex;
+    }
+
+    /**
+     * @param bundleIndex the index passed to {@link #createBundle}
+     * @return the package of the synthetic classes of the bundle
+     */
+    public static String getSyntheticPackageName(int bundleIndex) {
+        return "benchmark.bundle" + bundleIndex;
+    }
+
+    /**
+     * Wraps the bundle as the extender does, the packages of the bundle are taken from its synthetic and additional
+     * classes since stub bundles have no wiring
+     *
+     * @param bundle the bundle
+     * @param packages the packages the bundle provides
+     * @return the extended bundle
+     */
+    public static ExtendedBundle extend(StubBundle bundle, final String... packages) {
+        return new ExtendedBundle(null, bundle) {
+            private final Set<String> provided = new HashSet<>(Arrays.asList(packages));
+
+            @Override
+            public Set<String> getPackages() {
+                return provided;
+            }
+        };
+    }
+
+    /**
+     * Registers the service registry {@link ProxyTargetLocatorFactory} used for <code>@Inject</code> fields
+     *
+     * @param bundle the registering bundle
+     */
+    public static void registerServiceRegistryInjection(StubBundle bundle) {
+        bundle.getBundleContext().registerService(ProxyTargetLocatorFactory.class,
+            new OSGiServiceRegistryProxyTargetLocatorFactory(), null);
+    }
+
+    /**
+     * Registers <code>count</code> {@link Greeter}s with increasing service ranking
+     *
+     * @param bundle the registering bundle
+     * @param count number of services
+     */
+    public static void registerGreeters(StubBundle bundle, int count) {
+        for (int i = 0; i < count; i++) {
+            Dictionary<String, Object> properties = new Hashtable<>();
+            properties.put(Constants.SERVICE_RANKING, i);
+            bundle.getBundleContext().registerService(Greeter.class, new SimpleGreeter("Hello " + i), properties);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.benchmarks.support;
+
+import org.ops4j.pax.wicket.spi.ProxyTarget;
+import org.ops4j.pax.wicket.spi.ProxyTargetLocator;
+
+/**
+ * A serializable locator creating a new {@link SimpleGreeter} whenever its target is located
+ */
+public final class GreeterLocator implements ProxyTargetLocator {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String greeting;
+    private final Class<?> parent;
+
+    /**
+     * @param greeting the greeting of the located {@link SimpleGreeter}s
+     * @param parent the class holding the proxy
+     */
+    public GreeterLocator(String greeting, Class<?> parent) {
+        this.greeting = greeting;
+        this.parent = parent;
+    }
+
+    @Override
+    public ProxyTarget locateProxyTarget() {
+        final Greeter greeter = new SimpleGreeter(greeting);
+        return new ProxyTarget() {
+            @Override
+            public Object getTarget() {
+                return greeter;
+            }
+        };
+    }
+
+    @Override
+    public Class<?> getParent() {
+        return parent;
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.benchmarks.support;
+
+import java.io.Serializable;
+
+/**
+ * A non final {@link Greeter} implementation, so it can be proxied as a class as well
+ */
+public class SimpleGreeter implements Greeter, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String greeting;
+
+    /**
+     * Required for class based proxies
+     */
+    public SimpleGreeter() {
+        this("Hello");
+    }
+
+    /**
+     * @param greeting the greeting to prepend
+     */
+    public SimpleGreeter(String greeting) {
+        this.greeting = greeting;
+    }
+
+    @Override
+    public String greet(String name) {
+        return greeting;
+    }
+}
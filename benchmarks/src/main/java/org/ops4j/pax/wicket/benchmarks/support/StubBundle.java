@@ -0,0 +1,225 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.benchmarks.support;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.Version;
+
+/**
+ * A bundle of a {@link StubFramework} whose content is a fixed set of class names. Loading one of those names
+ * returns the class it is mapped to, any other name fails with a {@link ClassNotFoundException} just like a bundle
+ * class loader does. Operations not needed by the benchmarks throw an {@link UnsupportedOperationException}.
+ */
+public final class StubBundle implements Bundle {
+
+    private final StubFramework framework;
+    private final long bundleId;
+    private final String symbolicName;
+    private final Map<String, Class<?>> classes;
+    private final StubBundleContext bundleContext;
+
+    StubBundle(StubFramework framework, long bundleId, String symbolicName, Map<String, Class<?>> classes) {
+        this.framework = framework;
+        this.bundleId = bundleId;
+        this.symbolicName = symbolicName;
+        this.classes = new HashMap<>(classes);
+        bundleContext = new StubBundleContext(framework, this);
+    }
+
+    StubFramework getFramework() {
+        return framework;
+    }
+
+    @Override
+    public int getState() {
+        return ACTIVE;
+    }
+
+    @Override
+    public long getBundleId() {
+        return bundleId;
+    }
+
+    @Override
+    public String getSymbolicName() {
+        return symbolicName;
+    }
+
+    @Override
+    public Version getVersion() {
+        return Version.emptyVersion;
+    }
+
+    @Override
+    public String getLocation() {
+        return "stub:" + symbolicName;
+    }
+
+    @Override
+    public BundleContext getBundleContext() {
+        return bundleContext;
+    }
+
+    @Override
+    public Class<?> loadClass(String name) throws ClassNotFoundException {
+        Class<?> clazz = classes.get(name);
+        if (clazz == null) {
+            throw new ClassNotFoundException(name + " not found by " + symbolicName);
+        }
+        return clazz;
+    }
+
+    @Override
+    public Enumeration<URL> findEntries(String path, String filePattern, boolean recurse) {
+        if (!"*.class".equals(filePattern)) {
+            return null;
+        }
+        List<URL> entries = new ArrayList<>(classes.size());
+        for (String name : classes.keySet()) {
+            try {
+                entries.add(new URL("file:/" + name.replace('.', '/') + ".class"));
+            } catch (MalformedURLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return Collections.enumeration(entries);
+    }
+
+    @Override
+    public Enumeration<URL> getResources(String name) {
+        return null;
+    }
+
+    @Override
+    public URL getResource(String name) {
+        return null;
+    }
+
+    @Override
+    public <A> A adapt(Class<A> type) {
+        return null;
+    }
+
+    @Override
+    public int compareTo(Bundle other) {
+        return Long.compare(bundleId, other.getBundleId());
+    }
+
+    @Override
+    public String toString() {
+        return symbolicName + " [" + bundleId + "]";
+    }
+
+    @Override
+    public void start(int options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void start() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void stop(int options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void stop() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void update(InputStream input) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void update() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void uninstall() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Dictionary<String, String> getHeaders() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Dictionary<String, String> getHeaders(String locale) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ServiceReference<?>[] getRegisteredServices() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ServiceReference<?>[] getServicesInUse() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean hasPermission(Object permission) {
+        return true;
+    }
+
+    @Override
+    public Enumeration<String> getEntryPaths(String path) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public URL getEntry(String path) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long getLastModified() {
+        return 0;
+    }
+
+    @Override
+    public Map<X509Certificate, List<X509Certificate>> getSignerCertificates(int signersType) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public File getDataFile(String filename) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.benchmarks.support;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.List;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkListener;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * The context of a {@link StubBundle}, all service operations are delegated to the shared {@link StubFramework}.
+ * Bundle and framework listeners are accepted but never called.
+ */
+public final class StubBundleContext implements BundleContext {
+
+    private final StubFramework framework;
+    private final StubBundle bundle;
+
+    StubBundleContext(StubFramework framework, StubBundle bundle) {
+        this.framework = framework;
+        this.bundle = bundle;
+    }
+
+    @Override
+    public String getProperty(String key) {
+        return framework.getProperty(key);
+    }
+
+    @Override
+    public Bundle getBundle() {
+        return bundle;
+    }
+
+    @Override
+    public void addServiceListener(ServiceListener listener, String filter) throws InvalidSyntaxException {
+        framework.addServiceListener(listener, filter);
+    }
+
+    @Override
+    public void addServiceListener(ServiceListener listener) {
+        try {
+            framework.addServiceListener(listener, null);
+        } catch (InvalidSyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void removeServiceListener(ServiceListener listener) {
+        framework.removeServiceListener(listener);
+    }
+
+    @Override
+    public void addBundleListener(BundleListener listener) {
+    }
+
+    @Override
+    public void removeBundleListener(BundleListener listener) {
+    }
+
+    @Override
+    public void addFrameworkListener(FrameworkListener listener) {
+    }
+
+    @Override
+    public void removeFrameworkListener(FrameworkListener listener) {
+    }
+
+    @Override
+    public ServiceRegistration<?> registerService(String[] clazzes, Object service,
+            Dictionary<String, ?> properties) {
+        return framework.register(bundle, clazzes.clone(), service, properties);
+    }
+
+    @Override
+    public ServiceRegistration<?> registerService(String clazz, Object service, Dictionary<String, ?> properties) {
+        return registerService(new String[]{ clazz }, service, properties);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <S> ServiceRegistration<S> registerService(Class<S> clazz, S service, Dictionary<String, ?> properties) {
+        return (ServiceRegistration<S>) registerService(clazz.getName(), service, properties);
+    }
+
+    @Override
+    public ServiceReference<?>[] getServiceReferences(String clazz, String filter) throws InvalidSyntaxException {
+        return framework.getReferences(clazz, filter);
+    }
+
+    @Override
+    public ServiceReference<?>[] getAllServiceReferences(String clazz, String filter)
+        throws InvalidSyntaxException {
+        return framework.getReferences(clazz, filter);
+    }
+
+    @Override
+    public ServiceReference<?> getServiceReference(String clazz) {
+        try {
+            ServiceReference<?>[] references = framework.getReferences(clazz, null);
+            if (references == null) {
+                return null;
+            }
+            ServiceReference<?> best = references[0];
+            for (ServiceReference<?> reference : references) {
+                if (reference.compareTo(best) > 0) {
+                    best = reference;
+                }
+            }
+            return best;
+        } catch (InvalidSyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <S> ServiceReference<S> getServiceReference(Class<S> clazz) {
+        return (ServiceReference<S>) getServiceReference(clazz.getName());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <S> Collection<ServiceReference<S>> getServiceReferences(Class<S> clazz, String filter)
+        throws InvalidSyntaxException {
+        ServiceReference<?>[] references = framework.getReferences(clazz.getName(), filter);
+        if (references == null) {
+            return Collections.emptyList();
+        }
+        List<ServiceReference<S>> result = new ArrayList<>(references.length);
+        for (ServiceReference<?> reference : references) {
+            result.add((ServiceReference<S>) reference);
+        }
+        return result;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <S> S getService(ServiceReference<S> reference) {
+        return (S) ((StubServiceReference) reference).getService();
+    }
+
+    @Override
+    public boolean ungetService(ServiceReference<?> reference) {
+        return true;
+    }
+
+    @Override
+    public Filter createFilter(String filter) throws InvalidSyntaxException {
+        return FrameworkUtil.createFilter(filter);
+    }
+
+    @Override
+    public Bundle installBundle(String location, InputStream input) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Bundle installBundle(String location) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Bundle getBundle(long id) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Bundle getBundle(String location) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Bundle[] getBundles() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public File getDataFile(String filename) {
+        throw new UnsupportedOperationException();
+    }
+}
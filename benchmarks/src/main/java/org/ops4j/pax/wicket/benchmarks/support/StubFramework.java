@@ -0,0 +1,147 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.benchmarks.support;
+
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.osgi.framework.Constants;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * A minimal in-memory service registry shared by the {@link StubBundleContext}s of a benchmark. It supports just
+ * what pax wicket and the {@link org.osgi.util.tracker.ServiceTracker} use: registering services, filtered lookups
+ * and synchronous service events. Lookups are linear in the number of registered services, as in a real framework
+ * filtering by properties.
+ */
+public final class StubFramework {
+
+    private final Map<String, String> properties = new HashMap<>();
+    private final List<StubServiceRegistration> registrations = new CopyOnWriteArrayList<>();
+    private final List<ListenerEntry> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong nextServiceId = new AtomicLong(1);
+    private final AtomicLong nextBundleId = new AtomicLong(1);
+
+    /**
+     * Sets a framework property as returned by {@link StubBundleContext#getProperty(String)}
+     *
+     * @param key the name of the property
+     * @param value the value of the property
+     */
+    public void setProperty(String key, String value) {
+        properties.put(key, value);
+    }
+
+    String getProperty(String key) {
+        return properties.get(key);
+    }
+
+    /**
+     * Creates a new bundle containing the given classes
+     *
+     * @param symbolicName the symbolic name of the bundle
+     * @param classes class names, each loaded as the class it is mapped to
+     * @return a new {@link StubBundle}
+     */
+    public StubBundle createBundle(String symbolicName, Map<String, Class<?>> classes) {
+        return new StubBundle(this, nextBundleId.getAndIncrement(), symbolicName, classes);
+    }
+
+    StubServiceRegistration register(StubBundle bundle, String[] classes, Object service,
+            Dictionary<String, ?> serviceProperties) {
+        Map<String, Object> props = new HashMap<>();
+        if (serviceProperties != null) {
+            for (Enumeration<String> keys = serviceProperties.keys(); keys.hasMoreElements();) {
+                String key = keys.nextElement();
+                props.put(key, serviceProperties.get(key));
+            }
+        }
+        props.put(Constants.OBJECTCLASS, classes);
+        props.put(Constants.SERVICE_ID, nextServiceId.getAndIncrement());
+        StubServiceRegistration registration = new StubServiceRegistration(this, bundle, service, props);
+        registrations.add(registration);
+        fire(ServiceEvent.REGISTERED, registration.getReference());
+        return registration;
+    }
+
+    void unregister(StubServiceRegistration registration) {
+        if (registrations.remove(registration)) {
+            fire(ServiceEvent.UNREGISTERING, registration.getReference());
+        }
+    }
+
+    void modified(StubServiceRegistration registration) {
+        fire(ServiceEvent.MODIFIED, registration.getReference());
+    }
+
+    ServiceReference<?>[] getReferences(String clazz, String filter) throws InvalidSyntaxException {
+        Filter parsed = filter == null ? null : FrameworkUtil.createFilter(filter);
+        List<ServiceReference<?>> result = new ArrayList<>();
+        for (StubServiceRegistration registration : registrations) {
+            StubServiceReference reference = registration.getReference();
+            if (clazz != null && !reference.hasObjectClass(clazz)) {
+                continue;
+            }
+            if (parsed == null || parsed.match(reference)) {
+                result.add(reference);
+            }
+        }
+        return result.isEmpty() ? null : result.toArray(new ServiceReference<?>[result.size()]);
+    }
+
+    void addServiceListener(ServiceListener listener, String filter) throws InvalidSyntaxException {
+        listeners.add(new ListenerEntry(listener, filter == null ? null : FrameworkUtil.createFilter(filter)));
+    }
+
+    void removeServiceListener(ServiceListener listener) {
+        for (ListenerEntry entry : listeners) {
+            if (entry.listener == listener) {
+                listeners.remove(entry);
+            }
+        }
+    }
+
+    private void fire(int type, StubServiceReference reference) {
+        ServiceEvent event = new ServiceEvent(type, reference);
+        for (ListenerEntry entry : listeners) {
+            if (entry.filter == null || entry.filter.match(reference)) {
+                entry.listener.serviceChanged(event);
+            }
+        }
+    }
+
+    private static final class ListenerEntry {
+
+        private final ServiceListener listener;
+        private final Filter filter;
+
+        private ListenerEntry(ServiceListener listener, Filter filter) {
+            this.listener = listener;
+            this.filter = filter;
+        }
+    }
+}
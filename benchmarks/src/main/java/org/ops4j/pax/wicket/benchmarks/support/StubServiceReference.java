@@ -0,0 +1,101 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.benchmarks.support;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * Reference to a service of a {@link StubFramework}, ordered by service ranking and id like a real framework does
+ */
+final class StubServiceReference implements ServiceReference<Object> {
+
+    private final StubBundle bundle;
+    private final Object service;
+    private final Map<String, Object> properties;
+
+    StubServiceReference(StubBundle bundle, Object service, Map<String, Object> properties) {
+        this.bundle = bundle;
+        this.service = service;
+        this.properties = new ConcurrentHashMap<>(properties);
+    }
+
+    Object getService() {
+        return service;
+    }
+
+    void setProperty(String key, Object value) {
+        if (!Constants.OBJECTCLASS.equals(key) && !Constants.SERVICE_ID.equals(key)) {
+            properties.put(key, value);
+        }
+    }
+
+    boolean hasObjectClass(String clazz) {
+        for (String objectClass : (String[]) properties.get(Constants.OBJECTCLASS)) {
+            if (objectClass.equals(clazz)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Object getProperty(String key) {
+        return properties.get(key);
+    }
+
+    @Override
+    public String[] getPropertyKeys() {
+        return properties.keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public Bundle getBundle() {
+        return bundle;
+    }
+
+    @Override
+    public Bundle[] getUsingBundles() {
+        return null;
+    }
+
+    @Override
+    public boolean isAssignableTo(Bundle requestingBundle, String className) {
+        return true;
+    }
+
+    @Override
+    public int compareTo(Object reference) {
+        StubServiceReference other = (StubServiceReference) reference;
+        int ranking = getRanking();
+        int otherRanking = other.getRanking();
+        if (ranking != otherRanking) {
+            return ranking < otherRanking ? -1 : 1;
+        }
+        long id = (Long) getProperty(Constants.SERVICE_ID);
+        long otherId = (Long) other.getProperty(Constants.SERVICE_ID);
+        return id == otherId ? 0 : id > otherId ? -1 : 1;
+    }
+
+    private int getRanking() {
+        Object ranking = getProperty(Constants.SERVICE_RANKING);
+        return ranking instanceof Integer ? (Integer) ranking : 0;
+    }
+}
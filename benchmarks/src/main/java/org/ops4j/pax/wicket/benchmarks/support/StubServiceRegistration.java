@@ -0,0 +1,56 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.benchmarks.support;
+
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.Map;
+
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * Registration of a service in a {@link StubFramework}
+ */
+final class StubServiceRegistration implements ServiceRegistration<Object> {
+
+    private final StubFramework framework;
+    private final StubServiceReference reference;
+
+    StubServiceRegistration(StubFramework framework, StubBundle bundle, Object service,
+            Map<String, Object> properties) {
+        this.framework = framework;
+        reference = new StubServiceReference(bundle, service, properties);
+    }
+
+    @Override
+    public StubServiceReference getReference() {
+        return reference;
+    }
+
+    @Override
+    public void setProperties(Dictionary<String, ?> properties) {
+        for (Enumeration<String> keys = properties.keys(); keys.hasMoreElements();) {
+            String key = keys.nextElement();
+            reference.setProperty(key, properties.get(key));
+        }
+        framework.modified(this);
+    }
+
+    @Override
+    public void unregister() {
+        framework.unregister(this);
+    }
+}
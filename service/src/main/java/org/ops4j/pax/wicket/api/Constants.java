@@ -46,4 +46,11 @@ public interface Constants {
      */
     String PAGE_ID = "pax.wicket.pageid";
 
+    /**
+     * Service property name for the configuration of the <i>Injection Timeout</i>, the number of milliseconds
+     * injections wait for a first injection source of the application to show up. A framework property of the same
+     * name sets the default for all applications.
+     */
+    String INJECTION_TIMEOUT = "pax.wicket.injection.timeout";
+
 }
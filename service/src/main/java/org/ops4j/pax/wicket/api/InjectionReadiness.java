@@ -0,0 +1,48 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.api;
+
+/**
+ * Tells whether the injections of an application can be done. One service per application is registered with the
+ * {@link Constants#APPLICATION_NAME} service property, so monitoring or health checks can find out if requests are
+ * held back because no injection source is available yet.
+ *
+ * @version $Id: $Id
+ */
+public interface InjectionReadiness {
+
+    /**
+     * <p>getApplicationName.</p>
+     *
+     * @return the name of the application
+     */
+    String getApplicationName();
+
+    /**
+     * <p>isInjectionReady.</p>
+     *
+     * @return <code>true</code> if an injection source is available for the application
+     */
+    boolean isInjectionReady();
+
+    /**
+     * <p>getParkedThreads.</p>
+     *
+     * @return the number of threads currently waiting for an injection source of the application
+     */
+    int getParkedThreads();
+
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.api;
+
+/**
+ * A {@link PaxWicketInjector} that can tell whether it is responsible for a class without throwing an exception.
+ * Several injectors are asked for each level of a component hierarchy, so misses are the common case and should be
+ * cheap.
+ *
+ * @version $Id: $Id
+ */
+public interface SelectivePaxWicketInjector extends PaxWicketInjector {
+
+    /**
+     * Injects the fields declared by the given level of the object if this injector is responsible for it.
+     *
+     * @param toInject a {@link java.lang.Object} object.
+     * @param toHandle a {@link java.lang.Class} object.
+     * @return <code>false</code> if this injector is not responsible for the given class, <code>true</code> if the
+     *         fields had been injected
+     * @throws java.lang.IllegalStateException if the injector is responsible but can't finish its work; the next
+     *         injector is asked then, just as if {@link #inject(Object, Class)} had failed
+     */
+    boolean tryInject(Object toInject, Class<?> toHandle) throws IllegalStateException;
+
+}
@@ -117,6 +117,24 @@ public abstract class AbstractDetachableListServiceModel<T extends Object, E ext
      * @return a E object.
      */
     protected abstract E doLoad(T source) throws Exception;
+
+    /**
+     * <p>Getter for the field <code>serviceType</code>.</p>
+     *
+     * @return a {@link java.lang.Class} object.
+     */
+    protected final Class<T> getServiceType() {
+        return serviceType;
+    }
+
+    /**
+     * <p>Getter for the field <code>filter</code>.</p>
+     *
+     * @return the LDAP filter narrowing the services or <code>null</code>
+     */
+    protected final String getFilter() {
+        return filter;
+    }
     
     /** {@inheritDoc} */
     @Override
@@ -84,6 +84,15 @@ public abstract class AbstractDetachableServiceModel<T extends Object, E extends
      */
     protected abstract E doLoad(T source) throws Exception;
 
+    /**
+     * <p>Getter for the field <code>serviceType</code>.</p>
+     *
+     * @return a {@link java.lang.Class} object.
+     */
+    protected final Class<T> getServiceType() {
+        return serviceType;
+    }
+
     /** {@inheritDoc} */
     @Override
     protected E load() {
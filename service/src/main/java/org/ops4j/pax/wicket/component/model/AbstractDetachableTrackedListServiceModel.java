@@ -0,0 +1,135 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ops4j.pax.wicket.component.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ops4j.pax.wicket.internal.injection.registry.TrackedServiceHandle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleReference;
+import org.osgi.framework.Constants;
+import org.osgi.framework.InvalidSyntaxException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A variant of the {@link AbstractDetachableListServiceModel} that does not query the service registry on every
+ * {@code load}. The services of {@code serviceType} matching the filter are tracked by a handle shared by all tracked
+ * models of the same bundle, service type and filter, so loading the model only iterates over an immutable snapshot of
+ * the currently registered services, highest service ranking first. The services are used as long as they are
+ * registered instead of being released after every {@code load}, but services that go away are not passed to
+ * {@code doLoad} anymore. The handle is closed once no model using it is left, so filters that are only used for a
+ * while, for example per user, don't keep their services tracked forever.
+ *
+ * @param <T> The type of service to poll for populating the model.
+ * @param <E> The return type expected from the model.
+ * @version $Id: $Id
+ * @since 5.0.1
+ */
+public abstract class AbstractDetachableTrackedListServiceModel<T extends Object, E extends Object> extends
+        AbstractDetachableListServiceModel<T, E> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractDetachableTrackedListServiceModel.class);
+
+    private transient BundleContext context;
+    private transient TrackedServiceHandle handle;
+
+    /**
+     * <p>Constructor for AbstractDetachableTrackedListServiceModel.</p>
+     *
+     * @param serviceType The type of the service to retrieve model data from
+     * @param owningBundleClass a {@link java.lang.Class} object.
+     * @param filter An LDAP filter to use to narrow the search for registered services.
+     */
+    public AbstractDetachableTrackedListServiceModel(Class<T> serviceType, Class owningBundleClass, String filter) {
+        super(serviceType, owningBundleClass, filter);
+    }
+
+    /**
+     * <p>Constructor for AbstractDetachableTrackedListServiceModel.</p>
+     *
+     * @param serviceType The type of the service to retrieve model data from
+     * @param owningBundleClass a {@link java.lang.Class} object.
+     */
+    public AbstractDetachableTrackedListServiceModel(Class<T> serviceType, Class owningBundleClass) {
+        super(serviceType, owningBundleClass);
+    }
+
+    /**
+     * <p>Constructor for AbstractDetachableTrackedListServiceModel.</p>
+     *
+     * @param serviceType The type of the service to retrieve model data from
+     * @param owningBundleObject Any object which resides in the bundle which uses this model.
+     * @param filter An LDAP filter to use to narrow the search for registered services.
+     */
+    public AbstractDetachableTrackedListServiceModel(Class<T> serviceType, Object owningBundleObject, String filter) {
+        super(serviceType, owningBundleObject, filter);
+    }
+
+    /**
+     * <p>Constructor for AbstractDetachableTrackedListServiceModel.</p>
+     *
+     * @param serviceType The type of the service to retrieve model data from
+     * @param owningBundleObject Any object which resides in the bundle which uses this model.
+     */
+    public AbstractDetachableTrackedListServiceModel(Class<T> serviceType, Object owningBundleObject) {
+        super(serviceType, owningBundleObject);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected List<E> load() {
+        List<Object> services;
+        try {
+            services = getHandle().getServices();
+        } catch (InvalidSyntaxException e) {
+            LOGGER.error("Could not load object from service. There was a problem with the filter syntax. "
+                    + "Returning null. Service called: " + getServiceType() + " from bundle "
+                    + context.getBundle().getSymbolicName(), e);
+            return null;
+        }
+        List<E> returnValues = new ArrayList<E>(services.size());
+        for (Object service : services) {
+            try {
+                returnValues.add(doLoad((T) service));
+            } catch (Exception e) {
+                LOGGER.error("Could not load object from service. Trying next service. Service called: "
+                        + getServiceType() + " from bundle " + context.getBundle().getSymbolicName(), e);
+            }
+        }
+        return returnValues;
+    }
+
+    private TrackedServiceHandle getHandle() throws InvalidSyntaxException {
+        if (handle == null || handle.isClosed()) {
+            context = BundleReference.class.cast(getServiceType().getClassLoader()).getBundle().getBundleContext();
+            String serviceFilter;
+            if (getFilter() == null) {
+                serviceFilter = String.format("(%s=%s)", Constants.OBJECTCLASS, getServiceType().getName());
+            } else {
+                serviceFilter =
+                    String.format("(&(%s=%s)%s)", Constants.OBJECTCLASS, getServiceType().getName(), getFilter());
+            }
+            // like getServiceReferences(Class, String) only services compatible with the bundle are considered
+            handle = TrackedServiceHandle.acquire(context, serviceFilter, false, this);
+        }
+        return handle;
+    }
+
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ops4j.pax.wicket.component.model;
+
+import java.util.List;
+
+import org.ops4j.pax.wicket.internal.injection.registry.TrackedServiceHandle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleReference;
+import org.osgi.framework.Constants;
+import org.osgi.framework.InvalidSyntaxException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A variant of the {@link AbstractDetachableServiceModel} that does not look up the service on every {@code load}.
+ * The services of {@code serviceType} are tracked by a handle shared by all tracked models of the same bundle and
+ * service type, so loading the model only reads the currently highest ranked service. The service is used as long as
+ * it is registered instead of being released after every {@code load}, but a service that goes away is not passed to
+ * {@code doLoad} anymore. The handle is closed once no model using it is left.
+ *
+ * @param <T> The type of service to poll for populating the model.
+ * @param <E> The returntype expected from the model.
+ * @version $Id: $Id
+ * @since 5.0.1
+ */
+public abstract class AbstractDetachableTrackedServiceModel<T extends Object, E extends Object> extends
+        AbstractDetachableServiceModel<T, E> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractDetachableTrackedServiceModel.class);
+
+    private transient BundleContext context;
+    private transient TrackedServiceHandle handle;
+
+    /**
+     * <p>Constructor for AbstractDetachableTrackedServiceModel.</p>
+     *
+     * @param serviceType The type of the service to retrieve model data from
+     * @param owningBundleObject Any object which resides in the bundle which uses this model.
+     */
+    public AbstractDetachableTrackedServiceModel(Class<T> serviceType, Object owningBundleObject) {
+        super(serviceType, owningBundleObject);
+    }
+
+    /**
+     * <p>Constructor for AbstractDetachableTrackedServiceModel.</p>
+     *
+     * @param serviceType The type of the service to retrieve model data from
+     * @param owningBundleClass Any class which resides in the bundle which uses this model.
+     */
+    public AbstractDetachableTrackedServiceModel(Class<T> serviceType, Class owningBundleClass) {
+        super(serviceType, owningBundleClass);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected E load() {
+        List<Object> services = getHandle().getServices();
+        if (services.isEmpty()) {
+            return null;
+        }
+        try {
+            return doLoad((T) services.get(0));
+        } catch (Exception e) {
+            LOGGER.error("Could not load object from service. Returning null. Service called: " + getServiceType()
+                    + " from bundle " + context.getBundle().getSymbolicName(), e);
+            return null;
+        }
+    }
+
+    private TrackedServiceHandle getHandle() {
+        if (handle == null || handle.isClosed()) {
+            context = BundleReference.class.cast(getServiceType().getClassLoader()).getBundle().getBundleContext();
+            try {
+                // like getServiceReference(Class) only services compatible with the bundle are considered
+                handle = TrackedServiceHandle.acquire(context,
+                    String.format("(%s=%s)", Constants.OBJECTCLASS, getServiceType().getName()), false, this);
+            } catch (InvalidSyntaxException e) {
+                throw new IllegalStateException("the service type can't be expressed as filter", e);
+            }
+        }
+        return handle;
+    }
+
+}
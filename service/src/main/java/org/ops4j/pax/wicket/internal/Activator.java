@@ -20,6 +20,7 @@
 package org.ops4j.pax.wicket.internal;
 
 import org.ops4j.pax.wicket.api.WebApplicationFactory;
+import org.ops4j.pax.wicket.internal.injection.registry.TrackedServiceHandle;
 import org.ops4j.pax.wicket.internal.util.BundleTrackerAggregator;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleActivator;
@@ -87,6 +88,7 @@ public final class Activator implements BundleActivator {
     public final void stop(BundleContext context) throws Exception {
         bundleTrackerAggregator.close();
         httpTracker.close();
+        TrackedServiceHandle.closeAll();
         bundleContext = null;
         LOGGER.debug("Stopped [{}] bundle.", context.getBundle().getSymbolicName());
     }
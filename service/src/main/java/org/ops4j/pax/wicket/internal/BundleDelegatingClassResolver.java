@@ -18,12 +18,11 @@ package org.ops4j.pax.wicket.internal;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.wicket.application.IClassResolver;
@@ -37,7 +36,9 @@ import org.slf4j.LoggerFactory;
 
 /**
  * This class represents an extended class loader automatically trying to load
- * from all bundles added to it.
+ * from all bundles added to it. Lookups are routed by package name: bundles known
+ * to contain, export or import the package of a class are asked first, the
+ * remaining bundles only if none of them can load it.
  *
  * @author nmw
  * @version $Id: $Id
@@ -46,10 +47,21 @@ public class BundleDelegatingClassResolver implements IClassResolver, InternalBu
 
     private static final Logger LOGGER = LoggerFactory.getLogger(BundleDelegatingClassResolver.class);
 
+    /**
+     * Service property incremented whenever the set of bundles changes, so trackers of this resolver receive a
+     * modified event and can drop what they have cached.
+     */
+    static final String BUNDLES_REVISION = "pax.wicket.classresolver.revision";
+
     private final String applicationName;
     private final BundleContext paxWicketBundleContext;
-    private final Map<String, Bundle> bundles = new HashMap<String, Bundle>();
+    private final Map<String, ExtendedBundle> bundles = new HashMap<String, ExtendedBundle>();
+    private final Hashtable<String, Object> properties = new Hashtable<String, Object>();
     private ServiceRegistration<IClassResolver> classResolverRegistration;
+    private long revision;
+
+    private volatile BundleIndex bundleIndex = new BundleIndex(bundles);
+    private volatile ClassResolutionCache cache = new ClassResolutionCache();
 
     /**
      * <p>Constructor for BundleDelegatingClassResolver.</p>
@@ -78,8 +90,8 @@ public class BundleDelegatingClassResolver implements IClassResolver, InternalBu
         if (classResolverRegistration != null) {
             throw new IllegalStateException("Service is already registered");
         }
-        Dictionary<String, String> properties = new Hashtable<String, String>();
         properties.put(Constants.APPLICATION_NAME, applicationName);
+        properties.put(BUNDLES_REVISION, revision);
         try {
             classResolverRegistration
                     = paxWicketBundleContext.registerService(IClassResolver.class, this, properties);
@@ -110,7 +122,8 @@ public class BundleDelegatingClassResolver implements IClassResolver, InternalBu
             throw new IllegalStateException("The service is stoped and no more bundles could be added");
         }
         synchronized (bundles) {
-            bundles.put(bundle.getBundle().getSymbolicName(), bundle.getBundle());
+            bundles.put(bundle.getBundle().getSymbolicName(), bundle);
+            bundlesChanged();
         }
     }
 
@@ -121,47 +134,111 @@ public class BundleDelegatingClassResolver implements IClassResolver, InternalBu
         }
         synchronized (bundles) {
             bundles.remove(bundle.getBundle().getSymbolicName());
+            bundlesChanged();
+        }
+    }
+
+    /**
+     * Publishes a new index of the bundles, drops all remembered lookups and bumps the revision of the
+     * registration. Must be called while holding the lock on <code>bundles</code>.
+     */
+    private void bundlesChanged() {
+        bundleIndex = new BundleIndex(bundles);
+        cache = new ClassResolutionCache();
+        properties.put(BUNDLES_REVISION, ++revision);
+        try {
+            classResolverRegistration.setProperties(properties);
+        } catch (IllegalStateException e) {
+            LOGGER.trace("Class resolver of application {} had been unregistered concurrently", applicationName);
         }
     }
 
     /** {@inheritDoc} */
     public Class<?> resolveClass(String classname) throws ClassNotFoundException {
+        ClassResolutionCache currentCache = cache;
+        Class<?> cached = currentCache.getResolved(classname);
+        if (cached != null) {
+            return cached;
+        }
+        if (currentCache.isMissed(classname)) {
+            throw ClassResolutionCache.classNotFound(classname);
+        }
         LOGGER.trace("Trying to resolve class {} from BundleDelegatingClassResolver", classname);
-        synchronized (bundles) {
-            Collection<Bundle> values = bundles.values();
-            for (Bundle bundle : values) {
-                try {
-                    LOGGER.trace("Trying to load class {} from bundle {}", classname, bundle.getSymbolicName());
-                    Class<?> loadedClass = bundle.loadClass(classname);
-                    LOGGER.debug("Loaded class {} from bundle {}", classname, bundle.getSymbolicName());
-                    return loadedClass;
-                } catch (ClassNotFoundException e) {
-                    LOGGER.trace("Could not load class {} from bundle {} because bundle does not contain the class",
-                            classname, bundle.getSymbolicName());
-                } catch (IllegalStateException e) {
-                    LOGGER.trace("Could not load class {} from bundle {} because bundle had been uninstalled",
-                            classname,
-                            bundle.getSymbolicName());
-                }
+        BundleIndex index = bundleIndex;
+        Bundle[] candidates = index.getCandidates(getPackageName(classname, '.'));
+        for (Bundle bundle : candidates) {
+            Class<?> loadedClass = loadClass(bundle, classname);
+            if (loadedClass != null) {
+                currentCache.putResolved(classname, loadedClass);
+                return loadedClass;
             }
         }
+        for (Bundle bundle : index.getBundles()) {
+            if (contains(candidates, bundle)) {
+                continue;
+            }
+            Class<?> loadedClass = loadClass(bundle, classname);
+            if (loadedClass != null) {
+                currentCache.putResolved(classname, loadedClass);
+                return loadedClass;
+            }
+        }
+        currentCache.putMissed(classname);
         throw new ClassNotFoundException("Class [" + classname + "] can't be resolved.");
     }
 
-    /** {@inheritDoc} */
+    private static Class<?> loadClass(Bundle bundle, String classname) {
+        try {
+            LOGGER.trace("Trying to load class {} from bundle {}", classname, bundle.getSymbolicName());
+            Class<?> loadedClass = bundle.loadClass(classname);
+            LOGGER.debug("Loaded class {} from bundle {}", classname, bundle.getSymbolicName());
+            return loadedClass;
+        } catch (ClassNotFoundException e) {
+            LOGGER.trace("Could not load class {} from bundle {} because bundle does not contain the class",
+                    classname, bundle.getSymbolicName());
+        } catch (IllegalStateException e) {
+            LOGGER.trace("Could not load class {} from bundle {} because bundle had been uninstalled",
+                    classname,
+                    bundle.getSymbolicName());
+        }
+        return null;
+    }
+
+    private static boolean contains(Bundle[] bundles, Bundle bundle) {
+        for (Bundle candidate : bundles) {
+            if (candidate == bundle) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String getPackageName(String name, char separator) {
+        int start = name.length() > 0 && name.charAt(0) == '/' ? 1 : 0;
+        int end = name.lastIndexOf(separator);
+        if (end < start) {
+            return "";
+        }
+        String packageName = name.substring(start, end);
+        return separator == '.' ? packageName : packageName.replace(separator, '.');
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Resources are collected from all bundles, the bundles providing the package of the resource are asked first.
+     */
     public Iterator<URL> getResources(String name) {
         ArrayList<URL> collectedResources = new ArrayList<URL>();
+        BundleIndex index = bundleIndex;
+        Bundle[] candidates = index.getCandidates(getPackageName(name, '/'));
         try {
-            synchronized (bundles) {
-                Collection<Bundle> values = bundles.values();
-                for (Bundle bundle : values) {
-                    final Enumeration<URL> enumeration = bundle.getResources(name);
-                    if (enumeration == null) {
-                        continue;
-                    }
-                    while (enumeration.hasMoreElements()) {
-                        collectedResources.add(enumeration.nextElement());
-                    }
+            for (Bundle bundle : candidates) {
+                collectResources(bundle, name, collectedResources);
+            }
+            for (Bundle bundle : index.getBundles()) {
+                if (!contains(candidates, bundle)) {
+                    collectResources(bundle, name, collectedResources);
                 }
             }
         } catch (IOException e) {
@@ -171,6 +248,17 @@ public class BundleDelegatingClassResolver implements IClassResolver, InternalBu
         return collectedResources.iterator();
     }
 
+    private static void collectResources(Bundle bundle, String name, List<URL> collectedResources)
+        throws IOException {
+        final Enumeration<URL> enumeration = bundle.getResources(name);
+        if (enumeration == null) {
+            return;
+        }
+        while (enumeration.hasMoreElements()) {
+            collectedResources.add(enumeration.nextElement());
+        }
+    }
+
     /**
      * This method is uses only for some internal wicket stuff if the
      * IClassResolver is NOT replaced and in some IOC stuff also not used by pax
@@ -183,4 +271,47 @@ public class BundleDelegatingClassResolver implements IClassResolver, InternalBu
         throw new UnsupportedOperationException("This method should NOT BE CALLED!");
     }
 
+    /**
+     * Immutable view of the bundles of this resolver together with the bundles providing each package, rebuilt
+     * whenever a bundle is added or removed.
+     */
+    private static final class BundleIndex {
+
+        private static final Bundle[] NO_BUNDLES = new Bundle[0];
+
+        private final Bundle[] bundles;
+        private final Map<String, Bundle[]> packages = new HashMap<String, Bundle[]>();
+
+        private BundleIndex(Map<String, ExtendedBundle> extendedBundles) {
+            bundles = new Bundle[extendedBundles.size()];
+            Map<String, List<Bundle>> providers = new HashMap<String, List<Bundle>>();
+            int i = 0;
+            for (ExtendedBundle extendedBundle : extendedBundles.values()) {
+                Bundle bundle = extendedBundle.getBundle();
+                bundles[i++] = bundle;
+                for (String packageName : extendedBundle.getPackages()) {
+                    List<Bundle> list = providers.get(packageName);
+                    if (list == null) {
+                        list = new ArrayList<Bundle>(1);
+                        providers.put(packageName, list);
+                    }
+                    list.add(bundle);
+                }
+            }
+            for (Map.Entry<String, List<Bundle>> entry : providers.entrySet()) {
+                List<Bundle> list = entry.getValue();
+                packages.put(entry.getKey(), list.toArray(new Bundle[list.size()]));
+            }
+        }
+
+        Bundle[] getBundles() {
+            return bundles;
+        }
+
+        Bundle[] getCandidates(String packageName) {
+            Bundle[] candidates = packages.get(packageName);
+            return candidates == null ? NO_BUNDLES : candidates;
+        }
+    }
+
 }
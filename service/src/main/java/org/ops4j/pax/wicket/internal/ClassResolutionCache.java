@@ -0,0 +1,76 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.internal;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Remembers the outcome of class lookups of a single class resolver. A cache is never cleared, the owning resolver
+ * replaces it by a fresh instance as soon as the set of bundles or resolvers it delegates to changes; lookups still
+ * running against the old instance therefore can't leak stale results into the new one.
+ *
+ * The number of remembered misses is bounded since the names looked up may come from request urls.
+ *
+ * @version $Id: $Id
+ */
+final class ClassResolutionCache {
+
+    static final int MAX_MISSES = 1024;
+
+    private final ConcurrentMap<String, Class<?>> resolved = new ConcurrentHashMap<String, Class<?>>();
+    private final ConcurrentMap<String, Boolean> missed = new ConcurrentHashMap<String, Boolean>();
+
+    Class<?> getResolved(String classname) {
+        return resolved.get(classname);
+    }
+
+    boolean isMissed(String classname) {
+        return missed.containsKey(classname);
+    }
+
+    void putResolved(String classname, Class<?> clazz) {
+        resolved.put(classname, clazz);
+    }
+
+    void putMissed(String classname) {
+        if (missed.size() < MAX_MISSES) {
+            missed.put(classname, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Creates the exception thrown for a remembered miss. Misses are expected in normal operation (for example while
+     * probing several resolvers), so no stack trace is filled in.
+     */
+    static ClassNotFoundException classNotFound(String classname) {
+        return new CachedClassNotFoundException("Class [" + classname + "] can't be resolved.");
+    }
+
+    private static final class CachedClassNotFoundException extends ClassNotFoundException {
+
+        private static final long serialVersionUID = 1L;
+
+        private CachedClassNotFoundException(String message) {
+            super(message);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
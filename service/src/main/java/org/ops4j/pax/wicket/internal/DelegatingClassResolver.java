@@ -28,7 +28,9 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 import org.apache.wicket.application.IClassResolver;
 import org.osgi.framework.BundleContext;
@@ -46,6 +48,14 @@ public final class DelegatingClassResolver implements IClassResolver {
     private final String applicationName;
     private final List<IClassResolver> resolvers = new CopyOnWriteArrayList<IClassResolver>();
 
+    /**
+     * The resolvers that announce every change of what they can resolve by modifying their registration, only their
+     * misses may be remembered. Other resolvers might resolve a class later without any service event.
+     */
+    private final Set<IClassResolver> revisionedResolvers = new CopyOnWriteArraySet<IClassResolver>();
+
+    private volatile ClassResolutionCache cache = new ClassResolutionCache();
+
     private ClassResolverTracker tracker;
 
     /**
@@ -107,11 +117,25 @@ public final class DelegatingClassResolver implements IClassResolver {
 
     /** {@inheritDoc} */
     public Class<?> resolveClass(final String classname) throws ClassNotFoundException {
+        ClassResolutionCache currentCache = cache;
+        Class<?> cached = currentCache.getResolved(classname);
+        if (cached != null) {
+            return cached;
+        }
+        boolean missed = currentCache.isMissed(classname);
+        if (missed && revisionedResolvers.size() == resolvers.size()) {
+            throw ClassResolutionCache.classNotFound(classname);
+        }
         LOGGER.trace("Try to resolve {} from {} resolvers", classname, resolvers.size());
         for (IClassResolver resolver : resolvers) {
+            if (missed && revisionedResolvers.contains(resolver)) {
+                // missed before and nothing changed since then
+                continue;
+            }
             try {
                 Class<?> candidate = resolver.resolveClass(classname);
                 if (candidate != null) {
+                    currentCache.putResolved(classname, candidate);
                     return candidate;
                 }
             } catch (ClassNotFoundException e) {
@@ -120,6 +144,7 @@ public final class DelegatingClassResolver implements IClassResolver {
                 LOGGER.warn("ClassResolver {} threw an unexpected exception.", resolver, e);
             }
         }
+        currentCache.putMissed(classname);
         throw new ClassNotFoundException(String.format("Class [%s] can't be resolved.", classname));
     }
 
@@ -155,7 +180,11 @@ public final class DelegatingClassResolver implements IClassResolver {
         @Override
         public final IClassResolver addingService(ServiceReference<IClassResolver> reference) {
             IClassResolver resolver = super.addingService(reference);
+            if (reference.getProperty(BundleDelegatingClassResolver.BUNDLES_REVISION) != null) {
+                revisionedResolvers.add(resolver);
+            }
             resolvers.add(resolver);
+            invalidateCache();
             return resolver;
         }
 
@@ -168,12 +197,14 @@ public final class DelegatingClassResolver implements IClassResolver {
                     if (!nameClass.isArray()) {
                         String appName = (String) objAppName;
                         if (m_applicationName.equals(appName)) {
+                            invalidateCache();
                             return;
                         }
                     } else {
                         String[] appNames = (String[]) objAppName;
                         for (String appName : appNames) {
                             if (m_applicationName.equals(appName)) {
+                                invalidateCache();
                                 return;
                             }
                         }
@@ -187,10 +218,22 @@ public final class DelegatingClassResolver implements IClassResolver {
         public final void removedService(ServiceReference<IClassResolver> reference, IClassResolver service) {
             IClassResolver resolver = service;
             resolvers.remove(resolver);
+            revisionedResolvers.remove(resolver);
+            invalidateCache();
             super.removedService(reference, service);
         }
     }
 
+    /**
+     * Drops all remembered lookups. Called whenever a resolver comes, goes or changes its properties; the
+     * {@link org.ops4j.pax.wicket.internal.BundleDelegatingClassResolver} modifies its registration each time a bundle
+     * is added or removed. A remembered miss only skips the resolvers registered with a revision, all others are
+     * asked again.
+     */
+    private void invalidateCache() {
+        cache = new ClassResolutionCache();
+    }
+
     private static Filter createFilter(BundleContext context, String applicationName) {
         String filterStr = "(&(" + OBJECTCLASS + "=" + IClassResolver.class.getName() + ")(" + APPLICATION_NAME + "="
                 + applicationName + "))";
@@ -26,9 +26,12 @@ import java.util.Map;
 
 import javax.servlet.Filter;
 
+import net.sf.cglib.proxy.Callback;
+import net.sf.cglib.proxy.CallbackFilter;
 import net.sf.cglib.proxy.Enhancer;
 import net.sf.cglib.proxy.MethodInterceptor;
 import net.sf.cglib.proxy.MethodProxy;
+import net.sf.cglib.proxy.NoOp;
 
 import org.apache.wicket.IPageFactory;
 import org.apache.wicket.protocol.http.IWebApplicationFactory;
@@ -213,33 +216,31 @@ public class PaxWicketApplicationFactory implements IWebApplicationFactory {
             }
         });
         e.setSuperclass(applicationClass);
-        e.setCallback(new WebApplicationWrapper());
+        e.setCallbacks(new Callback[]{ new WebApplicationWrapper(), NoOp.INSTANCE });
+        e.setCallbackFilter(WebApplicationCallbackFilter.INSTANCE);
         @SuppressWarnings("unchecked")
         T instance = (T) e.create();
         factory.onInstantiation(instance);
         return instance;
     }
 
-    private class WebApplicationWrapper implements MethodInterceptor {
+    /**
+     * Routes only the application methods {@link WebApplicationWrapper} takes care of to the interceptor, all others
+     * are called directly on the application. The decision is made once when the application class is generated.
+     */
+    private static final class WebApplicationCallbackFilter implements CallbackFilter {
 
-        private PaxWicketPageFactory pageFactory;
-        private DelegatingClassResolver delegatingClassResolver;
-        private DelegatingComponentInstanciationListener delegatingComponentInstanciationListener;
-        private PageMounterTracker mounterTracker;
+        private static final int INTERCEPTOR = 0;
+        private static final int PASS_THROUGH = 1;
 
-        public Object intercept(Object object, Method method, Object[] args, MethodProxy methodProxy) throws Throwable {
-            if (isFinalizeMethod(method)) {
-                // swallow finalize call
-                return null;
-            } else if (isInitMethod(method)) {
-                handleInit((WebApplication) object);
-            } else if (isNewPageFactory(method)) {
-                return handleNewPageFactory();
-            } else if (isOnDestoryMethod(method)) {
-                handleOnDestroy();
+        private static final WebApplicationCallbackFilter INSTANCE = new WebApplicationCallbackFilter();
+
+        public int accept(Method method) {
+            if (isFinalizeMethod(method) || isInitMethod(method) || isNewPageFactory(method)
+                    || isOnDestoryMethod(method)) {
+                return INTERCEPTOR;
             }
-            method.setAccessible(true);
-            return methodProxy.invokeSuper(object, args);
+            return PASS_THROUGH;
         }
 
         /**
@@ -251,7 +252,8 @@ public class PaxWicketApplicationFactory implements IWebApplicationFactory {
          * @param parameterTypes Parameters for method.
          * @return True if all criteria matched.
          */
-        private boolean checkSignature(Method method, String name, Class<?> returnType, Class<?>... parameterTypes) {
+        private static boolean checkSignature(Method method, String name, Class<?> returnType,
+                Class<?>... parameterTypes) {
             if (method.getName().equals(name) && method.getReturnType() == returnType) {
                 return Arrays.equals(method.getParameterTypes(), parameterTypes);
             }
@@ -264,22 +266,46 @@ public class PaxWicketApplicationFactory implements IWebApplicationFactory {
          * @param method method being tested
          * @return true if the method is defined from Object.finalize(), false otherwise
          */
-        private boolean isFinalizeMethod(Method method) {
+        private static boolean isFinalizeMethod(Method method) {
             return checkSignature(method, "finalize", void.class);
         }
 
-        private boolean isInitMethod(Method method) {
+        private static boolean isInitMethod(Method method) {
             return checkSignature(method, "init", void.class);
         }
 
-        private boolean isNewPageFactory(Method method) {
+        private static boolean isNewPageFactory(Method method) {
             return checkSignature(method, "newPageFactory", IPageFactory.class);
         }
 
-        private boolean isOnDestoryMethod(Method method) {
+        private static boolean isOnDestoryMethod(Method method) {
             return checkSignature(method, "onDestroy", void.class);
         }
 
+    }
+
+    private class WebApplicationWrapper implements MethodInterceptor {
+
+        private PaxWicketPageFactory pageFactory;
+        private DelegatingClassResolver delegatingClassResolver;
+        private DelegatingComponentInstanciationListener delegatingComponentInstanciationListener;
+        private PageMounterTracker mounterTracker;
+
+        public Object intercept(Object object, Method method, Object[] args, MethodProxy methodProxy) throws Throwable {
+            if (WebApplicationCallbackFilter.isFinalizeMethod(method)) {
+                // swallow finalize call
+                return null;
+            } else if (WebApplicationCallbackFilter.isInitMethod(method)) {
+                handleInit((WebApplication) object);
+            } else if (WebApplicationCallbackFilter.isNewPageFactory(method)) {
+                return handleNewPageFactory();
+            } else if (WebApplicationCallbackFilter.isOnDestoryMethod(method)) {
+                handleOnDestroy();
+            }
+            method.setAccessible(true);
+            return methodProxy.invokeSuper(object, args);
+        }
+
         private void handleInit(WebApplication application) {
             // application.initApplication();
             delegatingClassResolver = new DelegatingClassResolver(bundleContext, applicationName);
@@ -289,7 +315,11 @@ public class PaxWicketApplicationFactory implements IWebApplicationFactory {
                     new DelegatingComponentInstanciationListener(bundleContext, applicationName);
             delegatingComponentInstanciationListener.intialize();
 
-            application.getFrameworkSettings().setSerializer(new PaxWicketSerializer(getApplicationName()));
+            boolean compact = Boolean.valueOf(bundleContext.getProperty(PaxWicketSerializer.COMPACT_PROPERTY));
+            boolean internLocators =
+                Boolean.valueOf(bundleContext.getProperty(PaxWicketSerializer.INTERN_LOCATORS_PROPERTY));
+            application.getFrameworkSettings().setSerializer(
+                new PaxWicketSerializer(getApplicationName(), compact, internLocators));
             application.getComponentInstantiationListeners().add(new ComponentInstantiationListenerFacade(
                     delegatingComponentInstanciationListener));
             application.getApplicationSettings().setClassResolver(delegatingClassResolver);
@@ -24,6 +24,7 @@ import org.ops4j.pax.wicket.api.WebApplicationFactory;
 import org.ops4j.pax.wicket.internal.BundleDelegatingClassResolver;
 import org.ops4j.pax.wicket.internal.BundleDelegatingPageMounter;
 import org.ops4j.pax.wicket.internal.injection.BundleDelegatingComponentInstanciationListener;
+import org.ops4j.pax.wicket.internal.injection.InjectionReadinessGate;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleReference;
@@ -150,8 +151,10 @@ public class BundleDelegatingExtensionTracker extends PaxWicketBundleListener {
         classResolvers.put(webApplicationFactory, new BundleDelegatingClassResolver(paxWicketBundleContext,
             applicationName.toString()));
         classResolvers.get(webApplicationFactory).start();
+        long injectionTimeout =
+            InjectionReadinessGate.getTimeout(paxWicketBundleContext, properties.get(Constants.INJECTION_TIMEOUT));
         componentInstanciationListener.put(webApplicationFactory, new BundleDelegatingComponentInstanciationListener(
-            paxWicketBundleContext, applicationName.toString()));
+            paxWicketBundleContext, applicationName.toString(), injectionTimeout));
         componentInstanciationListener.get(webApplicationFactory).start();
         pageMounter.put(webApplicationFactory, new BundleDelegatingPageMounter(applicationName.toString(),
             paxWicketBundleContext));
@@ -32,6 +32,7 @@ import org.osgi.framework.BundleContext;
 import org.osgi.framework.Filter;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.Version;
+import org.osgi.framework.wiring.BundleCapability;
 import org.osgi.framework.wiring.BundleRequirement;
 import org.osgi.framework.wiring.BundleWire;
 import org.osgi.framework.wiring.BundleWiring;
@@ -63,6 +64,8 @@ public class ExtendedBundle {
 
     private final ExtendedBundleContext bundleContext;
 
+    private volatile Set<String> packages;
+
     /**
      * <p>Constructor for ExtendedBundle.</p>
      *
@@ -224,6 +227,60 @@ public class ExtendedBundle {
         return false;
     }
 
+    /**
+     * Returns the names of all packages whose classes can be loaded through the wiring of the underlying bundle: the
+     * packages contained in the bundle itself, the packages it exports and the packages it imports. Packages made
+     * visible by Require-Bundle, DynamicImport-Package or boot delegation are not included. The result is computed
+     * once and empty if the bundle is not resolved.
+     *
+     * @return an unmodifiable set of package names, the default package is represented by the empty string
+     */
+    public Set<String> getPackages() {
+        Set<String> result = packages;
+        if (result == null) {
+            BundleWiring bundleWiring = bundle.adapt(BundleWiring.class);
+            if (bundleWiring == null) {
+                return Collections.emptySet();
+            }
+            result = Collections.unmodifiableSet(collectPackages(bundleWiring));
+            packages = result;
+        }
+        return result;
+    }
+
+    private static Set<String> collectPackages(BundleWiring bundleWiring) {
+        Set<String> result = new HashSet<String>();
+        List<BundleCapability> exports = bundleWiring.getCapabilities(OSGI_WIRING_PACKAGE_NAMESPACE);
+        if (exports != null) {
+            for (BundleCapability capability : exports) {
+                addPackage(result, capability);
+            }
+        }
+        List<BundleWire> imports = bundleWiring.getRequiredWires(OSGI_WIRING_PACKAGE_NAMESPACE);
+        if (imports != null) {
+            for (BundleWire bundleWire : imports) {
+                addPackage(result, bundleWire.getCapability());
+            }
+        }
+        Collection<String> resources = bundleWiring.listResources("/", "*.class",
+            BundleWiring.FINDENTRIES_RECURSE | BundleWiring.LISTRESOURCES_LOCAL);
+        if (resources != null) {
+            for (String resource : resources) {
+                int start = resource.charAt(0) == '/' ? 1 : 0;
+                int end = resource.lastIndexOf('/');
+                result.add(end < start ? "" : resource.substring(start, end).replace('/', '.'));
+            }
+        }
+        return result;
+    }
+
+    private static void addPackage(Set<String> result, BundleCapability capability) {
+        Object packageName = capability.getAttributes().get(OSGI_WIRING_PACKAGE_NAMESPACE);
+        if (packageName instanceof String) {
+            result.add((String) packageName);
+        }
+    }
+
     /**
      * Try to load a Collection of all classes conained in the underlying bundle, please be aware that calling this has
      * the following implications:
@@ -23,7 +23,6 @@ import static org.ops4j.lang.NullArgumentException.validateNotNull;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 import javax.servlet.Filter;
@@ -43,10 +42,13 @@ public final class FilterDelegator {
     private static final Logger LOGGER = LoggerFactory.getLogger(FilterDelegator.class);
 
     private final ServiceTracker<FilterFactory, FilterFactoryReference> filterTracker;
+    private final FilterTrackerCustomizer customizer;
     private final String applicationName;
 
     private Servlet servlet;
 
+    private volatile FilterSnapshot snapshot;
+
     /**
      * <p>Constructor for FilterDelegator.</p>
      *
@@ -55,7 +57,7 @@ public final class FilterDelegator {
      */
     public FilterDelegator(BundleContext context, String applicationName) {
         this.applicationName = applicationName;
-        FilterTrackerCustomizer customizer = new FilterTrackerCustomizer(context, applicationName);
+        customizer = new FilterTrackerCustomizer(context, applicationName);
         filterTracker =
             new ServiceTracker<FilterFactory, FilterFactoryReference>(context, customizer.createOsgiFilter(),
                 customizer);
@@ -95,33 +97,59 @@ public final class FilterDelegator {
      */
     public void doFilter(Filter[] superFilter, ServletRequest servletRequest, ServletResponse servletResponse)
         throws ServletException, IOException {
+        FilterChain chain = new PAXWicketFilterChain(getFilters(superFilter), servlet);
+        chain.doFilter(servletRequest, servletResponse);
+    }
+
+    /**
+     * Returns the filters to apply, the array is only rebuilt if the tracked {@link FilterFactory}s, the super filters
+     * or the servlet have changed since the last call.
+     */
+    private Filter[] getFilters(Filter[] superFilter) {
+        FilterFactoryReference[] references = customizer.getFilterFactoryReferences();
+        Servlet currentServlet = servlet;
+        FilterSnapshot current = snapshot;
+        if (current != null && current.references == references && current.superFilter == superFilter
+                && current.servlet == currentServlet) {
+            return current.filters;
+        }
         List<Filter> filters = new ArrayList<Filter>();
-        if (superFilter != null && superFilter.length > 0) {
+        if (superFilter != null) {
             // First add all superfilter...
-            filters.addAll(Arrays.asList(superFilter));
+            for (Filter filter : superFilter) {
+                filters.add(filter);
+            }
         }
-        List<Filter> filterList = getFiltersSortedWithHighestPriorityAsFirstFilter(filters, servlet.getServletConfig());
-        FilterChain chain = new PAXWicketFilterChain(filterList, servlet);
-        chain.doFilter(servletRequest, servletResponse);
+        boolean complete =
+            addFiltersSortedWithHighestPriorityAsFirstFilter(references, filters, currentServlet.getServletConfig());
+        Filter[] filterArray = filters.toArray(new Filter[filters.size()]);
+        if (complete) {
+            snapshot = new FilterSnapshot(references, superFilter, currentServlet, filterArray);
+        }
+        return filterArray;
     }
 
-    private List<Filter> getFiltersSortedWithHighestPriorityAsFirstFilter(List<Filter> filters,
-            ServletConfig servletConfig) {
-        FilterFactoryReference[] factories = filterTracker.getServices(new FilterFactoryReference[0]);
-        if (factories != null && factories.length > 0) {
+    /**
+     * @return <code>false</code> if any of the filters could not be created and creation should be retried
+     */
+    private boolean addFiltersSortedWithHighestPriorityAsFirstFilter(FilterFactoryReference[] factories,
+            List<Filter> filters, ServletConfig servletConfig) {
+        boolean complete = true;
+        if (factories.length > 0) {
             LOGGER.debug("Retrieved {} factories to create filters to apply", factories.length);
-            Arrays.sort(factories);
             for (FilterFactoryReference filterFactory : factories) {
                 try {
                     filters.add(filterFactory.getFilter(servletConfig));
                 } catch (ServletException e) {
                     LOGGER.error("Problem while creating filter: {}", e.getMessage(), e);
+                    complete = false;
                 } catch (RuntimeException e) {
                     LOGGER.error("Problem while creating filter: {}", e.getMessage(), e);
+                    complete = false;
                 }
             }
         }
-        return filters;
+        return complete;
     }
 
     /**
@@ -134,4 +162,24 @@ public final class FilterDelegator {
         this.servlet = servlet;
     }
 
+    /**
+     * Immutable state of the filters computed for a given set of {@link FilterFactoryReference}s, super filters and
+     * servlet
+     */
+    private static final class FilterSnapshot {
+
+        private final FilterFactoryReference[] references;
+        private final Filter[] superFilter;
+        private final Servlet servlet;
+        private final Filter[] filters;
+
+        private FilterSnapshot(FilterFactoryReference[] references, Filter[] superFilter, Servlet servlet,
+                Filter[] filters) {
+            this.references = references;
+            this.superFilter = superFilter;
+            this.servlet = servlet;
+            this.filters = filters;
+        }
+    }
+
 }
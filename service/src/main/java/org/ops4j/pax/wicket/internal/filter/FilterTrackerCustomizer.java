@@ -20,6 +20,10 @@ import static org.ops4j.lang.NullArgumentException.validateNotNull;
 import static org.ops4j.pax.wicket.api.Constants.APPLICATION_NAME;
 import static org.osgi.framework.Constants.OBJECTCLASS;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import org.ops4j.pax.wicket.api.FilterFactory;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.InvalidSyntaxException;
@@ -38,10 +42,17 @@ import org.slf4j.LoggerFactory;
 public final class FilterTrackerCustomizer implements ServiceTrackerCustomizer<FilterFactory, FilterFactoryReference> {
     private static final Logger LOGGER = LoggerFactory.getLogger(FilterTrackerCustomizer.class);
 
+    private static final FilterFactoryReference[] EMPTY_REFERENCES = new FilterFactoryReference[0];
+
     private final String applicationName;
 
     private final BundleContext bundleContext;
 
+    /**
+     * The currently tracked references in the order filters are applied, replaced as a whole on every change
+     */
+    private volatile FilterFactoryReference[] references = EMPTY_REFERENCES;
+
     /**
      * <p>Constructor for FilterTrackerCustomizer.</p>
      *
@@ -60,6 +71,8 @@ public final class FilterTrackerCustomizer implements ServiceTrackerCustomizer<F
         FilterFactory filterFactory = bundleContext.getService(reference);
         if (filterFactory != null) {
             FilterFactoryReference factoryReference = new FilterFactoryReference(filterFactory);
+            factoryReference.setProperties(reference);
+            updateReferences(factoryReference, null);
             LOGGER.debug("added FilterFactory {} for application {}", filterFactory.getClass().getName(),
                 applicationName);
             return factoryReference;
@@ -76,6 +89,7 @@ public final class FilterTrackerCustomizer implements ServiceTrackerCustomizer<F
     public void modifiedService(ServiceReference<FilterFactory> reference, FilterFactoryReference service) {
         if (service != null) {
             service.setProperties(reference);
+            updateReferences(null, null);
             LOGGER.debug("updated FilterFactory {} for application {}", service.getFactory().getClass().getName(),
                 applicationName);
         }
@@ -90,11 +104,37 @@ public final class FilterTrackerCustomizer implements ServiceTrackerCustomizer<F
     public void removedService(ServiceReference<FilterFactory> reference, FilterFactoryReference service) {
         bundleContext.ungetService(reference);
         if (service != null) {
+            updateReferences(null, service);
             service.dispose();
             LOGGER.debug("removed filterFactory for application {}", applicationName);
         }
     }
 
+    /**
+     * <p>getFilterFactoryReferences.</p>
+     *
+     * @return the tracked references sorted in the order their filters must be applied, a new array instance is
+     *         returned after each change so callers might use identity to detect changes. The array must not be
+     *         modified.
+     */
+    public FilterFactoryReference[] getFilterFactoryReferences() {
+        return references;
+    }
+
+    private synchronized void updateReferences(FilterFactoryReference added, FilterFactoryReference removed) {
+        List<FilterFactoryReference> list = new ArrayList<FilterFactoryReference>(references.length + 1);
+        for (FilterFactoryReference reference : references) {
+            if (reference != removed) {
+                list.add(reference);
+            }
+        }
+        if (added != null) {
+            list.add(added);
+        }
+        Collections.sort(list);
+        references = list.toArray(new FilterFactoryReference[list.size()]);
+    }
+
     /**
      * <p>createOsgiFilter.</p>
      *
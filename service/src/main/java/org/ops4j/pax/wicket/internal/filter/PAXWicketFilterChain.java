@@ -40,7 +40,7 @@ public class PAXWicketFilterChain implements FilterChain {
     private static final Logger LOGGER = LoggerFactory.getLogger(PAXWicketFilterChain.class);
 
     private int filterIndex = 0;
-    private final List<Filter> filters;
+    private final Filter[] filters;
 
     private final Servlet delegateServlet;
 
@@ -51,15 +51,25 @@ public class PAXWicketFilterChain implements FilterChain {
      * @param delegateServlet a {@link javax.servlet.Servlet} object.
      */
     public PAXWicketFilterChain(List<Filter> filter, Servlet delegateServlet) {
+        this(filter.toArray(new Filter[filter.size()]), delegateServlet);
+    }
+
+    /**
+     * <p>Constructor for PAXWicketFilterChain.</p>
+     *
+     * @param filter the filters to apply in order, the array is not copied and must not be modified.
+     * @param delegateServlet a {@link javax.servlet.Servlet} object.
+     */
+    public PAXWicketFilterChain(Filter[] filter, Servlet delegateServlet) {
         filters = filter;
         this.delegateServlet = delegateServlet;
     }
 
     /** {@inheritDoc} */
     public void doFilter(ServletRequest request, ServletResponse response) throws IOException, ServletException {
-        int size = filters.size();
+        int size = filters.length;
         if (filterIndex < size) {
-            Filter filter = filters.get(filterIndex);
+            Filter filter = filters[filterIndex];
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("call filter {}/{} of type {} ", new Object[]{ (filterIndex + 1), size,
                     filter.getClass().getName() });
@@ -25,17 +25,16 @@ import java.lang.reflect.Type;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-
-import javax.inject.Inject;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import net.sf.cglib.proxy.Factory;
 
-import org.ops4j.pax.wicket.api.PaxWicketBeanAllowNull;
 import org.ops4j.pax.wicket.api.PaxWicketBeanInjectionSource;
+import org.ops4j.pax.wicket.internal.injection.InjectionPlan.InjectionPoint;
 import org.ops4j.pax.wicket.spi.OverwriteProxy;
 import org.ops4j.pax.wicket.spi.ProxyTargetLocator;
 import org.ops4j.pax.wicket.spi.ProxyTargetLocatorFactory;
@@ -48,18 +47,31 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 public class BundleAnalysingComponentInstantiationListener extends AbstractPaxWicketInjector {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(BundleAnalysingComponentInstantiationListener.class);
+
     /**
-     * 
+     * Framework property that, when set to <code>true</code>, lets all instances of a component share the proxies
+     * injected into the same field as long as the injection source and the overwrites are the same, instead of
+     * creating new proxies and locators for every instance
      */
-    private static final ProxyTargetLocatorFactory[] EMPTY_ARRAY = new ProxyTargetLocatorFactory[0];
-
-    private static final Logger LOGGER = LoggerFactory.getLogger(BundleAnalysingComponentInstantiationListener.class);
+    public static final String SHARED_PROXIES_PROPERTY = "pax.wicket.injection.sharedproxies";
 
     private final BundleContext bundleContext;
-    private String bundleResources = "";
+    /**
+     * All class entries of the bundle (as dotted names, including any bundle classpath prefix) indexed by their
+     * simple name, so a lookup does not need to scan all entries of the bundle
+     */
+    private final Map<String, List<String>> classEntries = new HashMap<String, List<String>>();
     private final String defaultInjectionSource;
 
-    private final ServiceTracker<ProxyTargetLocatorFactory, ProxyTargetLocatorFactory> tracker;
+    private final InjectionReadinessGate readinessGate;
+
+    private final ConcurrentMap<Class<?>, InjectionPlan> injectionPlans =
+        new ConcurrentHashMap<Class<?>, InjectionPlan>();
+
+    private final boolean sharedProxies;
+    private final ConcurrentMap<SharedProxyKey, SharedProxy> sharedProxyCache =
+        new ConcurrentHashMap<SharedProxyKey, SharedProxy>();
 
     /**
      * <p>Constructor for BundleAnalysingComponentInstantiationListener.</p>
@@ -70,9 +82,23 @@ public class BundleAnalysingComponentInstantiationListener extends AbstractPaxWi
      */
     public BundleAnalysingComponentInstantiationListener(BundleContext bundleContext, String defaultInjectionSource,
             ServiceTracker<ProxyTargetLocatorFactory, ProxyTargetLocatorFactory> tracker) {
+        this(bundleContext, defaultInjectionSource, new InjectionReadinessGate(tracker,
+            bundleContext.getBundle().getSymbolicName(), InjectionReadinessGate.getTimeout(bundleContext, null)));
+    }
+
+    /**
+     * <p>Constructor for BundleAnalysingComponentInstantiationListener.</p>
+     *
+     * @param bundleContext a {@link org.osgi.framework.BundleContext} object.
+     * @param defaultInjectionSource a {@link java.lang.String} object.
+     * @param readinessGate the gate providing the factories, usually shared by all bundles of an application
+     */
+    public BundleAnalysingComponentInstantiationListener(BundleContext bundleContext, String defaultInjectionSource,
+            InjectionReadinessGate readinessGate) {
         this.bundleContext = bundleContext;
         this.defaultInjectionSource = defaultInjectionSource;
-        this.tracker = tracker;
+        this.readinessGate = readinessGate;
+        sharedProxies = Boolean.valueOf(bundleContext.getProperty(SHARED_PROXIES_PROPERTY));
         // TODO use ExtendedBundle instead
         Enumeration<URL> entries = bundleContext.getBundle().findEntries("/", "*.class", true);
         if (entries == null) {
@@ -80,10 +106,17 @@ public class BundleAnalysingComponentInstantiationListener extends AbstractPaxWi
             return;
         }
         while (entries.hasMoreElements()) {
-            String urlRepresentation =
-                entries.nextElement().toExternalForm().replace("bundle://.+?/", "").replace('/', '.');
-            LOGGER.trace("Found entry {} in bundle {}", urlRepresentation, bundleContext.getBundle().getSymbolicName());
-            bundleResources += urlRepresentation;
+            String entry = entries.nextElement().getPath();
+            LOGGER.trace("Found entry {} in bundle {}", entry, bundleContext.getBundle().getSymbolicName());
+            int start = entry.startsWith("/") ? 1 : 0;
+            String className = entry.substring(start, entry.length() - ".class".length()).replace('/', '.');
+            String simpleName = className.substring(className.lastIndexOf('.') + 1);
+            List<String> candidates = classEntries.get(simpleName);
+            if (candidates == null) {
+                candidates = new ArrayList<String>(1);
+                classEntries.put(simpleName, candidates);
+            }
+            candidates.add(className);
         }
     }
 
@@ -96,16 +129,36 @@ public class BundleAnalysingComponentInstantiationListener extends AbstractPaxWi
     public boolean injectionPossible(Class<?> component) {
         String name = component.getName();
         LOGGER.debug("Try to find class {} in bundle {}", name, bundleContext.getBundle().getSymbolicName());
-        String searchString = name.replaceAll("\\$\\$.*", "");
-        searchString = searchString.replaceAll("\\$", "\\\\\\$"); // for nested and anonymous classes
-        if (bundleResources.matches(".*" + searchString + ".*")) {
-            LOGGER.trace("Found class {} in bundle {}", name, bundleContext.getBundle().getSymbolicName());
-            return true;
+        int generatedSuffix = name.indexOf("$$");
+        if (generatedSuffix >= 0) {
+            // strip the suffix of CGLib generated subclasses
+            name = name.substring(0, generatedSuffix);
+        }
+        List<String> candidates = classEntries.get(name.substring(name.lastIndexOf('.') + 1));
+        if (candidates != null) {
+            for (String candidate : candidates) {
+                if (isEntryOfClass(candidate, name)) {
+                    LOGGER.trace("Found class {} in bundle {}", name, bundleContext.getBundle().getSymbolicName());
+                    return true;
+                }
+            }
         }
         LOGGER.trace("Class {} not available in bundle {}", name, bundleContext.getBundle().getSymbolicName());
         return false;
     }
 
+    /**
+     * An entry belongs to the class if it either is exactly the class name or the class name prefixed by a bundle
+     * classpath folder (e.g. WEB-INF/classes)
+     */
+    private static boolean isEntryOfClass(String entry, String className) {
+        int prefixLength = entry.length() - className.length();
+        if (prefixLength == 0) {
+            return entry.equals(className);
+        }
+        return prefixLength > 0 && entry.charAt(prefixLength - 1) == '.' && entry.endsWith(className);
+    }
+
     /** {@inheritDoc} */
     public void inject(Object component, Class<?> toHandle) {
         ClassLoader currentClassLoader = Thread.currentThread().getContextClassLoader();
@@ -125,39 +178,40 @@ public class BundleAnalysingComponentInstantiationListener extends AbstractPaxWi
             }
             Thread.currentThread().setContextClassLoader(realClass.getClassLoader());
 
-            List<Field> fields = getSingleLevelOfFields(realClass);
-            for (Field field : fields) {
-                if (!field.isAnnotationPresent(Inject.class)) {
-                    continue;
-                }
-                PaxWicketBeanInjectionSource annotation = field.getAnnotation(PaxWicketBeanInjectionSource.class);
-                if (annotation != null && annotation.value() != null && !annotation.value().isEmpty()) {
-                    injectionSource = annotation.value();
+            for (InjectionPoint point : getInjectionPlan(realClass).getInjectionPoints()) {
+                Field field = point.getField();
+                String fieldInjectionSource = injectionSource;
+                if (point.getInjectionSource() != null) {
+                    fieldInjectionSource = point.getInjectionSource();
                 }
                 Object value;
-                if (field.getType().equals(BundleContext.class)) {
-                    // Is this the special BundleContext type?
-                    value = injectBundleContext(realClass, field);
-                } else if (field.getType().equals(Future.class)) {
-                    value = injectFuture(field, realClass, overwrites, injectionSource);
-                } else {
-                    ProxyTargetLocator locator =
-                        createProxyTargetLocator(field, getBeanType(field), realClass, overwrites, injectionSource,
-                            false);
-                    if (locator != null) {
-                        Object proxy = LazyInitProxyFactory.createProxy(getBeanType(field),
-                            locator);
-                        value = proxy;
-                    } else {
-                        value = null;
-                    }
+                switch (point.getKind()) {
+                    case BUNDLE_CONTEXT:
+                        value = injectBundleContext(realClass, field);
+                        break;
+                    case FUTURE:
+                        value = InjectionFuture.create(point.getBeanType(),
+                            createProxyTargetLocator(point, realClass, overwrites, fieldInjectionSource, true));
+                        break;
+                    default:
+                        if (sharedProxies) {
+                            value = getSharedProxy(point, realClass, overwrites, fieldInjectionSource);
+                            break;
+                        }
+                        ProxyTargetLocator locator =
+                            createProxyTargetLocator(point, realClass, overwrites, fieldInjectionSource, false);
+                        if (locator != null) {
+                            value = LazyInitProxyFactory.createProxy(point.getBeanType(), locator);
+                        } else {
+                            value = null;
+                        }
                 }
                 if (value == null) {
-                    if (field.getType().isPrimitive()) {
+                    if (point.isPrimitive()) {
                         throw new IllegalStateException("The primitive field " + field.getName()
                                 + " is not allowed to be set to null");
                     }
-                    if (field.getAnnotation(PaxWicketBeanAllowNull.class) == null) {
+                    if (!point.isAllowNull()) {
                         throw new IllegalStateException("The field " + field.getName()
                                 + " is not allowed to be set to null, but value for injection was finally a null value");
                     }
@@ -169,14 +223,79 @@ public class BundleAnalysingComponentInstantiationListener extends AbstractPaxWi
         }
     }
 
-    private Future<?> injectFuture(Field field, final Class<?> page,
-            Map<String, String> overwrites,
+    /**
+     * Returns the proxy shared by all instances for the given field, injection source and overwrites. A shared proxy
+     * is created again once the set of factories changed, since another factory might be responsible by now.
+     */
+    private Object getSharedProxy(InjectionPoint point, Class<?> page, Map<String, String> overwrites,
             String injectionSource) {
-        Class<?> realClass = getGenericTypeArgument(field);
-        ProxyTargetLocator locator =
-                        createProxyTargetLocator(field, realClass, page, overwrites, injectionSource, true);
-        return InjectionFuture.create(realClass, locator);
+        SharedProxyKey key = new SharedProxyKey(point, injectionSource, overwrites);
+        int trackingCount = readinessGate.getTrackingCount();
+        SharedProxy shared = sharedProxyCache.get(key);
+        if (shared != null && shared.trackingCount == trackingCount) {
+            return shared.proxy;
+        }
+        ProxyTargetLocator locator = createProxyTargetLocator(point, page, overwrites, injectionSource, false);
+        if (locator == null) {
+            return null;
+        }
+        if (overwrites != null) {
+            key = new SharedProxyKey(point, injectionSource, new HashMap<String, String>(overwrites));
+        }
+        Object proxy = LazyInitProxyFactory.createSharedProxy(point.getBeanType(), locator);
+        sharedProxyCache.put(key, new SharedProxy(proxy, trackingCount));
+        return proxy;
+    }
 
+    /**
+     * Returns the cached {@link InjectionPlan} for the given class, creating it on first use. The plans are held by
+     * this listener and are therefore dropped together with it when the bundle goes away.
+     *
+     * @param clazz a {@link java.lang.Class} object.
+     * @return a {@link org.ops4j.pax.wicket.internal.injection.InjectionPlan} object.
+     */
+    public InjectionPlan getInjectionPlan(Class<?> clazz) {
+        InjectionPlan plan = injectionPlans.get(clazz);
+        if (plan == null) {
+            plan = InjectionPlan.create(clazz);
+            InjectionPlan existing = injectionPlans.putIfAbsent(clazz, plan);
+            if (existing != null) {
+                plan = existing;
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Does the work of the first injection into instances of the given class up front: the {@link InjectionPlan} is
+     * created and the proxy classes for its fields are generated. Only the fields declared by the class itself are
+     * considered, just like {@link #inject(Object, Class)} does.
+     *
+     * @param clazz a class of the bundle of this listener
+     * @return <code>true</code> if the class declares fields to inject
+     */
+    public boolean warmUp(Class<?> clazz) {
+        if (clazz.isInterface() || clazz.isAnnotation()) {
+            return false;
+        }
+        InjectionPlan plan = InjectionPlan.create(clazz);
+        if (plan.isEmpty()) {
+            return false;
+        }
+        injectionPlans.putIfAbsent(clazz, plan);
+        ClassLoader currentClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            // proxies for interfaces are defined by the context class loader set during injection
+            Thread.currentThread().setContextClassLoader(clazz.getClassLoader());
+            for (InjectionPoint point : plan.getInjectionPoints()) {
+                if (point.getKind() == InjectionPlan.Kind.PROXY) {
+                    LazyInitProxyFactory.prepareProxyClass(point.getBeanType());
+                }
+            }
+        } finally {
+            Thread.currentThread().setContextClassLoader(currentClassLoader);
+        }
+        return true;
     }
 
     /**
@@ -226,18 +345,14 @@ public class BundleAnalysingComponentInstantiationListener extends AbstractPaxWi
         }
     }
 
-    private ProxyTargetLocator createProxyTargetLocator(Field field, Class<?> realFieldType, final Class<?> page,
+    private ProxyTargetLocator createProxyTargetLocator(InjectionPoint point, final Class<?> page,
             Map<String, String> overwrites,
             String injectionSource, boolean returnFutureLocators) {
-        ProxyTargetLocatorFactory[] factories = tracker.getServices(EMPTY_ARRAY);
-        if (factories.length == 0) {
-            // If no factories are present we will wait for 5 seconds for at least one
-            // TODO: Should this be configurable?
-            try {
-                factories = new ProxyTargetLocatorFactory[]{ tracker.waitForService(TimeUnit.SECONDS.toMillis(5)) };
-            } catch (InterruptedException e) {
-                // We ignore this...
-            }
+        Field field = point.getField();
+        ProxyTargetLocatorFactory[] factories = readinessGate.getFactories();
+        if (factories.length == 0 && !point.isAllowNull()) {
+            throw readinessGate.notReady(String.format(
+                "No injection source available yet for field [%s] in class [%s]", field.getName(), page.getName()));
         }
         List<ProxyTargetLocator> locators = new ArrayList<ProxyTargetLocator>(1);
         for (ProxyTargetLocatorFactory factory : factories) {
@@ -252,7 +367,8 @@ public class BundleAnalysingComponentInstantiationListener extends AbstractPaxWi
                     if (returnFutureLocators
                             && factory instanceof ProxyTargetLocatorFactory.DelayableProxyTargetLocatorFactory) {
                         locator = ((ProxyTargetLocatorFactory.DelayableProxyTargetLocatorFactory) factory)
-                                .createFutureProxyTargetLocator(bundleContext, field, realFieldType, page, overwrites);
+                                .createFutureProxyTargetLocator(bundleContext, field, point.getBeanType(), page,
+                                    overwrites);
                     } else {
                         locator =
                             factory.createProxyTargetLocator(bundleContext, field, page, overwrites);
@@ -269,7 +385,7 @@ public class BundleAnalysingComponentInstantiationListener extends AbstractPaxWi
             }
         }
         if (locators.isEmpty()) {
-            if (field.getAnnotation(PaxWicketBeanAllowNull.class) != null) {
+            if (point.isAllowNull()) {
                 return null;
             } else {
                 throw new IllegalStateException(
@@ -290,6 +406,52 @@ public class BundleAnalysingComponentInstantiationListener extends AbstractPaxWi
 
     }
 
+    private static final class SharedProxyKey {
+
+        private final InjectionPoint point;
+        private final String injectionSource;
+        private final Map<String, String> overwrites;
+
+        private SharedProxyKey(InjectionPoint point, String injectionSource, Map<String, String> overwrites) {
+            this.point = point;
+            this.injectionSource = injectionSource;
+            this.overwrites = overwrites;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = point.hashCode();
+            hash = 31 * hash + (injectionSource == null ? 0 : injectionSource.hashCode());
+            return 31 * hash + (overwrites == null ? 0 : overwrites.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof SharedProxyKey)) {
+                return false;
+            }
+            SharedProxyKey other = (SharedProxyKey) obj;
+            return point == other.point
+                    && (injectionSource == null ? other.injectionSource == null
+                        : injectionSource.equals(other.injectionSource))
+                    && (overwrites == null ? other.overwrites == null : overwrites.equals(other.overwrites));
+        }
+    }
+
+    private static final class SharedProxy {
+
+        private final Object proxy;
+        private final int trackingCount;
+
+        private SharedProxy(Object proxy, int trackingCount) {
+            this.proxy = proxy;
+            this.trackingCount = trackingCount;
+        }
+    }
+
     /**
      * @param factories
      * @return
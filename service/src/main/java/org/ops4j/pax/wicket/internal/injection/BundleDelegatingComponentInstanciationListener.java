@@ -19,15 +19,24 @@
  */
 package org.ops4j.pax.wicket.internal.injection;
 
-import java.util.Collection;
+import java.util.Collections;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.ops4j.pax.wicket.api.Constants;
+import org.ops4j.pax.wicket.api.InjectionReadiness;
 import org.ops4j.pax.wicket.api.PaxWicketBeanInjectionSource;
 import org.ops4j.pax.wicket.api.PaxWicketInjector;
+import org.ops4j.pax.wicket.api.SelectivePaxWicketInjector;
 import org.ops4j.pax.wicket.internal.InternalBundleDelegationProvider;
 import org.ops4j.pax.wicket.internal.extender.ExtendedBundle;
 import org.ops4j.pax.wicket.spi.ProxyTargetLocatorFactory;
@@ -36,20 +45,37 @@ import org.osgi.framework.ServiceRegistration;
 import org.osgi.util.tracker.ServiceTracker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-public class BundleDelegatingComponentInstanciationListener implements PaxWicketInjector,
-        InternalBundleDelegationProvider {
+public class BundleDelegatingComponentInstanciationListener implements SelectivePaxWicketInjector,
+        InjectionReadiness, InternalBundleDelegationProvider {
 
     private static final Logger LOGGER = LoggerFactory
             .getLogger(BundleDelegatingComponentInstanciationListener.class);
 
+    /**
+     * Framework property that, when set to <code>true</code>, lets the listeners analyse the classes of a bundle in
+     * the background as soon as it is added, so the first injections into its components are not slower than later
+     * ones
+     */
+    public static final String WARM_UP_PROPERTY = "pax.wicket.injection.warmup";
+
+    /** bundles waiting for their warm up, further bundles are not warmed up but analysed on first use as usual */
+    private static final int MAX_PENDING_WARM_UPS = 32;
+
     private final String applicationName;
     private final BundleContext paxWicketBundleContext;
 
-    private final Map<String, BundleAnalysingComponentInstantiationListener> listeners =
-        new HashMap<String, BundleAnalysingComponentInstantiationListener>();
-    private ServiceRegistration<PaxWicketInjector> serviceRegistration;
+    /**
+     * Guards the replacement of the {@link #registry}, injections only read the current registry and never lock
+     */
+    private final Object registryLock = new Object();
+    private volatile Registry registry = new Registry(
+        Collections.<String, BundleAnalysingComponentInstantiationListener> emptyMap());
+    private ServiceRegistration<?> serviceRegistration;
+    /** written by start and stop, read by the extender thread adding bundles */
+    private volatile ThreadPoolExecutor warmUpExecutor;
 
     private final ServiceTracker<ProxyTargetLocatorFactory, ProxyTargetLocatorFactory> factoryTracker;
+    private final InjectionReadinessGate readinessGate;
 
     /**
      * <p>Constructor for BundleDelegatingComponentInstanciationListener.</p>
@@ -58,12 +84,25 @@ public class BundleDelegatingComponentInstanciationListener implements PaxWicket
      * @param applicationName a {@link java.lang.String} object.
      */
     public BundleDelegatingComponentInstanciationListener(BundleContext paxWicketBundleContext, String applicationName) {
+        this(paxWicketBundleContext, applicationName, InjectionReadinessGate.getTimeout(paxWicketBundleContext, null));
+    }
+
+    /**
+     * <p>Constructor for BundleDelegatingComponentInstanciationListener.</p>
+     *
+     * @param paxWicketBundleContext a {@link org.osgi.framework.BundleContext} object.
+     * @param applicationName a {@link java.lang.String} object.
+     * @param injectionTimeout the number of milliseconds injections wait for a first injection source
+     */
+    public BundleDelegatingComponentInstanciationListener(BundleContext paxWicketBundleContext, String applicationName,
+            long injectionTimeout) {
         this.paxWicketBundleContext = paxWicketBundleContext;
         this.applicationName = applicationName;
         // TODO replace this by a DS injection, we just keep this for now to allow easier transition
         this.factoryTracker =
             new ServiceTracker<ProxyTargetLocatorFactory, ProxyTargetLocatorFactory>(paxWicketBundleContext,
                 ProxyTargetLocatorFactory.class, null);
+        this.readinessGate = new InjectionReadinessGate(factoryTracker, applicationName, injectionTimeout);
     }
 
     /**
@@ -75,6 +114,16 @@ public class BundleDelegatingComponentInstanciationListener implements PaxWicket
         return applicationName;
     }
 
+    /** {@inheritDoc} */
+    public boolean isInjectionReady() {
+        return readinessGate.isReady();
+    }
+
+    /** {@inheritDoc} */
+    public int getParkedThreads() {
+        return readinessGate.getParkedThreads();
+    }
+
     /**
      * <p>start.</p>
      */
@@ -82,13 +131,36 @@ public class BundleDelegatingComponentInstanciationListener implements PaxWicket
         this.factoryTracker.open();
         Dictionary<String, String> props = new Hashtable<String, String>();
         props.put(Constants.APPLICATION_NAME, applicationName);
-        serviceRegistration = paxWicketBundleContext.registerService(PaxWicketInjector.class, this, props);
+        serviceRegistration = paxWicketBundleContext.registerService(
+            new String[]{ PaxWicketInjector.class.getName(), InjectionReadiness.class.getName() }, this, props);
+        if (Boolean.valueOf(paxWicketBundleContext.getProperty(WARM_UP_PROPERTY))) {
+            warmUpExecutor = createWarmUpExecutor();
+        }
+    }
+
+    private ThreadPoolExecutor createWarmUpExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(MAX_PENDING_WARM_UPS), new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "pax-wicket-warmup-" + applicationName);
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     /**
      * <p>stop.</p>
      */
     public void stop() {
+        ThreadPoolExecutor executor = warmUpExecutor;
+        if (executor != null) {
+            warmUpExecutor = null;
+            executor.shutdownNow();
+        }
         this.factoryTracker.close();
         if (serviceRegistration == null) {
             LOGGER.warn("Trying to unregister listener although not registered.");
@@ -102,10 +174,23 @@ public class BundleDelegatingComponentInstanciationListener implements PaxWicket
         if (serviceRegistration == null) {
             throw new IllegalStateException("Cannot add any bundle to listener while not started.");
         }
-        synchronized (listeners) {
-            listeners.put(bundle.getBundle().getSymbolicName(), new BundleAnalysingComponentInstantiationListener(
-                    bundle.getBundle().getBundleContext(), PaxWicketBeanInjectionSource.INJECTION_SOURCE_SCAN,
-                    factoryTracker));
+        BundleAnalysingComponentInstantiationListener analyser = new BundleAnalysingComponentInstantiationListener(
+                bundle.getBundle().getBundleContext(), PaxWicketBeanInjectionSource.INJECTION_SOURCE_SCAN,
+                readinessGate);
+        synchronized (registryLock) {
+            Map<String, BundleAnalysingComponentInstantiationListener> listeners =
+                new HashMap<String, BundleAnalysingComponentInstantiationListener>(registry.listeners);
+            listeners.put(bundle.getBundle().getSymbolicName(), analyser);
+            registry = new Registry(listeners);
+        }
+        ThreadPoolExecutor executor = warmUpExecutor;
+        if (executor != null) {
+            try {
+                executor.execute(new WarmUp(bundle, analyser));
+            } catch (RejectedExecutionException e) {
+                // too many bundles waiting or the listener has been stopped in the meantime
+                LOGGER.debug("Warm up rejected, skipping bundle {}", bundle.getID());
+            }
         }
     }
 
@@ -114,23 +199,108 @@ public class BundleDelegatingComponentInstanciationListener implements PaxWicket
         if (serviceRegistration == null) {
             throw new IllegalStateException("Cannot add any bundle to listener while not started.");
         }
-        synchronized (listeners) {
-            listeners.remove(bundle.getBundle().getSymbolicName());
+        synchronized (registryLock) {
+            Map<String, BundleAnalysingComponentInstantiationListener> listeners =
+                new HashMap<String, BundleAnalysingComponentInstantiationListener>(registry.listeners);
+            if (listeners.remove(bundle.getBundle().getSymbolicName()) != null) {
+                registry = new Registry(listeners);
+            }
         }
     }
 
     /** {@inheritDoc} */
     public void inject(Object toInject, Class<?> toHandle) {
-        synchronized (listeners) {
-            Collection<BundleAnalysingComponentInstantiationListener> values = listeners.values();
-            for (BundleAnalysingComponentInstantiationListener analyser : values) {
+        if (!tryInject(toInject, toHandle)) {
+            throw new IllegalStateException("no source for injection found");
+        }
+    }
+
+    /** {@inheritDoc} */
+    public boolean tryInject(Object toInject, Class<?> toHandle) {
+        Registry current = registry;
+        BundleAnalysingComponentInstantiationListener owner = current.owners.get(toHandle);
+        if (owner == null) {
+            for (BundleAnalysingComponentInstantiationListener analyser : current.analysers) {
                 if (analyser.injectionPossible(toHandle)) {
-                    analyser.inject(toInject, toHandle);
-                    return;
+                    owner = analyser;
+                    // a registry replaced in the meantime starts with its own empty owners
+                    current.owners.put(toHandle, owner);
+                    break;
+                }
+            }
+            if (owner == null) {
+                return false;
+            }
+        }
+        owner.inject(toInject, toHandle);
+        return true;
+    }
+
+    /**
+     * Analyses all classes of a newly added bundle and registers its analyser as owner of the classes to inject, as
+     * long as the analyser is still part of the current registry.
+     */
+    private final class WarmUp implements Runnable {
+
+        private final ExtendedBundle bundle;
+        private final BundleAnalysingComponentInstantiationListener analyser;
+
+        private WarmUp(ExtendedBundle bundle, BundleAnalysingComponentInstantiationListener analyser) {
+            this.bundle = bundle;
+            this.analyser = analyser;
+        }
+
+        public void run() {
+            LOGGER.debug("Warming up injection for bundle {}", bundle.getID());
+            int prepared = 0;
+            try {
+                for (Class<?> clazz : bundle.getAllClasses()) {
+                    Registry current = registry;
+                    if (Thread.currentThread().isInterrupted() || !current.contains(analyser)) {
+                        // the bundle is gone or the listener has been stopped
+                        return;
+                    }
+                    try {
+                        if (analyser.warmUp(clazz)) {
+                            current.owners.putIfAbsent(clazz, analyser);
+                            prepared++;
+                        }
+                    } catch (RuntimeException e) {
+                        LOGGER.debug("Warm up of class {} failed, it is analysed on first use", clazz.getName(), e);
+                    }
+                }
+            } catch (Throwable e) {
+                LOGGER.warn("Warm up of bundle {} failed, its classes are analysed on first use", bundle.getID(), e);
+            }
+            LOGGER.debug("Warmed up {} classes of bundle {}", prepared, bundle.getID());
+        }
+    }
+
+    /**
+     * An immutable snapshot of the analysers of all bundles, replaced as a whole whenever a bundle is added or
+     * removed. It also remembers which analyser is responsible for a component class; as the owners belong to the
+     * snapshot they can never refer to an analyser of a removed bundle.
+     */
+    private static final class Registry {
+
+        private final Map<String, BundleAnalysingComponentInstantiationListener> listeners;
+        private final BundleAnalysingComponentInstantiationListener[] analysers;
+        private final ConcurrentMap<Class<?>, BundleAnalysingComponentInstantiationListener> owners =
+            new ConcurrentHashMap<Class<?>, BundleAnalysingComponentInstantiationListener>();
+
+        private Registry(Map<String, BundleAnalysingComponentInstantiationListener> listeners) {
+            this.listeners = Collections.unmodifiableMap(listeners);
+            analysers = listeners.values().toArray(new BundleAnalysingComponentInstantiationListener[listeners.size()]);
+        }
+
+        private boolean contains(BundleAnalysingComponentInstantiationListener analyser) {
+            for (BundleAnalysingComponentInstantiationListener candidate : analysers) {
+                if (candidate == analyser) {
+                    return true;
                 }
             }
+            return false;
         }
-        throw new IllegalStateException("no source for injection found");
     }
 
 }
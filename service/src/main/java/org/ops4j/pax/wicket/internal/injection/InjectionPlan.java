@@ -0,0 +1,208 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.internal.injection;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import javax.inject.Inject;
+
+import org.ops4j.pax.wicket.api.PaxWicketBeanAllowNull;
+import org.ops4j.pax.wicket.api.PaxWicketBeanFilter;
+import org.ops4j.pax.wicket.api.PaxWicketBeanInjectionSource;
+import org.osgi.framework.BundleContext;
+
+/**
+ * The result of analysing the {@link Inject} annotated fields declared by a single class. A plan is created once per
+ * class so the reflection work is not repeated on every component instantiation.
+ *
+ * @version $Id: $Id
+ */
+public final class InjectionPlan {
+
+    private final Class<?> declaringClass;
+
+    private final InjectionPoint[] injectionPoints;
+
+    private InjectionPlan(Class<?> declaringClass, InjectionPoint[] injectionPoints) {
+        this.declaringClass = declaringClass;
+        this.injectionPoints = injectionPoints;
+    }
+
+    /**
+     * Analyses the fields declared by the given class (superclasses are not considered)
+     *
+     * @param clazz a {@link java.lang.Class} object.
+     * @return the plan for the given class
+     */
+    public static InjectionPlan create(Class<?> clazz) {
+        List<InjectionPoint> points = new ArrayList<InjectionPoint>();
+        for (Field field : clazz.getDeclaredFields()) {
+            if (field.isAnnotationPresent(Inject.class)) {
+                points.add(new InjectionPoint(field));
+            }
+        }
+        return new InjectionPlan(clazz, points.toArray(new InjectionPoint[points.size()]));
+    }
+
+    /**
+     * <p>Getter for the field <code>declaringClass</code>.</p>
+     *
+     * @return a {@link java.lang.Class} object.
+     */
+    public Class<?> getDeclaringClass() {
+        return declaringClass;
+    }
+
+    /**
+     * <p>Getter for the field <code>injectionPoints</code>, the returned array must not be modified.</p>
+     *
+     * @return an array of {@link org.ops4j.pax.wicket.internal.injection.InjectionPlan.InjectionPoint} objects.
+     */
+    public InjectionPoint[] getInjectionPoints() {
+        return injectionPoints;
+    }
+
+    /**
+     * <p>isEmpty.</p>
+     *
+     * @return <code>true</code> if the class does not declare any field to inject
+     */
+    public boolean isEmpty() {
+        return injectionPoints.length == 0;
+    }
+
+    /**
+     * The kind of value a field is injected with
+     */
+    public enum Kind {
+        /** the {@link BundleContext} of the requesting bundle */
+        BUNDLE_CONTEXT,
+        /** a {@link Future} resolving the generic type argument */
+        FUTURE,
+        /** a lazy proxy for the field type */
+        PROXY
+    }
+
+    /**
+     * A single resolved field of an {@link InjectionPlan}
+     */
+    public static final class InjectionPoint {
+
+        private final Field field;
+        private final Kind kind;
+        private final Class<?> beanType;
+        private final String injectionSource;
+        private final String filter;
+        private final boolean allowNull;
+
+        private InjectionPoint(Field field) {
+            if (!field.isAccessible()) {
+                field.setAccessible(true);
+            }
+            this.field = field;
+            Class<?> type = field.getType();
+            if (type.equals(BundleContext.class)) {
+                kind = Kind.BUNDLE_CONTEXT;
+                beanType = type;
+            } else if (type.equals(Future.class)) {
+                kind = Kind.FUTURE;
+                beanType = BundleAnalysingComponentInstantiationListener.getGenericTypeArgument(field);
+            } else {
+                kind = Kind.PROXY;
+                beanType = type;
+            }
+            PaxWicketBeanInjectionSource source = field.getAnnotation(PaxWicketBeanInjectionSource.class);
+            if (source != null && source.value() != null && !source.value().isEmpty()) {
+                injectionSource = source.value();
+            } else {
+                injectionSource = null;
+            }
+            PaxWicketBeanFilter beanFilter = field.getAnnotation(PaxWicketBeanFilter.class);
+            if (beanFilter != null && beanFilter.value() != null && !beanFilter.value().isEmpty()) {
+                filter = beanFilter.value();
+            } else {
+                filter = null;
+            }
+            allowNull = field.getAnnotation(PaxWicketBeanAllowNull.class) != null;
+        }
+
+        /**
+         * <p>Getter for the field <code>field</code>.</p>
+         *
+         * @return a {@link java.lang.reflect.Field} object, already made accessible.
+         */
+        public Field getField() {
+            return field;
+        }
+
+        /**
+         * <p>Getter for the field <code>kind</code>.</p>
+         *
+         * @return a {@link org.ops4j.pax.wicket.internal.injection.InjectionPlan.Kind} object.
+         */
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * <p>Getter for the field <code>beanType</code>.</p>
+         *
+         * @return the type of the field or the generic type argument for {@link Kind#FUTURE} fields
+         */
+        public Class<?> getBeanType() {
+            return beanType;
+        }
+
+        /**
+         * <p>Getter for the field <code>injectionSource</code>.</p>
+         *
+         * @return the value of the {@link PaxWicketBeanInjectionSource} annotation or <code>null</code>
+         */
+        public String getInjectionSource() {
+            return injectionSource;
+        }
+
+        /**
+         * <p>Getter for the field <code>filter</code>.</p>
+         *
+         * @return the value of the {@link PaxWicketBeanFilter} annotation or <code>null</code>
+         */
+        public String getFilter() {
+            return filter;
+        }
+
+        /**
+         * <p>isAllowNull.</p>
+         *
+         * @return <code>true</code> if the field is annotated with {@link PaxWicketBeanAllowNull}
+         */
+        public boolean isAllowNull() {
+            return allowNull;
+        }
+
+        /**
+         * <p>isPrimitive.</p>
+         *
+         * @return a boolean.
+         */
+        public boolean isPrimitive() {
+            return field.getType().isPrimitive();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.internal.injection;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.http.flow.AbortWithHttpErrorCodeException;
+import org.ops4j.pax.wicket.api.Constants;
+import org.ops4j.pax.wicket.spi.ProxyTargetLocatorFactory;
+import org.osgi.framework.BundleContext;
+import org.osgi.util.tracker.ServiceTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands out the {@link ProxyTargetLocatorFactory} services injections are done with and decides how long injections
+ * wait for them while there are none. All injections share a single deadline that starts with the first injection
+ * finding no factory, so during startup or a bundle update threads are parked for at most the configured timeout in
+ * total instead of the timeout per injected field; once the deadline has passed injections fail immediately until a
+ * factory shows up again.
+ *
+ * @version $Id: $Id
+ */
+public final class InjectionReadinessGate {
+
+    /** the number of milliseconds injections wait for a factory if nothing else is configured */
+    public static final long DEFAULT_TIMEOUT = 5000;
+
+    private static final ProxyTargetLocatorFactory[] EMPTY_ARRAY = new ProxyTargetLocatorFactory[0];
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InjectionReadinessGate.class);
+
+    private final ServiceTracker<ProxyTargetLocatorFactory, ProxyTargetLocatorFactory> tracker;
+    private final String name;
+    private final long timeout;
+
+    /** the end of the current waiting period or <code>0</code> while factories are available */
+    private final AtomicLong deadline = new AtomicLong();
+    private final AtomicInteger parkedThreads = new AtomicInteger();
+
+    /**
+     * <p>Constructor for InjectionReadinessGate.</p>
+     *
+     * @param tracker the tracker of the factories, opened and closed by the caller
+     * @param name the name of the application or bundle the gate is used for
+     * @param timeout the number of milliseconds injections wait for a factory, <code>0</code> to fail right away
+     */
+    public InjectionReadinessGate(ServiceTracker<ProxyTargetLocatorFactory, ProxyTargetLocatorFactory> tracker,
+            String name, long timeout) {
+        this.tracker = tracker;
+        this.name = name;
+        this.timeout = Math.max(0, timeout);
+    }
+
+    /**
+     * Determines the timeout to use, the configured value takes precedence over the
+     * {@link Constants#INJECTION_TIMEOUT} framework property
+     *
+     * @param bundleContext a {@link org.osgi.framework.BundleContext} object.
+     * @param configured the value of the {@link Constants#INJECTION_TIMEOUT} service property or <code>null</code>
+     * @return the timeout in milliseconds
+     */
+    public static long getTimeout(BundleContext bundleContext, Object configured) {
+        Object value = configured != null ? configured : bundleContext.getProperty(Constants.INJECTION_TIMEOUT);
+        if (value == null) {
+            return DEFAULT_TIMEOUT;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        try {
+            return Long.parseLong(value.toString().trim());
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Ignored invalid {} value {}, using {}", Constants.INJECTION_TIMEOUT, value, DEFAULT_TIMEOUT);
+            return DEFAULT_TIMEOUT;
+        }
+    }
+
+    /**
+     * Returns the available factories, waiting for the first one to show up if there are none and the deadline has not
+     * passed yet
+     *
+     * @return the factories, empty if there are still none
+     */
+    public ProxyTargetLocatorFactory[] getFactories() {
+        ProxyTargetLocatorFactory[] factories = tracker.getServices(EMPTY_ARRAY);
+        if (factories.length > 0) {
+            if (deadline.get() != 0) {
+                deadline.set(0);
+            }
+            return factories;
+        }
+        long now = System.currentTimeMillis();
+        long end = deadline.get();
+        if (end == 0) {
+            end = now + timeout;
+            if (!deadline.compareAndSet(0, end)) {
+                end = Math.max(deadline.get(), now);
+            }
+        }
+        long wait = end - now;
+        if (wait <= 0) {
+            LOGGER.debug("No injection source available for {}, not waiting any longer", name);
+            return EMPTY_ARRAY;
+        }
+        parkedThreads.incrementAndGet();
+        try {
+            LOGGER.debug("No injection source available for {}, waiting up to {} ms", name, wait);
+            tracker.waitForService(wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            parkedThreads.decrementAndGet();
+        }
+        return tracker.getServices(EMPTY_ARRAY);
+    }
+
+    /**
+     * Creates the exception thrown when an injection can't be done because there is no factory yet. Within a request
+     * the request is answered with a <code>503 Service Unavailable</code>.
+     *
+     * @param message a {@link java.lang.String} object.
+     * @return the exception to throw
+     */
+    public RuntimeException notReady(String message) {
+        if (RequestCycle.get() != null) {
+            return new AbortWithHttpErrorCodeException(HttpServletResponse.SC_SERVICE_UNAVAILABLE, message);
+        }
+        return new IllegalStateException(message);
+    }
+
+    /**
+     * <p>isReady.</p>
+     *
+     * @return <code>true</code> if at least one factory is available
+     */
+    public boolean isReady() {
+        return tracker.size() > 0;
+    }
+
+    /**
+     * <p>getTrackingCount.</p>
+     *
+     * @return a number that changes whenever a factory is added, modified or removed
+     */
+    public int getTrackingCount() {
+        return tracker.getTrackingCount();
+    }
+
+    /**
+     * <p>Getter for the field <code>timeout</code>.</p>
+     *
+     * @return the number of milliseconds injections wait for a factory
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * <p>Getter for the field <code>parkedThreads</code>.</p>
+     *
+     * @return the number of threads currently waiting for a factory
+     */
+    public int getParkedThreads() {
+        return parkedThreads.get();
+    }
+
+}
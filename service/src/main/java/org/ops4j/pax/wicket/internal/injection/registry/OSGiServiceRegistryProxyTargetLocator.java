@@ -43,6 +43,14 @@ public class OSGiServiceRegistryProxyTargetLocator implements FutureProxyTargetL
 
     private static final Logger LOGGER = LoggerFactory.getLogger(OSGiServiceRegistryProxyTargetLocator.class);
 
+    /**
+     * Framework property that, when set to <code>true</code>, lets the locators keep a live handle to their service
+     * that is only updated by service events instead of querying the service registry for every proxied call; injected
+     * <code>Iterable</code>, <code>Collection</code>, <code>List</code> and <code>Set</code> fields are backed by a
+     * snapshot of the tracked services then
+     */
+    public static final String TRACK_SERVICES_PROPERTY = "pax.wicket.injection.trackservices";
+
     private static final long serialVersionUID = -5726156325232163363L;
     private final BundleContext bundleContext;
 
@@ -52,6 +60,10 @@ public class OSGiServiceRegistryProxyTargetLocator implements FutureProxyTargetL
 
     private final String filterString;
 
+    private transient Boolean trackServices;
+
+    private transient volatile TrackedProxyTarget trackedProxyTarget;
+
     /**
      * <p>Constructor for OSGiServiceRegistryProxyTargetLocator.</p>
      *
@@ -71,9 +83,17 @@ public class OSGiServiceRegistryProxyTargetLocator implements FutureProxyTargetL
     /**
      * <p>locateProxyTarget.</p>
      *
-     * @return a {@link org.ops4j.pax.wicket.spi.ReleasableProxyTarget} object.
+     * @return a {@link org.ops4j.pax.wicket.spi.ReleasableProxyTarget} object, if services are tracked it always
+     *         returns the currently best matching service and releasing it does nothing
      */
     public ReleasableProxyTarget locateProxyTarget() {
+        if (isTrackServices()) {
+            return locateTrackedProxyTarget();
+        }
+        return locateReleasableProxyTarget();
+    }
+
+    private ReleasableProxyTarget locateReleasableProxyTarget() {
         ServiceReference<?>[] references = fetchReferences();
         if (references != null) {
             // Sort the references...
@@ -109,6 +129,40 @@ public class OSGiServiceRegistryProxyTargetLocator implements FutureProxyTargetL
         }
     }
 
+    private boolean isTrackServices() {
+        if (trackServices == null) {
+            trackServices = Boolean.valueOf(bundleContext.getProperty(TRACK_SERVICES_PROPERTY));
+        }
+        return trackServices.booleanValue();
+    }
+
+    private ReleasableProxyTarget locateTrackedProxyTarget() {
+        TrackedProxyTarget target = trackedProxyTarget;
+        if (target == null) {
+            target = new TrackedProxyTarget(getTrackedServiceHandle());
+            trackedProxyTarget = target;
+        }
+        // make sure a service is present at all, like an untracked lookup would do
+        target.getTarget();
+        return target;
+    }
+
+    private TrackedServiceHandle getTrackedServiceHandle() {
+        try {
+            return TrackedServiceHandle.getHandle(bundleContext, getServiceFilter());
+        } catch (InvalidSyntaxException e) {
+            throw new RuntimeException("filter creation failed", e);
+        }
+    }
+
+    private String getServiceFilter() {
+        if (filterString == null) {
+            return String.format("(%s=%s)", Constants.OBJECTCLASS, serviceInterface);
+        } else {
+            return String.format("(&(%s=%s)%s)", Constants.OBJECTCLASS, serviceInterface, filterString);
+        }
+    }
+
     private String getFilterString(Filter baseFilter) {
         if (baseFilter != null) {
             return baseFilter.toString();
@@ -154,7 +208,7 @@ public class OSGiServiceRegistryProxyTargetLocator implements FutureProxyTargetL
                 } else {
                     LOGGER.debug("reaquire service was not successfull, try to relocate to a different service...");
                     // Try to find a new one...
-                    ReleasableProxyTarget newProxyTarget = locateProxyTarget();
+                    ReleasableProxyTarget newProxyTarget = locateReleasableProxyTarget();
                     // If we are here a new ProxyTarget was bound
                     delegatingProxy = newProxyTarget;
                     // Fetch the target from the delegate
@@ -183,6 +237,38 @@ public class OSGiServiceRegistryProxyTargetLocator implements FutureProxyTargetL
         }
     }
 
+    /**
+     * A Proxy Target that always returns the service currently held by a {@link TrackedServiceHandle}, so the target
+     * follows the service registry without being released between calls. The handle holds the service, so there is
+     * nothing to release.
+     */
+    private final class TrackedProxyTarget implements ReleasableProxyTarget {
+
+        private volatile TrackedServiceHandle handle;
+
+        private TrackedProxyTarget(TrackedServiceHandle handle) {
+            this.handle = handle;
+        }
+
+        public Object getTarget() throws IllegalStateException {
+            Object service = handle.getService();
+            if (service == null) {
+                // the handle might have been closed in the meantime, try the current one for our bundle
+                handle = getTrackedServiceHandle();
+                service = handle.getService();
+                if (service == null) {
+                    throw new IllegalStateException("can't find any service matching objectClass = "
+                            + serviceInterface + " and filter = " + filterString);
+                }
+            }
+            return service;
+        }
+
+        public ProxyTarget releaseTarget() {
+            return this;
+        }
+    }
+
     /**
      * <p>Getter for the field <code>parent</code>.</p>
      *
@@ -194,12 +280,7 @@ public class OSGiServiceRegistryProxyTargetLocator implements FutureProxyTargetL
 
     /** {@inheritDoc} */
     public ProxyTarget locateProxyTarget(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
-        String filter = filterString;
-        if (filter == null) {
-            filter = String.format("(%s=%s)", Constants.OBJECTCLASS, serviceInterface);
-        } else {
-            filter = String.format("(&(%s=%s)%s)", Constants.OBJECTCLASS, serviceInterface, filter);
-        }
+        String filter = getServiceFilter();
         try {
             final ServiceTracker<Object, Object> tracker =
                 new ServiceTracker<Object, Object>(bundleContext, bundleContext.createFilter(filter), null);
@@ -131,7 +131,9 @@ public class OSGiServiceRegistryProxyTargetLocatorFactory implements
      */
     private static <T> ServiceReferenceIterable<T> createIterable(Class<T> type, Filter filter,
             BundleContext context) {
-        return new ServiceReferenceIterable<T>(type, filter != null ? filter.toString() : null, context);
+        boolean tracked =
+            Boolean.valueOf(context.getProperty(OSGiServiceRegistryProxyTargetLocator.TRACK_SERVICES_PROPERTY));
+        return new ServiceReferenceIterable<T>(type, filter != null ? filter.toString() : null, context, tracked);
     }
 
     private static <T> ServiceReferenceCollection<T> createCollection(Class<T> type, Filter filter,
@@ -24,7 +24,8 @@ import java.util.Set;
 /**
  * This implements the Collectiontypes we support based on a backing {@link org.ops4j.pax.wicket.internal.injection.registry.ServiceReferenceIterable}. Care should be
  * taken, because of the dynamic nature of the OSGi Framework all operations must work on a snapshot at call time, this
- * can have a large impact on performance if not used whisely.
+ * can have a large impact on performance if not used whisely. Tracked iterables avoid this by working on a snapshot
+ * that is kept up to date by service events.
  *
  * @author nmw
  * @version $Id: $Id
@@ -57,6 +58,10 @@ public class ServiceReferenceCollection<E> extends AbstractList<E> implements Se
     /** {@inheritDoc} */
     @Override
     public E get(int index) {
+        List<E> services = iterable.getTrackedServices();
+        if (services != null) {
+            return services.get(index);
+        }
         return new ArrayList<E>(this).get(index);
     }
 
@@ -18,8 +18,10 @@ package org.ops4j.pax.wicket.internal.injection.registry;
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
 
@@ -40,6 +42,10 @@ import org.osgi.framework.ServiceReference;
  * <li>calls to {@link java.util.Iterator#remove()} will always throw {@link java.lang.UnsupportedOperationException}</li>
  * <li><strong>All in one</strong>: Handle this with care and keep the implications in mind!</li>
  * </ul>
+ * If services are tracked (see {@link OSGiServiceRegistryProxyTargetLocator#TRACK_SERVICES_PROPERTY}) all of the above
+ * does not apply: the iterable is backed by a {@link TrackedServiceHandle} shared by all iterables of the same bundle,
+ * type and filter. It holds the services as long as they are registered and keeps a ranked, immutable snapshot that is
+ * only updated by service events, so neither {@link #iterator()} nor {@link #getCurrentSize()} query the registry.
  *
  * @author nmw
  * @version $Id: $Id
@@ -50,6 +56,9 @@ public class ServiceReferenceIterable<T> implements Iterable<T>, Serializable {
     private final BundleContext bundleContext;
     private final String filter;
     private final Class<T> type;
+    private final boolean tracked;
+
+    private transient volatile TrackedServiceHandle handle;
 
     /**
      * <p>Constructor for ServiceReferenceIterable.</p>
@@ -59,9 +68,22 @@ public class ServiceReferenceIterable<T> implements Iterable<T>, Serializable {
      * @param bundleContext a {@link org.osgi.framework.BundleContext} object.
      */
     public ServiceReferenceIterable(Class<T> type, String filter, BundleContext bundleContext) {
+        this(type, filter, bundleContext, false);
+    }
+
+    /**
+     * <p>Constructor for ServiceReferenceIterable.</p>
+     *
+     * @param type a {@link java.lang.Class} object.
+     * @param filter a {@link java.lang.String} object.
+     * @param bundleContext a {@link org.osgi.framework.BundleContext} object.
+     * @param tracked <code>true</code> to back the iterable by a snapshot of tracked services
+     */
+    public ServiceReferenceIterable(Class<T> type, String filter, BundleContext bundleContext, boolean tracked) {
         this.type = type;
         this.filter = filter;
         this.bundleContext = bundleContext;
+        this.tracked = tracked;
     }
 
     /**
@@ -70,6 +92,9 @@ public class ServiceReferenceIterable<T> implements Iterable<T>, Serializable {
      * @return a {@link java.util.Iterator} object.
      */
     public Iterator<T> iterator() {
+        if (tracked) {
+            return getTrackedServices().iterator();
+        }
         Collection<ServiceReference<T>> fetchReferences = fetchReferences();
         return new ServiceReferenceIterator<T>(fetchReferences.iterator(), bundleContext);
     }
@@ -88,9 +113,47 @@ public class ServiceReferenceIterable<T> implements Iterable<T>, Serializable {
      * @return a int.
      */
     public int getCurrentSize() {
+        if (tracked) {
+            return getTrackedServices().size();
+        }
         return fetchReferences().size();
     }
 
+    /**
+     * <p>getTrackedServices.</p>
+     *
+     * @return the current immutable snapshot of the tracked services or <code>null</code> if services are not
+     *         tracked
+     */
+    @SuppressWarnings("unchecked")
+    List<T> getTrackedServices() {
+        if (!tracked) {
+            return null;
+        }
+        TrackedServiceHandle current = handle;
+        if (current == null || current.isClosed()) {
+            // not opened yet or closed in the meantime, use the current one for the bundle
+            current = getHandle();
+            handle = current;
+        }
+        return (List<T>) current.getServices();
+    }
+
+    private TrackedServiceHandle getHandle() {
+        String serviceFilter;
+        if (filter == null) {
+            serviceFilter = String.format("(%s=%s)", Constants.OBJECTCLASS, type.getName());
+        } else {
+            serviceFilter = String.format("(&(%s=%s)%s)", Constants.OBJECTCLASS, type.getName(), filter);
+        }
+        try {
+            // only services compatible with the bundle, like getServiceReferences(Class, String) would return them
+            return TrackedServiceHandle.getHandle(bundleContext, serviceFilter, false);
+        } catch (InvalidSyntaxException e) {
+            throw new IllegalArgumentException("the provided filterstring is invalid", e);
+        }
+    }
+
     /**
      * Actual {@link Iterator} returned by this {@link Iterable} on each call to {@link Iterable#iterator()}
      * 
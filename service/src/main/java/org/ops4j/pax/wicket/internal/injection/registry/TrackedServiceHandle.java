@@ -0,0 +1,318 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.internal.injection.registry;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.SynchronousBundleListener;
+import org.osgi.util.tracker.ServiceTracker;
+import org.osgi.util.tracker.ServiceTrackerCustomizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A live handle to the matching services for a filter as seen by a bundle. The handle is shared by all locators
+ * of the same bundle and filter and is only updated by service events, so reading the current service or the current
+ * snapshot of all services is a single volatile read. The current service is the one a sorted
+ * {@link BundleContext#getAllServiceReferences(String, String)} lookup would return first, that is the one with the
+ * <em>lowest</em> service ranking. This deliberately keeps the choice the untracked
+ * {@link OSGiServiceRegistryProxyTargetLocator} has always made, so enabling tracking does not switch injected services.
+ * The snapshot is in service ranking order as {@link BundleContext#getServiceReference(String)} would prefer them.
+ * A handle closes itself when the bundle it was created for is stopped. Handles obtained through
+ * {@link #acquire(BundleContext, String, boolean, Object)} are in addition closed once all of their users have been
+ * garbage collected, unless the handle has also been obtained through {@link #getHandle(BundleContext, String, boolean)}.
+ *
+ * @version $Id: $Id
+ */
+public final class TrackedServiceHandle implements ServiceTrackerCustomizer<Object, Object>,
+        SynchronousBundleListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrackedServiceHandle.class);
+
+    private static final ConcurrentMap<String, TrackedServiceHandle> HANDLES =
+        new ConcurrentHashMap<String, TrackedServiceHandle>();
+
+    /** the users of acquired handles that have been collected, guarded by {@link #HANDLES} */
+    private static final ReferenceQueue<Object> RELEASED_USERS = new ReferenceQueue<Object>();
+
+    private final String key;
+    private final BundleContext bundleContext;
+    private final ServiceTracker<Object, Object> tracker;
+    private final Map<ServiceReference<Object>, Object> services = new HashMap<ServiceReference<Object>, Object>();
+
+    private final boolean allServices;
+
+    private volatile Object current;
+
+    private volatile List<Object> snapshot = Collections.emptyList();
+
+    private volatile boolean closed;
+
+    /** <code>true</code> if the handle is kept for the lifetime of the bundle, only set while holding {@link #HANDLES} */
+    private volatile boolean pinned;
+
+    /** the users of an acquired handle, guarded by {@link #HANDLES} */
+    private final Set<UserReference> users = new HashSet<UserReference>();
+
+    private TrackedServiceHandle(String key, BundleContext bundleContext, String filter, boolean allServices)
+        throws InvalidSyntaxException {
+        this.key = key;
+        this.bundleContext = bundleContext;
+        this.allServices = allServices;
+        tracker = new ServiceTracker<Object, Object>(bundleContext, bundleContext.createFilter(filter), this);
+    }
+
+    /**
+     * Returns the shared handle for the given bundle and filter, opening it on first use
+     *
+     * @param bundleContext the context of the bundle the service is looked up for
+     * @param filter the complete filter including the objectClass
+     * @return a {@link org.ops4j.pax.wicket.internal.injection.registry.TrackedServiceHandle} object.
+     * @throws org.osgi.framework.InvalidSyntaxException if the filter is invalid
+     */
+    public static TrackedServiceHandle getHandle(BundleContext bundleContext, String filter)
+        throws InvalidSyntaxException {
+        return getHandle(bundleContext, filter, true);
+    }
+
+    /**
+     * Returns the shared handle for the given bundle and filter, opening it on first use
+     *
+     * @param bundleContext the context of the bundle the services are looked up for
+     * @param filter the complete filter including the objectClass
+     * @param allServices <code>true</code> to track all matching services like
+     *        {@link BundleContext#getAllServiceReferences(String, String)}, <code>false</code> to only track those
+     *        whose classes are compatible with the bundle like {@link BundleContext#getServiceReferences(Class, String)}
+     * @return a {@link org.ops4j.pax.wicket.internal.injection.registry.TrackedServiceHandle} object.
+     * @throws org.osgi.framework.InvalidSyntaxException if the filter is invalid
+     */
+    public static TrackedServiceHandle getHandle(BundleContext bundleContext, String filter, boolean allServices)
+        throws InvalidSyntaxException {
+        String key = createKey(bundleContext, filter, allServices);
+        TrackedServiceHandle handle = HANDLES.get(key);
+        if (handle != null && handle.pinned && handle.isUsableFor(bundleContext)) {
+            return handle;
+        }
+        synchronized (HANDLES) {
+            releaseCollectedUsers();
+            handle = getOrOpen(key, bundleContext, filter, allServices);
+            handle.pinned = true;
+            return handle;
+        }
+    }
+
+    /**
+     * Returns the shared handle for the given bundle and filter for the given user, opening it on first use. Unlike a
+     * handle returned by {@link #getHandle(BundleContext, String, boolean)} the handle is closed again once all of
+     * its users have been garbage collected, which suits filters that are only used for a while.
+     *
+     * @param bundleContext the context of the bundle the services are looked up for
+     * @param filter the complete filter including the objectClass
+     * @param allServices see {@link #getHandle(BundleContext, String, boolean)}
+     * @param user the object using the handle, it is only weakly referenced
+     * @return a {@link org.ops4j.pax.wicket.internal.injection.registry.TrackedServiceHandle} object.
+     * @throws org.osgi.framework.InvalidSyntaxException if the filter is invalid
+     */
+    public static TrackedServiceHandle acquire(BundleContext bundleContext, String filter, boolean allServices,
+            Object user) throws InvalidSyntaxException {
+        String key = createKey(bundleContext, filter, allServices);
+        synchronized (HANDLES) {
+            releaseCollectedUsers();
+            TrackedServiceHandle handle = getOrOpen(key, bundleContext, filter, allServices);
+            handle.users.add(new UserReference(user, handle));
+            return handle;
+        }
+    }
+
+    private static String createKey(BundleContext bundleContext, String filter, boolean allServices) {
+        return bundleContext.getBundle().getBundleId() + (allServices ? "*" : "") + filter;
+    }
+
+    private static TrackedServiceHandle getOrOpen(String key, BundleContext bundleContext, String filter,
+            boolean allServices) throws InvalidSyntaxException {
+        TrackedServiceHandle handle = HANDLES.get(key);
+        if (handle != null && !handle.isUsableFor(bundleContext)) {
+            // created for an earlier incarnation of the bundle or while it was stopping
+            handle.close();
+            handle = null;
+        }
+        if (handle == null) {
+            handle = new TrackedServiceHandle(key, bundleContext, filter, allServices);
+            handle.open();
+            HANDLES.put(key, handle);
+        }
+        return handle;
+    }
+
+    private static void releaseCollectedUsers() {
+        Reference<?> reference;
+        while ((reference = RELEASED_USERS.poll()) != null) {
+            TrackedServiceHandle handle = ((UserReference) reference).handle;
+            handle.users.remove(reference);
+            if (handle.users.isEmpty() && !handle.pinned && !handle.closed) {
+                handle.close();
+            }
+        }
+    }
+
+    /**
+     * Closes all handles, releasing their service listeners and tracked services. Called when Pax Wicket itself is
+     * stopped, since the handles of bundles that keep running would otherwise never be closed.
+     */
+    public static void closeAll() {
+        synchronized (HANDLES) {
+            for (TrackedServiceHandle handle : HANDLES.values()) {
+                handle.close();
+            }
+            HANDLES.clear();
+        }
+    }
+
+    private boolean isUsableFor(BundleContext context) {
+        // a closed tracker reports a tracking count of -1
+        return !closed && bundleContext == context && tracker.getTrackingCount() != -1;
+    }
+
+    /**
+     * <p>getService.</p>
+     *
+     * @return the matching service with the lowest ranking, as a sorted lookup returns it first, or
+     *         <code>null</code> if there is none
+     */
+    public Object getService() {
+        return current;
+    }
+
+    /**
+     * <p>getServices.</p>
+     *
+     * @return an immutable snapshot of all matching services, highest service ranking first
+     */
+    public List<Object> getServices() {
+        return snapshot;
+    }
+
+    /**
+     * <p>isClosed.</p>
+     *
+     * @return <code>true</code> if the bundle the handle was created for has been stopped
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private void open() {
+        bundleContext.addBundleListener(this);
+        tracker.open(allServices);
+        LOGGER.debug("opened service handle for {}", key);
+    }
+
+    private void close() {
+        closed = true;
+        HANDLES.remove(key, this);
+        try {
+            bundleContext.removeBundleListener(this);
+        } catch (IllegalStateException e) {
+            // the context is already invalid, the listener is gone anyways
+        }
+        try {
+            tracker.close();
+        } catch (IllegalStateException e) {
+            // the context is already invalid, the service listener is gone anyways
+        }
+        current = null;
+        snapshot = Collections.emptyList();
+        LOGGER.debug("closed service handle for {}", key);
+    }
+
+    /** {@inheritDoc} */
+    public void bundleChanged(BundleEvent event) {
+        if (event.getType() == BundleEvent.STOPPING
+                && event.getBundle().getBundleId() == bundleContext.getBundle().getBundleId()) {
+            close();
+        }
+    }
+
+    /** {@inheritDoc} */
+    public Object addingService(ServiceReference<Object> reference) {
+        Object service = bundleContext.getService(reference);
+        if (service == null) {
+            return null;
+        }
+        synchronized (services) {
+            services.put(reference, service);
+            update();
+        }
+        return service;
+    }
+
+    /** {@inheritDoc} */
+    public void modifiedService(ServiceReference<Object> reference, Object service) {
+        synchronized (services) {
+            update();
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void removedService(ServiceReference<Object> reference, Object service) {
+        synchronized (services) {
+            services.remove(reference);
+            update();
+        }
+        try {
+            bundleContext.ungetService(reference);
+        } catch (RuntimeException e) {
+            LOGGER.trace("RuntimeException while ungetting service", e);
+        }
+    }
+
+    private void update() {
+        List<ServiceReference<Object>> references = new ArrayList<ServiceReference<Object>>(services.keySet());
+        Collections.sort(references);
+        List<Object> ranked = new ArrayList<Object>(references.size());
+        for (int i = references.size() - 1; i >= 0; i--) {
+            ranked.add(services.get(references.get(i)));
+        }
+        snapshot = Collections.unmodifiableList(ranked);
+        current = references.isEmpty() ? null : services.get(references.get(0));
+    }
+
+    private static final class UserReference extends WeakReference<Object> {
+
+        private final TrackedServiceHandle handle;
+
+        private UserReference(Object user, TrackedServiceHandle handle) {
+            super(user, RELEASED_USERS);
+            this.handle = handle;
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.internal.servlet;
+
+import static org.ops4j.lang.NullArgumentException.validateNotNull;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+/**
+ * Wraps requests to applications mounted at the root of the http service, so wicket sees an empty context and servlet
+ * path and the servlet path as path info. All other methods are delegated directly to the wrapped request.
+ *
+ * @version $Id: $Id
+ */
+public final class MountPointServletRequest extends HttpServletRequestWrapper {
+
+    /**
+     * <p>Constructor for MountPointServletRequest.</p>
+     *
+     * @param request a {@link javax.servlet.http.HttpServletRequest} object.
+     * @throws java.lang.IllegalArgumentException if any.
+     */
+    public MountPointServletRequest(HttpServletRequest request) throws IllegalArgumentException {
+        super(request);
+        validateNotNull(request, "request");
+    }
+
+    /**
+     * Checks if requests to an application with the given mount point have to be wrapped at all
+     *
+     * @param mountPoint a {@link java.lang.String} object.
+     * @return <code>true</code> if the mount point denotes the root of the http service
+     * @throws java.lang.IllegalArgumentException if any.
+     */
+    public static boolean isRootMountPoint(String mountPoint) throws IllegalArgumentException {
+        validateNotNull(mountPoint, "mountPoint");
+        return mountPoint.length() == 0 || "/".equals(mountPoint);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getContextPath() {
+        return "";
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getServletPath() {
+        return "";
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getPathInfo() {
+        return super.getServletPath();
+    }
+}
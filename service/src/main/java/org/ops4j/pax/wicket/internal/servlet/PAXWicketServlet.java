@@ -16,7 +16,6 @@
 package org.ops4j.pax.wicket.internal.servlet;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Enumeration;
 
@@ -30,10 +29,12 @@ import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletResponse;
-import net.sf.cglib.proxy.Enhancer;
 
-import net.sf.cglib.proxy.MethodInterceptor;
-import net.sf.cglib.proxy.MethodProxy;
+import net.sf.cglib.proxy.Callback;
+import net.sf.cglib.proxy.CallbackFilter;
+import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.proxy.FixedValue;
+import net.sf.cglib.proxy.NoOp;
 
 import org.apache.wicket.protocol.http.IWebApplicationFactory;
 import org.apache.wicket.protocol.http.WicketFilter;
@@ -188,12 +189,7 @@ public final class PAXWicketServlet implements Servlet {
 //    }
     public static Servlet createServlet(final PaxWicketApplicationFactory applicationFactory) {
         try {
-            Enhancer e = new Enhancer();
-            e.setSuperclass(applicationFactory.getFilterClass());
-            e.setCallback(new WicketFilterCallback(applicationFactory));
-            setCombinedClassLoader(e, applicationFactory);
-
-            PAXWicketServlet delegateServlet = new PAXWicketServlet(applicationFactory, (Filter) e.create());
+            PAXWicketServlet delegateServlet = new PAXWicketServlet(applicationFactory, createFilter(applicationFactory));
 //            PAXWicketServlet delegateServlet = new PAXWicketServlet(applicationFactory, new WicketCustomFilter(applicationFactory));
             return new ServletCallInterceptor(applicationFactory, delegateServlet);
 
@@ -204,6 +200,19 @@ public final class PAXWicketServlet implements Servlet {
 
     }
 
+    /**
+     * Subclasses the filter class of the application factory so that <code>getApplicationFactory</code> answers the
+     * given factory.
+     */
+    static Filter createFilter(PaxWicketApplicationFactory applicationFactory) {
+        Enhancer e = new Enhancer();
+        e.setSuperclass(applicationFactory.getFilterClass());
+        e.setCallbacks(new Callback[]{ new WicketFilterCallback(applicationFactory), NoOp.INSTANCE });
+        e.setCallbackFilter(WicketFilterCallbackFilter.INSTANCE);
+        setCombinedClassLoader(e, applicationFactory);
+        return (Filter) e.create();
+    }
+
     private static class WicketCustomFilter extends WicketFilter {
 
         protected IWebApplicationFactory applicationFactory;
@@ -219,7 +228,27 @@ public final class PAXWicketServlet implements Servlet {
 
     }
 
-    private static class WicketFilterCallback implements MethodInterceptor {
+    /**
+     * Routes <code>getApplicationFactory</code> to the {@link WicketFilterCallback}, every other method of the filter
+     * is left as it is.
+     */
+    private static final class WicketFilterCallbackFilter implements CallbackFilter {
+
+        private static final int APPLICATION_FACTORY = 0;
+        private static final int PASS_THROUGH = 1;
+
+        private static final WicketFilterCallbackFilter INSTANCE = new WicketFilterCallbackFilter();
+
+        public int accept(Method method) {
+            if (method.getName().equals("getApplicationFactory") && method.getParameterTypes().length == 0) {
+                return APPLICATION_FACTORY;
+            }
+            return PASS_THROUGH;
+        }
+
+    }
+
+    private static class WicketFilterCallback implements FixedValue {
 
         private final IWebApplicationFactory applicationFactory;
 
@@ -227,16 +256,8 @@ public final class PAXWicketServlet implements Servlet {
             this.applicationFactory = applicationFactory;
         }
 
-        public Object intercept(Object object, Method method, Object[] args, MethodProxy methodProxy) throws Throwable {
-            method.setAccessible(true);
-            if (method.getName().equals("getApplicationFactory")) {
-                return applicationFactory;
-            }
-            try {
-                return methodProxy.invokeSuper(object, args);
-            } catch (InvocationTargetException e) {
-                throw e.getTargetException();
-            }
+        public Object loadObject() {
+            return applicationFactory;
         }
 
     }
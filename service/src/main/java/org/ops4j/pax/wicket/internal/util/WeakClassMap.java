@@ -0,0 +1,60 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.internal.util;
+
+/**
+ * A concurrent map with weakly referenced class keys, so that caching something per class doesn't keep the class
+ * loader of an updated or uninstalled bundle alive. Lookups don't lock; entries of collected classes are purged on
+ * the next update.
+ *
+ * Values must not strongly reference their key class, otherwise the entry is never collected.
+ *
+ * @param <V> the type of the values
+ * @version $Id: $Id
+ */
+public final class WeakClassMap<V> {
+
+    private final WeakIdentityMap<Class<?>, V> entries = new WeakIdentityMap<Class<?>, V>();
+
+    /**
+     * <p>get.</p>
+     *
+     * @param clazz a {@link java.lang.Class} object.
+     * @return the value for the class or <code>null</code> if there is none
+     */
+    public V get(Class<?> clazz) {
+        return entries.get(clazz);
+    }
+
+    /**
+     * <p>put.</p>
+     *
+     * @param clazz a {@link java.lang.Class} object.
+     * @param value the value, must not be <code>null</code>
+     */
+    public void put(Class<?> clazz, V value) {
+        entries.put(clazz, value);
+    }
+
+    /**
+     * <p>remove.</p>
+     *
+     * @param clazz a {@link java.lang.Class} object.
+     */
+    public void remove(Class<?> clazz) {
+        entries.remove(clazz);
+    }
+}
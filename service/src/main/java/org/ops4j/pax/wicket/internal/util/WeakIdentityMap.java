@@ -0,0 +1,104 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.internal.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A concurrent map with weakly referenced keys that are compared by identity, so that caching something per
+ * instance neither depends on the <code>equals</code> of the keys nor keeps them alive. Lookups don't lock; entries of
+ * collected keys are purged on the next update.
+ *
+ * Values must not strongly reference their key, otherwise the entry is never collected.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ * @version $Id: $Id
+ */
+public final class WeakIdentityMap<K, V> {
+
+    private final ConcurrentMap<Key<K>, V> entries = new ConcurrentHashMap<Key<K>, V>();
+    private final ReferenceQueue<K> collected = new ReferenceQueue<K>();
+
+    /**
+     * <p>get.</p>
+     *
+     * @param key the key
+     * @return the value for the key or <code>null</code> if there is none
+     */
+    public V get(K key) {
+        return entries.get(new Key<K>(key, null));
+    }
+
+    /**
+     * <p>put.</p>
+     *
+     * @param key the key
+     * @param value the value, must not be <code>null</code>
+     */
+    public void put(K key, V value) {
+        purge();
+        entries.put(new Key<K>(key, collected), value);
+    }
+
+    /**
+     * <p>remove.</p>
+     *
+     * @param key the key
+     */
+    public void remove(K key) {
+        purge();
+        entries.remove(new Key<K>(key, null));
+    }
+
+    private void purge() {
+        Reference<? extends K> reference;
+        while ((reference = collected.poll()) != null) {
+            entries.remove(reference);
+        }
+    }
+
+    private static final class Key<K> extends WeakReference<K> {
+
+        private final int hash;
+
+        private Key(K key, ReferenceQueue<K> queue) {
+            super(key, queue);
+            hash = System.identityHashCode(key);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Object key = get();
+            return key != null && key == ((Key<?>) obj).get();
+        }
+    }
+}
@@ -21,6 +21,8 @@ package org.ops4j.pax.wicket.spi.support;
 
 import java.util.Map;
 
+import org.ops4j.pax.wicket.internal.injection.registry.OSGiServiceRegistryProxyTargetLocator;
+import org.ops4j.pax.wicket.internal.injection.registry.TrackedServiceHandle;
 import org.ops4j.pax.wicket.spi.ProxyTarget;
 import org.ops4j.pax.wicket.spi.ProxyTargetLocator;
 import org.osgi.framework.BundleContext;
@@ -38,6 +40,13 @@ public abstract class AbstractProxyTargetLocator<Container> implements ProxyTarg
 
     private final String beanName;
 
+    /**
+     * the shared live handle to the containers of the bundle, rebuilt after deserialization or once the handle has
+     * been closed with the bundle
+     */
+    private transient volatile TrackedServiceHandle containerHandle;
+    private transient Boolean trackServices;
+
     /**
      * <p>Constructor for AbstractProxyTargetLocator.</p>
      *
@@ -62,6 +71,9 @@ public abstract class AbstractProxyTargetLocator<Container> implements ProxyTarg
      * @return a boolean.
      */
     public boolean hasApplicationContext() {
+        if (isTrackServices()) {
+            return getContainer() != null;
+        }
         String filter = getApplicationContextFilter(bundleContext.getBundle().getSymbolicName());
         ServiceReference<?>[] references = null;
         try {
@@ -90,6 +102,23 @@ public abstract class AbstractProxyTargetLocator<Container> implements ProxyTarg
         if (bundleContext == null) {
             throw new IllegalStateException("Bundle context is not allowed to be null");
         }
+        if (!isTrackServices()) {
+            return locateProxyTargetInAllContainers();
+        }
+        Container container = getContainer();
+        if (container == null) {
+            throw new IllegalStateException(String.format("Found zero service references for %s; this is not OK...",
+                bundleContext.getBundle().getSymbolicName()));
+        }
+        ContainerProxyTarget target = new ContainerProxyTarget();
+        if (target.bind(container) != null) {
+            return target;
+        }
+        // the best matching container doesn't know the bean, look through all of them
+        return locateProxyTargetInAllContainers();
+    }
+
+    private ProxyTarget locateProxyTargetInAllContainers() {
         ClassLoader oldClassloader = Thread.currentThread().getContextClassLoader();
         String filter = getApplicationContextFilter(bundleContext.getBundle().getSymbolicName());
         ServiceReference<?>[] references = null;
@@ -131,6 +160,113 @@ public abstract class AbstractProxyTargetLocator<Container> implements ProxyTarg
             parent.getName()));
     }
 
+    private boolean isTrackServices() {
+        if (trackServices == null) {
+            trackServices = Boolean.valueOf(
+                bundleContext.getProperty(OSGiServiceRegistryProxyTargetLocator.TRACK_SERVICES_PROPERTY));
+        }
+        return trackServices.booleanValue();
+    }
+
+    /**
+     * Returns the best matching container of the bundle as currently tracked by the shared handle
+     */
+    @SuppressWarnings("unchecked")
+    private Container getContainer() {
+        TrackedServiceHandle handle = containerHandle;
+        if (handle != null) {
+            Object container = handle.getService();
+            if (container != null) {
+                return (Container) container;
+            }
+        }
+        // the handle might have been closed in the meantime, try the current one for the bundle
+        String filter = getApplicationContextFilter(bundleContext.getBundle().getSymbolicName());
+        try {
+            handle = TrackedServiceHandle.getHandle(bundleContext, filter, false);
+        } catch (InvalidSyntaxException e) {
+            throw new IllegalStateException("not possible", e);
+        }
+        containerHandle = handle;
+        return (Container) handle.getService();
+    }
+
+    /**
+     * Decides if the bean located by the given strategy is a singleton of the container. While containers are tracked
+     * the bean of a singleton is only created once per container and handed out until the container is replaced. By
+     * default no bean is considered a singleton.
+     *
+     * @param strategy the strategy that found the bean in the container
+     * @param container the container the bean belongs to
+     * @return <code>true</code> if the container returns the same bean for every lookup
+     */
+    protected boolean isSingleton(BeanReactor<Container> strategy, Container container) {
+        return false;
+    }
+
+    /**
+     * A target that follows the tracked container of the bundle, the bean is bound again as soon as the container is
+     * replaced
+     */
+    private final class ContainerProxyTarget implements ProxyTarget {
+
+        private volatile Binding<Container> binding;
+
+        public Object getTarget() {
+            Container container = getContainer();
+            if (container == null) {
+                throw new IllegalStateException(String.format(
+                    "Found zero service references for %s; this is not OK...",
+                    bundleContext.getBundle().getSymbolicName()));
+            }
+            Binding<Container> current = binding;
+            if (current == null || current.container != container) {
+                current = bind(container);
+                if (current == null) {
+                    throw new IllegalStateException(String.format(
+                        "Bundle %s can no longer attach bean %s with ID %s, class %s to page %s", bundleContext
+                            .getBundle().getSymbolicName(), beanType.getName(), beanName, beanType.getName(),
+                        parent.getName()));
+                }
+            }
+            return current.getBean();
+        }
+
+        private Binding<Container> bind(Container container) {
+            ClassLoader oldClassloader = Thread.currentThread().getContextClassLoader();
+            try {
+                Thread.currentThread().setContextClassLoader(parent.getClassLoader());
+                BeanReactor<Container> strategy = createStrategy();
+                if (!strategy.containsBean(container)) {
+                    return null;
+                }
+                Object singleton = isSingleton(strategy, container) ? strategy.createBean(container) : null;
+                Binding<Container> created = new Binding<Container>(container, strategy, singleton);
+                binding = created;
+                return created;
+            } finally {
+                Thread.currentThread().setContextClassLoader(oldClassloader);
+            }
+        }
+    }
+
+    private static final class Binding<Container> {
+
+        private final Container container;
+        private final BeanReactor<Container> strategy;
+        private final Object singleton;
+
+        private Binding(Container container, BeanReactor<Container> strategy, Object singleton) {
+            this.container = container;
+            this.strategy = strategy;
+            this.singleton = singleton;
+        }
+
+        private Object getBean() {
+            return singleton != null ? singleton : strategy.createBean(container);
+        }
+    }
+
     /**
      * <p>Getter for the field <code>parent</code>.</p>
      *
@@ -24,6 +24,7 @@ import java.util.Hashtable;
 
 import org.ops4j.pax.wicket.api.PaxWicketBeanInjectionSource;
 import org.ops4j.pax.wicket.api.PaxWicketInjector;
+import org.ops4j.pax.wicket.api.SelectivePaxWicketInjector;
 import org.ops4j.pax.wicket.internal.injection.BundleAnalysingComponentInstantiationListener;
 import org.ops4j.pax.wicket.spi.ProxyTargetLocatorFactory;
 import org.osgi.framework.BundleContext;
@@ -154,16 +155,22 @@ public final class BundleInjectionProviderHelper {
         }
     }
 
-    private final class BundleInjectionResolver implements PaxWicketInjector, ManagedService {
+    private final class BundleInjectionResolver implements SelectivePaxWicketInjector, ManagedService {
 
         public void inject(Object toInject, Class<?> toHandle) {
+            if (!tryInject(toInject, toHandle)) {
+                throw new IllegalStateException("no injections source found");
+            }
+        }
+
+        public boolean tryInject(Object toInject, Class<?> toHandle) {
             validateNotNull(bundleAnalysingComponentInstantiationListener,
                 "bundleAnalysingComponentInstantiationListener");
             if (bundleAnalysingComponentInstantiationListener.injectionPossible(toHandle)) {
                 bundleAnalysingComponentInstantiationListener.inject(toInject, toHandle);
-                return;
+                return true;
             }
-            throw new IllegalStateException("no injections source found");
+            return false;
         }
 
         @SuppressWarnings("rawtypes")
@@ -23,13 +23,40 @@ import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.util.Map;
 
+import net.sf.cglib.proxy.Callback;
+import net.sf.cglib.proxy.CallbackFilter;
+import net.sf.cglib.proxy.MethodInterceptor;
 import net.sf.cglib.proxy.MethodProxy;
+import net.sf.cglib.proxy.NoOp;
 
 import org.ops4j.pax.wicket.spi.OverwriteProxy;
 public class ComponentProxy implements OverwriteProxy, Serializable {
 
     private static final long serialVersionUID = 1848500647893384991L;
 
+    /** index of the {@link ComponentProxy} within the callbacks of an enhanced component class */
+    static final int INTERCEPTOR = 0;
+    /** index of the {@link NoOp} callback all methods not handled by the interceptor are dispatched to */
+    static final int PASS_THROUGH = 1;
+
+    /** the callback types an enhanced component class is generated with, see {@link #CALLBACK_FILTER} */
+    static final Class<?>[] CALLBACK_TYPES = { MethodInterceptor.class, NoOp.class };
+
+    /**
+     * Routes only the methods handled by {@link #intercept(Object, Method, Object[], MethodProxy)} to the
+     * interceptor, everything else calls the component directly.
+     */
+    static final CallbackFilter CALLBACK_FILTER = new CallbackFilter() {
+        public int accept(Method method) {
+            if (isFinalizeMethod(method) || isEqualsMethod(method) || isHashCodeMethod(method)
+                    || isToStringMethod(method) || isGetOverwritesMethod(method)
+                    || isGetInjectionSourceMethod(method)) {
+                return INTERCEPTOR;
+            }
+            return PASS_THROUGH;
+        }
+    };
+
     private final Map<String, String> overwrites;
     private final String injectionSource;
 
@@ -44,6 +71,23 @@ public class ComponentProxy implements OverwriteProxy, Serializable {
         this.overwrites = overwrites;
     }
 
+    /**
+     * <p>getCallbacks.</p>
+     *
+     * @return the callbacks for a class enhanced with {@link #CALLBACK_TYPES} and {@link #CALLBACK_FILTER}
+     */
+    Callback[] getCallbacks() {
+        return new Callback[]{ this, PassThrough.INSTANCE };
+    }
+
+    /**
+     * The {@link NoOp} callback of enhanced components. Unlike {@link NoOp#INSTANCE} it is serializable, since the
+     * callbacks are serialized with the pages holding them.
+     */
+    private enum PassThrough implements NoOp {
+        INSTANCE
+    }
+
     /** {@inheritDoc} */
     public Object intercept(Object object, Method method, Object[] args, MethodProxy proxy) throws Throwable {
         if (isFinalizeMethod(method)) {
@@ -52,7 +96,7 @@ public class ComponentProxy implements OverwriteProxy, Serializable {
         } else if (isEqualsMethod(method)) {
             return equals(args[0]) ? Boolean.TRUE : Boolean.FALSE;
         } else if (isHashCodeMethod(method)) {
-            return new Integer(hashCode());
+            return Integer.valueOf(hashCode());
         } else if (isToStringMethod(method)) {
             return toString();
         } else if (isGetOverwritesMethod(method)) {
@@ -100,7 +144,7 @@ public class ComponentProxy implements OverwriteProxy, Serializable {
      * @return a boolean.
      */
     protected static boolean isGetInjectionSourceMethod(Method method) {
-        return method.getReturnType() == Map.class && method.getParameterTypes().length == 0 &&
+        return method.getReturnType() == String.class && method.getParameterTypes().length == 0 &&
                 method.getName().equals("getInjectionSource");
     }
 
@@ -26,7 +26,6 @@ import static org.osgi.framework.Constants.OBJECTCLASS;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -34,6 +33,8 @@ import net.sf.cglib.proxy.Factory;
 
 import org.ops4j.pax.wicket.api.InjectorHolder;
 import org.ops4j.pax.wicket.api.PaxWicketInjector;
+import org.ops4j.pax.wicket.api.SelectivePaxWicketInjector;
+import org.ops4j.pax.wicket.internal.util.WeakClassMap;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Filter;
 import org.osgi.framework.InvalidSyntaxException;
@@ -47,7 +48,22 @@ public final class DelegatingComponentInstanciationListener extends AbstractPaxW
 
     private final BundleContext context;
     private final String applicationName;
+    /**
+     * The injectors of the application, only changed by the tracker while holding the lock of the list itself
+     */
     private final List<PaxWicketInjector> resolvers;
+    /**
+     * Snapshot of {@link #resolvers} read by the injections, replaced whenever the injectors change
+     */
+    private volatile Injectors injectors = new Injectors(new PaxWicketInjector[0]);
+    /**
+     * Number of injected fields declared by a class, weakly keyed so entries vanish together with the bundle
+     */
+    private final WeakClassMap<Integer> injectedFieldCounts = new WeakClassMap<Integer>();
+    /**
+     * Number of injected fields declared by a class and its superclasses up to the boundary classes
+     */
+    private final WeakClassMap<Integer> hierarchicalFieldCounts = new WeakClassMap<Integer>();
 
     private ComponentInstanciationListenerTracker tracker;
 
@@ -103,59 +119,117 @@ public final class DelegatingComponentInstanciationListener extends AbstractPaxW
 
     /** {@inheritDoc} */
     public void inject(Object toInject, Class<?> toHandle) {
-        Set<String> foundAnnotation = countComponentContainPaxWicketBeanAnnotatedFieldsHierachical(toHandle);
-        if (foundAnnotation.isEmpty()) {
+        int foundAnnotation = countInjectedFieldsHierachical(toHandle);
+        if (foundAnnotation == 0) {
             LOGGER.trace("Component {} doesn't contain any PaxWicketBean fields. Therefore ignore", toInject
                     .getClass().getName());
             return;
         }
-        Set<String> handledAnnotations = new HashSet<String>();
-        synchronized (resolvers) {
-            Class<?> currentAnalysingClass = toHandle;
-            boolean handledFactory = false;
-            if (Factory.class.isInstance(toInject)) {
-                handledFactory = true;
+        Injectors current = injectors;
+        int handledAnnotations = 0;
+        Class<?> currentAnalysingClass = toHandle;
+        boolean handledFactory = false;
+        if (Factory.class.isInstance(toInject)) {
+            handledFactory = true;
+        }
+        LOGGER.debug("Component {} trying to find injector", toInject
+                .getClass().getName());
+        while (!isBoundaryClass(currentAnalysingClass)) {
+            Class<?> injectedClass = handledFactory ? currentAnalysingClass.getSuperclass() : currentAnalysingClass;
+            int injectedFields = countInjectedFields(injectedClass);
+            // levels without injected fields don't need an injector at all
+            if (injectedFields > 0 && current.inject(toInject, currentAnalysingClass)) {
+                handledAnnotations += injectedFields;
             }
-            LOGGER.debug("Component {} trying to find injector", toInject
-                    .getClass().getName());
-            while (!isBoundaryClass(currentAnalysingClass)) {
-                for (PaxWicketInjector listener : resolvers) {
-                    try {
-                        listener.inject(toInject, currentAnalysingClass);
-                        // if we reach here the bean had been injected correctly
-                        if (handledFactory) {
-                            handledAnnotations.addAll(
-                                    countComponentContainPaxWicketBeanAnnotatedOneLevel(currentAnalysingClass
-                                            .getSuperclass()));
-                        } else {
-                            handledAnnotations.addAll(
-                                    countComponentContainPaxWicketBeanAnnotatedOneLevel(currentAnalysingClass));
-                        }
-                        // once we've found it we could take the next level
-                        break;
-                    } catch (IllegalStateException e) {
-                        LOGGER.debug("Nothing found for component {}, using injector {} got this exception: {}", toInject
-                                .getClass().getName(),listener.getClass().getCanonicalName(),e.getMessage());
-
-                        // well, not found... retry with the next listener
-                    }
-                }
+            currentAnalysingClass = currentAnalysingClass.getSuperclass();
+            if (handledFactory) {
                 currentAnalysingClass = currentAnalysingClass.getSuperclass();
-                if (handledFactory) {
-                    currentAnalysingClass = currentAnalysingClass.getSuperclass();
-                    handledFactory = false;
-                }
+                handledFactory = false;
             }
         }
-        if (handledAnnotations.size() != foundAnnotation.size()) {
+        if (handledAnnotations != foundAnnotation) {
+            Set<String> expectedFields = countComponentContainPaxWicketBeanAnnotatedFieldsHierachical(toHandle);
             throw new IllegalStateException(String.format(
-                    "For Component %s %d %s fields should be injected but only %d %s had been injected.", toInject
+                    "For Component %s %d %s fields should be injected but only %d had been injected.", toInject
                     .getClass()
                     .getName(),
-                    foundAnnotation.size(),
-                    Arrays.toString(foundAnnotation.toArray(new String[0])),
-                    handledAnnotations.size(),
-                    Arrays.toString(handledAnnotations.toArray(new String[0]))));
+                    foundAnnotation,
+                    Arrays.toString(expectedFields.toArray(new String[0])),
+                    handledAnnotations));
+        }
+    }
+
+    private int countInjectedFieldsHierachical(Class<?> component) {
+        Integer count = hierarchicalFieldCounts.get(component);
+        if (count == null) {
+            int sum = 0;
+            Class<?> clazz = component;
+            while (clazz != null && !isBoundaryClass(clazz)) {
+                sum += countInjectedFields(clazz);
+                clazz = clazz.getSuperclass();
+            }
+            count = sum;
+            hierarchicalFieldCounts.put(component, count);
+        }
+        return count;
+    }
+
+    private int countInjectedFields(Class<?> clazz) {
+        Integer count = injectedFieldCounts.get(clazz);
+        if (count == null) {
+            count = countComponentContainPaxWicketBeanAnnotatedOneLevel(clazz).size();
+            injectedFieldCounts.put(clazz, count);
+        }
+        return count;
+    }
+
+    private void updateInjectors() {
+        injectors = new Injectors(resolvers.toArray(new PaxWicketInjector[resolvers.size()]));
+    }
+
+    /**
+     * An immutable snapshot of the injectors of the application. It remembers which injector handled a level of a
+     * component hierarchy, keyed by the class passed for that level, so the injectors only have to be searched the
+     * first time a class is injected.
+     */
+    private static final class Injectors {
+
+        private final PaxWicketInjector[] injectors;
+        private final WeakClassMap<PaxWicketInjector> selected = new WeakClassMap<PaxWicketInjector>();
+
+        private Injectors(PaxWicketInjector[] injectors) {
+            this.injectors = injectors;
+        }
+
+        private boolean inject(Object toInject, Class<?> toHandle) {
+            PaxWicketInjector injector = selected.get(toHandle);
+            if (injector != null && tryInject(injector, toInject, toHandle)) {
+                return true;
+            }
+            for (PaxWicketInjector candidate : injectors) {
+                if (candidate != injector && tryInject(candidate, toInject, toHandle)) {
+                    selected.put(toHandle, candidate);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean tryInject(PaxWicketInjector injector, Object toInject, Class<?> toHandle) {
+            try {
+                if (injector instanceof SelectivePaxWicketInjector) {
+                    // a miss is answered without exception, a responsible injector may still fail below
+                    return ((SelectivePaxWicketInjector) injector).tryInject(toInject, toHandle);
+                }
+                injector.inject(toInject, toHandle);
+                // if we reach here the bean had been injected correctly
+                return true;
+            } catch (IllegalStateException e) {
+                LOGGER.debug("Nothing found for component {}, using injector {} got this exception: {}", toInject
+                        .getClass().getName(), injector.getClass().getCanonicalName(), e.getMessage());
+                // well, not found... retry with the next listener
+                return false;
+            }
         }
     }
 
@@ -174,6 +248,7 @@ public final class DelegatingComponentInstanciationListener extends AbstractPaxW
             PaxWicketInjector resolver = super.addingService(reference);
             synchronized (resolvers) {
                 resolvers.add(resolver);
+                updateInjectors();
             }
             return resolver;
         }
@@ -207,6 +282,7 @@ public final class DelegatingComponentInstanciationListener extends AbstractPaxW
             PaxWicketInjector resolver = service;
             synchronized (resolvers) {
                 resolvers.remove(resolver);
+                updateInjectors();
             }
             super.removedService(reference, service);
         }
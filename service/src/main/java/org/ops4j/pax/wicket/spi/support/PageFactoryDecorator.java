@@ -19,8 +19,11 @@
  */
 package org.ops4j.pax.wicket.spi.support;
 
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
 import java.util.Map;
 
+import net.sf.cglib.proxy.Callback;
 import net.sf.cglib.proxy.Enhancer;
 
 import org.apache.wicket.markup.html.WebPage;
@@ -30,6 +33,9 @@ import org.ops4j.pax.wicket.api.support.AbstractPageFactory;
 import org.osgi.framework.BundleContext;
 public class PageFactoryDecorator implements PageFactory<WebPage>, InjectionAwareDecorator {
 
+    /** the static method CGLib generates to hand the callbacks to the constructor of an enhanced class */
+    private static final String SET_THREAD_CALLBACKS_NAME = "CGLIB$SET_THREAD_CALLBACKS";
+
     private String pageId;
     private String applicationName;
     private String pageName;
@@ -144,6 +150,9 @@ public class PageFactoryDecorator implements PageFactory<WebPage>, InjectionAwar
         private final Class<WebPage> pageClass;
         private final Map<String, String> overwrites;
         private final String injectionSource;
+        private final Method setThreadCallbacks;
+        private final Constructor<?> defaultConstructor;
+        private final Constructor<?> parametersConstructor;
 
         public InternalPageFactory(BundleContext bundleContext, String pageId, String applicationName, String pageName,
                 Class<WebPage> pageClass, Map<String, String> overwrites, String injectionSource)
@@ -152,26 +161,53 @@ public class PageFactoryDecorator implements PageFactory<WebPage>, InjectionAwar
             this.pageClass = pageClass;
             this.overwrites = overwrites;
             this.injectionSource = injectionSource;
+            // the subclass is generated once, creating a page is a plain constructor call afterwards
+            Enhancer e = new Enhancer();
+            e.setClassLoader(PageFactoryDecorator.class.getClassLoader());
+            e.setSuperclass(pageClass);
+            e.setCallbackTypes(ComponentProxy.CALLBACK_TYPES);
+            e.setCallbackFilter(ComponentProxy.CALLBACK_FILTER);
+            Class<?> enhancedClass = e.createClass();
+            try {
+                setThreadCallbacks = enhancedClass.getDeclaredMethod(SET_THREAD_CALLBACKS_NAME, Callback[].class);
+            } catch (NoSuchMethodException ex) {
+                throw new IllegalArgumentException(String.format("%s is not a CGLib enhanced class",
+                    enhancedClass.getName()), ex);
+            }
+            setThreadCallbacks.setAccessible(true);
+            defaultConstructor = getConstructor(enhancedClass);
+            parametersConstructor = getConstructor(enhancedClass, PageParameters.class);
+        }
+
+        private static Constructor<?> getConstructor(Class<?> enhancedClass, Class<?>... parameterTypes) {
+            try {
+                return enhancedClass.getConstructor(parameterTypes);
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
         }
 
         public WebPage createPage(PageParameters params) {
             if (params != null && !params.isEmpty()) {
-                try {
-                    Enhancer e = new Enhancer();
-                    e.setClassLoader(PageFactoryDecorator.class.getClassLoader());
-                    e.setSuperclass(pageClass);
-                    e.setCallback(new ComponentProxy(injectionSource, overwrites));
-                    return (WebPage) e.create(new Class[]{ PageParameters.class }, new Object[]{ params });
-                } catch (Exception e) {
-                    throw new RuntimeException(String.format("Creation of %s not possible", pageClass.getName()), e);
-                }
+                return createPage(parametersConstructor, "(PageParameters)", params);
             }
+            return createPage(defaultConstructor, "()");
+        }
+
+        private WebPage createPage(Constructor<?> constructor, String signature, Object... args) {
             try {
-                Enhancer e = new Enhancer();
-                e.setSuperclass(pageClass);
-                e.setClassLoader(PageFactoryDecorator.class.getClassLoader());
-                e.setCallback(new ComponentProxy(injectionSource, overwrites));
-                return (WebPage) e.create();
+                if (constructor == null) {
+                    throw new NoSuchMethodException(pageClass.getName() + ".<init>" + signature);
+                }
+                // the callbacks have to be in place while the constructor runs since injection happens in there; each
+                // page gets its own proxy, which answers hashCode and equals for the page
+                Callback[] callbacks = new ComponentProxy(injectionSource, overwrites).getCallbacks();
+                setThreadCallbacks.invoke(null, (Object) callbacks);
+                try {
+                    return (WebPage) constructor.newInstance(args);
+                } finally {
+                    setThreadCallbacks.invoke(null, (Object) null);
+                }
             } catch (Exception e) {
                 throw new RuntimeException(String.format("Creation of %s not possible", pageClass.getName()), e);
             }
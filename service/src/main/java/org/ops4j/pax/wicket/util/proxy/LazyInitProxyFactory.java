@@ -22,16 +22,27 @@ package org.ops4j.pax.wicket.util.proxy;
 import java.io.InvalidClassException;
 import java.io.ObjectStreamException;
 import java.io.Serializable;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
+import net.sf.cglib.core.CodeGenerationException;
 import net.sf.cglib.core.DefaultNamingPolicy;
+import net.sf.cglib.core.NamingPolicy;
 import net.sf.cglib.core.Predicate;
+import net.sf.cglib.proxy.Callback;
+import net.sf.cglib.proxy.CallbackFilter;
 import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.proxy.FixedValue;
 import net.sf.cglib.proxy.MethodInterceptor;
 import net.sf.cglib.proxy.MethodProxy;
 
@@ -40,6 +51,7 @@ import org.apache.wicket.application.IClassResolver;
 import org.apache.wicket.protocol.http.WebApplication;
 import org.apache.wicket.settings.ApplicationSettings;
 import org.apache.wicket.util.io.IClusterable;
+import org.ops4j.pax.wicket.internal.util.WeakClassMap;
 import org.ops4j.pax.wicket.spi.ProxyTarget;
 import org.ops4j.pax.wicket.spi.ProxyTargetLocator;
 import org.ops4j.pax.wicket.spi.ReleasableProxyTarget;
@@ -50,6 +62,42 @@ public class LazyInitProxyFactory {
              Float.class, Double.class, Character.class,
              Boolean.class });
 
+    private static final int TARGET_CALLBACK = 0;
+    private static final int FINALIZE_CALLBACK = 1;
+    private static final int OBJECT_METHOD_CALLBACK = 2;
+
+    private static final Class<?>[] CALLBACK_TYPES = { MethodInterceptor.class, FixedValue.class,
+            MethodInterceptor.class };
+
+    private static final CallbackFilter CALLBACK_FILTER = new ProxyCallbackFilter();
+
+    private static final FixedValue SWALLOW_FINALIZE = new SwallowFinalize();
+
+    private static final NamingPolicy NAMING_POLICY = new DefaultNamingPolicy() {
+        @Override
+        public String getClassName(final String prefix, final String source,
+                                   final Object key, final Predicate names) {
+            return super.getClassName("WICKET_" + prefix, source, key, names);
+        }
+    };
+
+    /**
+     * Generated proxy classes by proxied type and the class loader they were defined for. Types and class loaders
+     * are only weakly referenced since both belong to bundles which might be uninstalled; the proxy classes strongly
+     * reference both and are therefore only softly referenced.
+     */
+    private static final Map<Class<?>, Map<ClassLoader, Reference<ProxyClass>>> PROXY_CLASSES =
+        new WeakHashMap<Class<?>, Map<ClassLoader, Reference<ProxyClass>>>();
+
+    /**
+     * The proxy class last used per proxied type, looked up without locking. A type is almost always proxied for a
+     * single class loader, only if that changes the synchronized {@link #PROXY_CLASSES} are consulted.
+     */
+    private static final WeakClassMap<Reference<ProxyClass>> LAST_PROXY_CLASSES =
+        new WeakClassMap<Reference<ProxyClass>>();
+
+    private static final String SET_THREAD_CALLBACKS_NAME = "CGLIB$SET_THREAD_CALLBACKS";
+
     /**
      * <p>createProxy.</p>
      *
@@ -58,6 +106,24 @@ public class LazyInitProxyFactory {
      * @return a {@link java.lang.Object} object.
      */
     public static Object createProxy(final Class<?> type, final ProxyTargetLocator locator) {
+        return createProxy(type, locator, false);
+    }
+
+    /**
+     * Creates a proxy that may be used by many components and threads at the same time. Unlike the proxies created by
+     * {@link #createProxy(Class, ProxyTargetLocator)} it only keeps targets that are not a
+     * {@link org.ops4j.pax.wicket.spi.ReleasableProxyTarget}, releasable targets are located again for every call
+     * since a shared proxy can't tell which caller a target still in use belongs to.
+     *
+     * @param type a {@link java.lang.Class} object.
+     * @param locator a {@link org.ops4j.pax.wicket.spi.ProxyTargetLocator} object.
+     * @return a {@link java.lang.Object} object.
+     */
+    public static Object createSharedProxy(final Class<?> type, final ProxyTargetLocator locator) {
+        return createProxy(type, locator, true);
+    }
+
+    private static Object createProxy(final Class<?> type, final ProxyTargetLocator locator, final boolean shared) {
         if (type.isPrimitive() || BUILTINS.contains(type) || Enum.class.isAssignableFrom(type)) {
             // We special-case primitives as sometimes people use these as
             // SpringBeans (WICKET-603, WICKET-906). Go figure.
@@ -69,39 +135,270 @@ public class LazyInitProxyFactory {
             }
             return realTarget;
         } else if (type.isInterface()) {
-            JdkHandler handler = new JdkHandler(type, locator);
-
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            ProxyClass proxyClass = getProxyClass(type, classLoader);
+            if (proxyClass == null) {
+                proxyClass = createJdkProxyClass(type, classLoader);
+            }
+            JdkHandler handler = new JdkHandler(type, locator, proxyClass.redeclaresProxyMethods, shared);
+            return newInstance(proxyClass.constructor, handler);
+        } else {
+            ClassLoader classLoader = type.getClassLoader();
+            ProxyClass proxyClass = getProxyClass(type, classLoader);
+            if (proxyClass == null) {
+                proxyClass = createCGLibProxyClass(type, classLoader);
+            }
+            CGLibInterceptor handler = new CGLibInterceptor(type, locator, shared);
+            Callback[] callbacks = new Callback[CALLBACK_TYPES.length];
+            callbacks[TARGET_CALLBACK] = handler;
+            callbacks[FINALIZE_CALLBACK] = SWALLOW_FINALIZE;
+            callbacks[OBJECT_METHOD_CALLBACK] = new ObjectMethodInterceptor(handler);
+            setThreadCallbacks(proxyClass, callbacks);
             try {
-                return Proxy.newProxyInstance(Thread.currentThread().getContextClassLoader(),
-                        new Class[]{ type, Serializable.class, ILazyInitProxy.class,
-                                IWriteReplace.class }, handler);
-            } catch (IllegalArgumentException e) {
-                // While in the original Wicket Environment this is a failure of the context-classloader in PAX-WICKET
-                // this is always an error of missing imports into the classloader. Right now we can do nothing here but
-                // inform the user about the problem and throw an IllegalStateException instead wrapping up and
-                // presenting the real problem.
-                throw new IllegalStateException("The real problem is that the used wrapper classes are not imported " +
-                        "by the bundle using injection", e);
+                return newInstance(proxyClass.constructor);
+            } finally {
+                setThreadCallbacks(proxyClass, null);
             }
+        }
+    }
 
+    /**
+     * Generates the proxy class {@link #createProxy(Class, ProxyTargetLocator)} would use for the given type when
+     * called by the current thread, so the first proxy created doesn't have to pay for the class generation. Types
+     * that are never proxied are ignored.
+     *
+     * @param type a {@link java.lang.Class} object.
+     */
+    public static void prepareProxyClass(Class<?> type) {
+        if (type.isPrimitive() || BUILTINS.contains(type) || Enum.class.isAssignableFrom(type)) {
+            return;
+        } else if (type.isInterface()) {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            if (getProxyClass(type, classLoader) == null) {
+                createJdkProxyClass(type, classLoader);
+            }
         } else {
-            CGLibInterceptor handler = new CGLibInterceptor(type, locator);
-
-            Enhancer e = new Enhancer();
-            e.setInterfaces(new Class[]{ Serializable.class, ILazyInitProxy.class,
-                    IWriteReplace.class });
-            e.setSuperclass(type);
-            e.setCallback(handler);
-            //e.setClassLoader(LazyInitProxyFactory.class.getClassLoader());
-            e.setNamingPolicy(new DefaultNamingPolicy() {
-                @Override
-                public String getClassName(final String prefix, final String source,
-                                           final Object key, final Predicate names) {
-                    return super.getClassName("WICKET_" + prefix, source, key, names);
-                }
-            });
+            ClassLoader classLoader = type.getClassLoader();
+            if (getProxyClass(type, classLoader) == null) {
+                createCGLibProxyClass(type, classLoader);
+            }
+        }
+    }
+
+    private static ProxyClass getProxyClass(Class<?> type, ClassLoader classLoader) {
+        Reference<ProxyClass> last = LAST_PROXY_CLASSES.get(type);
+        ProxyClass proxyClass = last == null ? null : last.get();
+        if (proxyClass != null && proxyClass.classLoader == classLoader) {
+            return proxyClass;
+        }
+        synchronized (PROXY_CLASSES) {
+            Map<ClassLoader, Reference<ProxyClass>> byClassLoader = PROXY_CLASSES.get(type);
+            if (byClassLoader == null) {
+                return null;
+            }
+            Reference<ProxyClass> reference = byClassLoader.get(classLoader);
+            proxyClass = reference == null ? null : reference.get();
+        }
+        if (proxyClass != null) {
+            LAST_PROXY_CLASSES.put(type, new SoftReference<ProxyClass>(proxyClass));
+        }
+        return proxyClass;
+    }
+
+    private static ProxyClass putProxyClass(Class<?> type, ClassLoader classLoader, ProxyClass proxyClass) {
+        synchronized (PROXY_CLASSES) {
+            Map<ClassLoader, Reference<ProxyClass>> byClassLoader = PROXY_CLASSES.get(type);
+            if (byClassLoader == null) {
+                byClassLoader = new WeakHashMap<ClassLoader, Reference<ProxyClass>>(2);
+                PROXY_CLASSES.put(type, byClassLoader);
+            }
+            Reference<ProxyClass> reference = byClassLoader.get(classLoader);
+            ProxyClass existing = reference == null ? null : reference.get();
+            if (existing != null) {
+                return existing;
+            }
+            Reference<ProxyClass> created = new SoftReference<ProxyClass>(proxyClass);
+            byClassLoader.put(classLoader, created);
+            LAST_PROXY_CLASSES.put(type, created);
+            return proxyClass;
+        }
+    }
+
+    private static ProxyClass createJdkProxyClass(Class<?> type, ClassLoader classLoader) {
+        Class<?> generatedClass;
+        try {
+            generatedClass = Proxy.getProxyClass(classLoader, new Class[]{ type, Serializable.class,
+                    ILazyInitProxy.class, IWriteReplace.class });
+        } catch (IllegalArgumentException e) {
+            // While in the original Wicket Environment this is a failure of the context-classloader in PAX-WICKET
+            // this is always an error of missing imports into the classloader. Right now we can do nothing here but
+            // inform the user about the problem and throw an IllegalStateException instead wrapping up and
+            // presenting the real problem.
+            throw new IllegalStateException("The real problem is that the used wrapper classes are not imported " +
+                    "by the bundle using injection", e);
+        }
+        boolean redeclaresProxyMethods = false;
+        for (Method method : type.getMethods()) {
+            if (isWriteReplaceMethod(method) || isGetObjectLocatorMethod(method)) {
+                redeclaresProxyMethods = true;
+                break;
+            }
+        }
+        try {
+            Constructor<?> constructor = generatedClass.getConstructor(InvocationHandler.class);
+            return putProxyClass(type, classLoader,
+                new ProxyClass(classLoader, constructor, null, redeclaresProxyMethods));
+        } catch (NoSuchMethodException e) {
+            throw new CodeGenerationException(e);
+        }
+    }
+
+    private static ProxyClass createCGLibProxyClass(Class<?> type, ClassLoader classLoader) {
+        Enhancer e = new Enhancer();
+        e.setInterfaces(new Class[]{ Serializable.class, ILazyInitProxy.class,
+                IWriteReplace.class });
+        e.setSuperclass(type);
+        e.setCallbackFilter(CALLBACK_FILTER);
+        e.setCallbackTypes(CALLBACK_TYPES);
+        //e.setClassLoader(LazyInitProxyFactory.class.getClassLoader());
+        e.setNamingPolicy(NAMING_POLICY);
+        Class<?> generatedClass = e.createClass();
+        Constructor<?> constructor;
+        try {
+            constructor = generatedClass.getDeclaredConstructor();
+            constructor.setAccessible(true);
+        } catch (NoSuchMethodException ex) {
+            throw new IllegalArgumentException("Superclass has no null constructors but no arguments were given");
+        }
+        Method setThreadCallbacks;
+        try {
+            // the method Enhancer.registerCallbacks looks up on every call
+            setThreadCallbacks = generatedClass.getDeclaredMethod(SET_THREAD_CALLBACKS_NAME, Callback[].class);
+            setThreadCallbacks.setAccessible(true);
+        } catch (NoSuchMethodException ex) {
+            throw new CodeGenerationException(ex);
+        }
+        return putProxyClass(type, classLoader, new ProxyClass(classLoader, constructor, setThreadCallbacks, false));
+    }
 
-            return e.create();
+    private static void setThreadCallbacks(ProxyClass proxyClass, Callback[] callbacks) {
+        try {
+            proxyClass.setThreadCallbacks.invoke(null, (Object) callbacks);
+        } catch (InvocationTargetException e) {
+            throw new CodeGenerationException(e.getTargetException());
+        } catch (IllegalAccessException e) {
+            throw new CodeGenerationException(e);
+        }
+    }
+
+    private static Object newInstance(Constructor<?> constructor, Object... args) {
+        try {
+            return constructor.newInstance(args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getTargetException();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CodeGenerationException(cause);
+        } catch (InstantiationException e) {
+            throw new CodeGenerationException(e);
+        } catch (IllegalAccessException e) {
+            throw new CodeGenerationException(e);
+        }
+    }
+
+    /**
+     * A generated proxy class; for jdk proxies it is remembered if the proxied interface redeclares one of the
+     * methods answered by the proxy itself, in which case those can't be told apart by their declaring class.
+     */
+    private static final class ProxyClass {
+
+        private final ClassLoader classLoader;
+
+        private final Constructor<?> constructor;
+
+        /** only set for CGLib proxies */
+        private final Method setThreadCallbacks;
+
+        private final boolean redeclaresProxyMethods;
+
+        private ProxyClass(ClassLoader classLoader, Constructor<?> constructor, Method setThreadCallbacks,
+                boolean redeclaresProxyMethods) {
+            this.classLoader = classLoader;
+            this.constructor = constructor;
+            this.setThreadCallbacks = setThreadCallbacks;
+            this.redeclaresProxyMethods = redeclaresProxyMethods;
+        }
+    }
+
+    /**
+     * Decides once per method and generated class which callback handles the method, so the interceptors don't have
+     * to classify the method on every call.
+     */
+    private static final class ProxyCallbackFilter implements CallbackFilter {
+
+        public int accept(Method method) {
+            if (isFinalizeMethod(method)) {
+                return FINALIZE_CALLBACK;
+            } else if (isEqualsMethod(method) || isHashCodeMethod(method) || isToStringMethod(method)
+                    || isWriteReplaceMethod(method) || method.getDeclaringClass().equals(ILazyInitProxy.class)) {
+                return OBJECT_METHOD_CALLBACK;
+            }
+            return TARGET_CALLBACK;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ProxyCallbackFilter;
+        }
+
+        @Override
+        public int hashCode() {
+            return ProxyCallbackFilter.class.hashCode();
+        }
+    }
+
+    private static final class SwallowFinalize implements FixedValue {
+
+        public Object loadObject() {
+            return null;
+        }
+    }
+
+    /**
+     * Answers the methods a proxy implements itself rather than delegating them to the target. Only called for
+     * {@code equals}, {@code hashCode}, {@code toString}, {@code writeReplace} and the {@link ILazyInitProxy}
+     * methods, so the method name is sufficient to tell them apart.
+     */
+    private static Object invokeProxyMethod(Object handler, Method method, Object[] args)
+        throws ObjectStreamException {
+        String name = method.getName();
+        if ("equals".equals(name)) {
+            return handler.equals(args[0]) ? Boolean.TRUE : Boolean.FALSE;
+        } else if ("hashCode".equals(name)) {
+            return Integer.valueOf(handler.hashCode());
+        } else if ("toString".equals(name)) {
+            return handler.toString();
+        } else if ("writeReplace".equals(name)) {
+            return ((IWriteReplace) handler).writeReplace();
+        }
+        return ((ILazyInitProxy) handler).getObjectLocator();
+    }
+
+    private static final class ObjectMethodInterceptor implements MethodInterceptor {
+
+        private final CGLibInterceptor handler;
+
+        private ObjectMethodInterceptor(CGLibInterceptor handler) {
+            this.handler = handler;
+        }
+
+        public Object intercept(Object object, Method method, Object[] args, MethodProxy proxy)
+                throws Throwable {
+            return invokeProxyMethod(handler, method, args);
         }
     }
 
@@ -160,44 +457,52 @@ public class LazyInitProxyFactory {
 
         private final String typeName;
 
-        private transient Object target;
+        private final boolean shared;
 
-        public CGLibInterceptor(Class<?> type, ProxyTargetLocator locator) {
+        private transient volatile Object target;
+
+        public CGLibInterceptor(Class<?> type, ProxyTargetLocator locator, boolean shared) {
             super();
             typeName = type.getName();
             this.locator = locator;
+            this.shared = shared;
         }
 
+        /**
+         * Only called for methods delegated to the target, see {@link ProxyCallbackFilter}
+         */
         public Object intercept(Object object, Method method, Object[] args, MethodProxy proxy)
                 throws Throwable {
-            if (isFinalizeMethod(method)) {
-                // swallow finalize call
-                return null;
-            } else if (isEqualsMethod(method)) {
-                return equals(args[0]) ? Boolean.TRUE : Boolean.FALSE;
-            } else if (isHashCodeMethod(method)) {
-                return new Integer(hashCode());
-            } else if (isToStringMethod(method)) {
-                return toString();
-            } else if (isWriteReplaceMethod(method)) {
-                return writeReplace();
-            } else if (method.getDeclaringClass().equals(ILazyInitProxy.class)) {
-                return getObjectLocator();
-            }
-            if (target == null) {
-                target = locator.locateProxyTarget();
-            }
+            Object current = locateTarget();
             Object invoke;
             try {
-                invoke = proxy.invoke(getRealTarget(target), args);
+                invoke = proxy.invoke(getRealTarget(current), args);
             } finally {
-                if (target instanceof ReleasableProxyTarget) {
-                    target = ((ReleasableProxyTarget) target).releaseTarget();
-                }
+                releaseTarget(current);
             }
             return invoke;
         }
 
+        private Object locateTarget() {
+            Object current = target;
+            if (current == null) {
+                current = locator.locateProxyTarget();
+                if (!shared || !(current instanceof ReleasableProxyTarget)) {
+                    target = current;
+                }
+            }
+            return current;
+        }
+
+        private void releaseTarget(Object current) {
+            if (current instanceof ReleasableProxyTarget) {
+                ProxyTarget released = ((ReleasableProxyTarget) current).releaseTarget();
+                if (!shared) {
+                    target = released;
+                }
+            }
+        }
+
         public ProxyTargetLocator getObjectLocator() {
             return locator;
         }
@@ -225,47 +530,48 @@ public class LazyInitProxyFactory {
 
         private final String typeName;
 
-        private transient Object target;
+        private final boolean redeclaresProxyMethods;
+
+        private final boolean shared;
+
+        private transient volatile Object target;
 
         /**
          * Constructor
          * 
          * @param type class of object this handler will represent
          * @param locator object locator used to locate the object this proxy represents
+         * @param redeclaresProxyMethods true if type declares a method also declared by {@link ILazyInitProxy} or
+         *        {@link IWriteReplace}
+         * @param shared true if the proxy is used by several components and threads at the same time
          */
-        public JdkHandler(Class<?> type, ProxyTargetLocator locator) {
+        public JdkHandler(Class<?> type, ProxyTargetLocator locator, boolean redeclaresProxyMethods, boolean shared) {
             super();
             this.locator = locator;
+            this.redeclaresProxyMethods = redeclaresProxyMethods;
+            this.shared = shared;
             typeName = type.getName();
         }
 
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-            if (isFinalizeMethod(method)) {
-                // swallow finalize call
-                return null;
-            } else if (isEqualsMethod(method)) {
-                return equals(args[0]) ? Boolean.TRUE : Boolean.FALSE;
-            } else if (isHashCodeMethod(method)) {
-                return new Integer(hashCode());
-            } else if (isToStringMethod(method)) {
-                return toString();
-            } else if (method.getDeclaringClass().equals(ILazyInitProxy.class)) {
-                return getObjectLocator();
-            } else if (isWriteReplaceMethod(method)) {
-                return writeReplace();
+            // jdk proxies pass the methods of Object for equals, hashCode and toString and the method of the first
+            // interface declaring it otherwise, so unless the proxied type redeclares one of our own methods the
+            // declaring class is sufficient to dispatch
+            Class<?> declaringClass = method.getDeclaringClass();
+            if (declaringClass == Object.class || declaringClass == ILazyInitProxy.class
+                    || declaringClass == IWriteReplace.class) {
+                return invokeProxyMethod(this, method, args);
+            } else if (redeclaresProxyMethods && (isWriteReplaceMethod(method) || isGetObjectLocatorMethod(method))) {
+                return invokeProxyMethod(this, method, args);
             }
 
-            if (target == null) {
-                target = locator.locateProxyTarget();
-            }
+            Object current = locateTarget();
             try {
                 Object invoke;
                 try {
-                    invoke = method.invoke(getRealTarget(target), args);
+                    invoke = method.invoke(getRealTarget(current), args);
                 } finally {
-                    if (target instanceof ReleasableProxyTarget) {
-                        target = ((ReleasableProxyTarget) target).releaseTarget();
-                    }
+                    releaseTarget(current);
                 }
                 return invoke;
             } catch (InvocationTargetException e) {
@@ -273,6 +579,26 @@ public class LazyInitProxyFactory {
             }
         }
 
+        private Object locateTarget() {
+            Object current = target;
+            if (current == null) {
+                current = locator.locateProxyTarget();
+                if (!shared || !(current instanceof ReleasableProxyTarget)) {
+                    target = current;
+                }
+            }
+            return current;
+        }
+
+        private void releaseTarget(Object current) {
+            if (current instanceof ReleasableProxyTarget) {
+                ProxyTarget released = ((ReleasableProxyTarget) current).releaseTarget();
+                if (!shared) {
+                    target = released;
+                }
+            }
+        }
+
         public ProxyTargetLocator getObjectLocator() {
             return locator;
         }
@@ -339,6 +665,16 @@ public class LazyInitProxyFactory {
                 method.getName().equals("finalize");
     }
 
+    /**
+     * Checks if the method is the {@link ILazyInitProxy#getObjectLocator()} method
+     *
+     * @param method method being tested
+     * @return true if the method is the getObjectLocator method, false otherwise
+     */
+    protected static boolean isGetObjectLocatorMethod(Method method) {
+        return method.getParameterTypes().length == 0 && method.getName().equals("getObjectLocator");
+    }
+
     /**
      * Checks if the method is the writeReplace method
      *
@@ -0,0 +1,207 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.util.serialization;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Assigns small numeric ids to the classes serialized for an application so that compact streams only have to write
+ * the id instead of the full class descriptor. Ids are only valid within the running VM, each dictionary therefore
+ * carries a random id that is written in front of every compact stream and checked before reading one.
+ *
+ * Classes are only weakly referenced so that a dictionary does not keep the class loaders of updated bundles alive.
+ * The slot of a collected class is handed out again with the next generation, every class is therefore written as its
+ * slot followed by the generation of the slot. Data that refers to a collected class is detected by the generation and
+ * rejected with an {@link UnloadedClassException}.
+ *
+ * @version $Id: $Id
+ */
+final class ClassDescriptorDictionary {
+
+    private static final ConcurrentMap<String, ClassDescriptorDictionary> DICTIONARIES =
+        new ConcurrentHashMap<String, ClassDescriptorDictionary>();
+
+    private static final Random RANDOM = new Random();
+
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    private final long id;
+    private final ConcurrentMap<String, Entry> entriesByName = new ConcurrentHashMap<String, Entry>();
+    private volatile Entry[] entries = NO_ENTRIES;
+    private final ReferenceQueue<Class<?>> collected = new ReferenceQueue<Class<?>>();
+    private final Queue<Integer> freeSlots = new ArrayDeque<Integer>();
+
+    private ClassDescriptorDictionary(long id) {
+        this.id = id;
+        // the bundle replacements end up in almost every stream, give them the smallest ids
+        register(ReplaceBundleContext.class);
+        register(ReplaceBundle.class);
+    }
+
+    /**
+     * Returns the dictionary of the given application. The dictionary outlives the application instance so pages
+     * stored before a restart of the application can still be read afterwards.
+     */
+    static ClassDescriptorDictionary forApplication(String applicationKey) {
+        ClassDescriptorDictionary dictionary = DICTIONARIES.get(applicationKey);
+        if (dictionary == null) {
+            synchronized (RANDOM) {
+                dictionary = new ClassDescriptorDictionary(RANDOM.nextLong());
+            }
+            ClassDescriptorDictionary existing = DICTIONARIES.putIfAbsent(applicationKey, dictionary);
+            if (existing != null) {
+                dictionary = existing;
+            }
+        }
+        return dictionary;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    /**
+     * Writes the slot and generation of the given class, registering the class if it wasn't seen before. A class
+     * loaded by an updated bundle is registered anew even though its name didn't change.
+     */
+    void writeClass(DataOutput out, Class<?> clazz) throws IOException {
+        Entry entry = register(clazz);
+        writeClassId(out, entry.slot);
+        writeClassId(out, entry.generation);
+    }
+
+    /**
+     * Reads a class written by {@link #writeClass(DataOutput, Class)}
+     *
+     * @throws UnloadedClassException if the class has been unloaded since the data was written
+     * @throws InvalidClassException if the slot is unknown
+     */
+    Class<?> readClass(DataInput in) throws IOException {
+        int slot = readClassId(in);
+        int generation = readClassId(in);
+        Entry[] current = entries;
+        if (slot < 0 || slot >= current.length) {
+            throw new InvalidClassException("unknown class id " + slot);
+        }
+        Entry entry = current[slot];
+        Class<?> clazz = entry.get();
+        if (clazz == null || entry.generation != generation) {
+            throw new UnloadedClassException(entry.className);
+        }
+        return clazz;
+    }
+
+    private Entry register(Class<?> clazz) {
+        Entry entry = entriesByName.get(clazz.getName());
+        if (entry != null && entry.get() == clazz) {
+            return entry;
+        }
+        synchronized (this) {
+            entry = entriesByName.get(clazz.getName());
+            if (entry != null && entry.get() == clazz) {
+                return entry;
+            }
+            expungeCollectedEntries();
+            Entry[] current = entries;
+            Entry[] updated;
+            Integer freeSlot = freeSlots.poll();
+            if (freeSlot != null) {
+                int slot = freeSlot.intValue();
+                entry = new Entry(slot, current[slot].generation + 1, clazz, collected);
+                updated = current.clone();
+            } else {
+                entry = new Entry(current.length, 0, clazz, collected);
+                updated = new Entry[current.length + 1];
+                System.arraycopy(current, 0, updated, 0, current.length);
+            }
+            updated[entry.slot] = entry;
+            entries = updated;
+            entriesByName.put(clazz.getName(), entry);
+            return entry;
+        }
+    }
+
+    private void expungeCollectedEntries() {
+        for (Object reference = collected.poll(); reference != null; reference = collected.poll()) {
+            Entry entry = (Entry) reference;
+            entriesByName.remove(entry.className, entry);
+            freeSlots.add(Integer.valueOf(entry.slot));
+        }
+    }
+
+    /**
+     * Writes a class id using as few bytes as possible, ids below 128 take a single byte
+     */
+    static void writeClassId(DataOutput out, int classId) throws IOException {
+        int remaining = classId;
+        while ((remaining & ~0x7F) != 0) {
+            out.writeByte(remaining & 0x7F | 0x80);
+            remaining >>>= 7;
+        }
+        out.writeByte(remaining);
+    }
+
+    /**
+     * Reads a class id written by {@link #writeClassId(DataOutput, int)}
+     */
+    static int readClassId(DataInput in) throws IOException {
+        int classId = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            classId |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return classId;
+            }
+        }
+        throw new InvalidClassException("malformed class id");
+    }
+
+    /**
+     * Thrown when data refers to a class that has been unloaded since, for example because its bundle was updated
+     */
+    static final class UnloadedClassException extends InvalidClassException {
+
+        private static final long serialVersionUID = 1L;
+
+        private UnloadedClassException(String className) {
+            super(className, "class has been unloaded");
+        }
+    }
+
+    private static final class Entry extends WeakReference<Class<?>> {
+
+        private final int slot;
+        private final int generation;
+        private final String className;
+
+        private Entry(int slot, int generation, Class<?> clazz, ReferenceQueue<Class<?>> queue) {
+            super(clazz, queue);
+            this.slot = slot;
+            this.generation = generation;
+            className = clazz.getName();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.util.serialization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.wicket.application.IClassResolver;
+import org.ops4j.pax.wicket.internal.util.WeakIdentityMap;
+import org.ops4j.pax.wicket.spi.ProxyTargetLocator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maps locators with the same serialized content to a single {@link SerializedLocator}, so a stream writes the
+ * locator of every injected field only once and refers to it by a back reference afterwards, no matter how many
+ * components hold a proxy with an equal locator. As the serialized form is written instead of the locator, a locator
+ * is serialized only once, however many streams it is written to. A {@link PaxWicketObjectInputStream} turns it back
+ * into the locator.
+ *
+ * Locators are only weakly referenced so that a registry does not keep the class loaders of updated bundles alive.
+ * The serialized forms are only weakly referenced as well, the content of locators that are all gone is dropped.
+ *
+ * @version $Id: $Id
+ */
+final class LocatorRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocatorRegistry.class);
+
+    private static final ConcurrentMap<String, LocatorRegistry> REGISTRIES =
+        new ConcurrentHashMap<String, LocatorRegistry>();
+
+    /** the serialized form by locator instance, so a locator is only serialized once whatever its equals says */
+    private final WeakIdentityMap<ProxyTargetLocator, SerializedLocator> byInstance =
+        new WeakIdentityMap<ProxyTargetLocator, SerializedLocator>();
+    /** the canonical serialized form by content, neither keys nor values keep it alive */
+    private final ConcurrentMap<ContentReference, ContentReference> byContent =
+        new ConcurrentHashMap<ContentReference, ContentReference>();
+    private final ReferenceQueue<SerializedLocator> collected = new ReferenceQueue<SerializedLocator>();
+
+    private LocatorRegistry() {
+    }
+
+    /**
+     * Returns the registry of the given application
+     */
+    static LocatorRegistry forApplication(String applicationKey) {
+        LocatorRegistry registry = REGISTRIES.get(applicationKey);
+        if (registry == null) {
+            registry = new LocatorRegistry();
+            LocatorRegistry existing = REGISTRIES.putIfAbsent(applicationKey, registry);
+            if (existing != null) {
+                registry = existing;
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * Returns the serialized form shared by all locators with the content of the given one to be written in its
+     * place, the locator itself if its content can't be determined
+     */
+    Object intern(ProxyTargetLocator locator) {
+        SerializedLocator serialized = byInstance.get(locator);
+        if (serialized != null) {
+            return serialized;
+        }
+        try {
+            serialized = new SerializedLocator(locator);
+        } catch (IOException e) {
+            LOGGER.debug("Can't determine the content of locator {}, writing it as is", locator, e);
+            return locator;
+        }
+        purge();
+        ContentReference reference = new ContentReference(serialized, collected);
+        for (;;) {
+            ContentReference existing = byContent.putIfAbsent(reference, reference);
+            if (existing == null) {
+                break;
+            }
+            SerializedLocator canonical = existing.get();
+            if (canonical != null) {
+                serialized = canonical;
+                break;
+            }
+            // all locators with this content have been collected since the lookup
+            byContent.remove(existing, existing);
+        }
+        byInstance.put(locator, serialized);
+        return serialized;
+    }
+
+    /**
+     * <p>size.</p>
+     *
+     * @return the number of distinct locator contents currently known
+     */
+    int size() {
+        purge();
+        return byContent.size();
+    }
+
+    private void purge() {
+        Reference<? extends SerializedLocator> reference;
+        while ((reference = collected.poll()) != null) {
+            byContent.remove(reference, reference);
+        }
+    }
+
+    /**
+     * A weak reference to a serialized form that compares by content as long as the serialized form is alive and by
+     * identity afterwards, so the entry of a collected serialized form can still be removed
+     */
+    private static final class ContentReference extends WeakReference<SerializedLocator> {
+
+        private final int hash;
+
+        private ContentReference(SerializedLocator serialized, ReferenceQueue<SerializedLocator> queue) {
+            super(serialized, queue);
+            hash = serialized.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof ContentReference)) {
+                return false;
+            }
+            SerializedLocator serialized = get();
+            return serialized != null && serialized.equals(((ContentReference) obj).get());
+        }
+    }
+
+    /**
+     * The serialized form of a locator. It is kept alive by the locators it was created for, so it lives as long as
+     * one of them does.
+     */
+    static final class SerializedLocator implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] bytes;
+        private final transient int hash;
+
+        private SerializedLocator(ProxyTargetLocator locator) throws IOException {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            PaxWicketObjectOutputStream out = new PaxWicketObjectOutputStream(buffer);
+            out.writeObject(locator);
+            out.flush();
+            bytes = buffer.toByteArray();
+            hash = Arrays.hashCode(bytes);
+        }
+
+        /**
+         * Reads the locator, resolving its classes with the given resolver
+         */
+        Object readLocator(IClassResolver classResolver) throws IOException {
+            PaxWicketObjectInputStream in =
+                new PaxWicketObjectInputStream(new ByteArrayInputStream(bytes), classResolver);
+            try {
+                return in.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("could not read serialized locator", e);
+            } finally {
+                in.close();
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof SerializedLocator && Arrays.equals(bytes, ((SerializedLocator) obj).bytes);
+        }
+    }
+
+}
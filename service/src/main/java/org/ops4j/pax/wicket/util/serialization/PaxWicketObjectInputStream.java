@@ -33,6 +33,7 @@ import org.apache.wicket.application.IClassResolver;
 public final class PaxWicketObjectInputStream extends ObjectInputStream {
 
     private final IClassResolver classResolver;
+    private final ClassDescriptorDictionary dictionary;
 
     /**
      * <p>Constructor for PaxWicketObjectInputStream.</p>
@@ -42,12 +43,31 @@ public final class PaxWicketObjectInputStream extends ObjectInputStream {
      * @throws java.io.IOException if any.
      */
     public PaxWicketObjectInputStream(InputStream inputStream, IClassResolver resolver) throws IOException {
+        this(inputStream, resolver, null);
+    }
+
+    /**
+     * Creates a stream reading class ids written by a {@link PaxWicketObjectOutputStream} using the same dictionary.
+     */
+    PaxWicketObjectInputStream(InputStream inputStream, IClassResolver resolver,
+            ClassDescriptorDictionary dictionary) throws IOException {
         super(inputStream);
 
         classResolver = resolver;
+        this.dictionary = dictionary;
         enableResolveObject(true);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+        if (dictionary == null) {
+            return super.readClassDescriptor();
+        }
+        // classes unloaded by a bundle update since the data was written are rejected, the data is treated as missing
+        return ObjectStreamClass.lookupAny(dictionary.readClass(this));
+    }
+
     /** {@inheritDoc} */
     @Override
     protected final Object resolveObject(Object object) throws IOException {
@@ -57,6 +77,9 @@ public final class PaxWicketObjectInputStream extends ObjectInputStream {
         } else if (object instanceof ReplaceBundle) {
             ReplaceBundle replaceBundle = (ReplaceBundle) object;
             return replaceBundle.getBundle();
+        } else if (object instanceof LocatorRegistry.SerializedLocator) {
+            LocatorRegistry.SerializedLocator serializedLocator = (LocatorRegistry.SerializedLocator) object;
+            return serializedLocator.readLocator(classResolver);
         } else {
             return super.resolveObject(object);
         }
@@ -20,9 +20,11 @@ import static org.ops4j.lang.NullArgumentException.validateNotNull;
 import java.io.IOException;
 import java.io.NotSerializableException;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
 import java.io.OutputStream;
 
 import org.apache.wicket.core.util.objects.checker.CheckingObjectOutputStream;
+import org.ops4j.pax.wicket.spi.ProxyTargetLocator;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.slf4j.Logger;
@@ -47,8 +49,24 @@ public class PaxWicketObjectOutputStream extends ObjectOutputStream {
      * @throws java.io.IOException if any.
      */
     public PaxWicketObjectOutputStream(OutputStream outputStream) throws IOException {
+        this(outputStream, null);
+    }
+
+    /**
+     * Creates a stream writing the ids of the given dictionary instead of full class descriptors, such a stream can
+     * only be read by a {@link PaxWicketObjectInputStream} using the same dictionary.
+     */
+    PaxWicketObjectOutputStream(OutputStream outputStream, ClassDescriptorDictionary dictionary) throws IOException {
+        this(outputStream, dictionary, null);
+    }
+
+    /**
+     * Creates a stream that additionally writes locators with equal content only once, if a registry is given
+     */
+    PaxWicketObjectOutputStream(OutputStream outputStream, ClassDescriptorDictionary dictionary,
+            LocatorRegistry locatorRegistry) throws IOException {
         validateNotNull(outputStream, "outputStream");
-        this.outputStream = new OSGiAwareOutputStream(outputStream);
+        this.outputStream = new OSGiAwareOutputStream(outputStream, dictionary, locatorRegistry);
     }
 
     /** {@inheritDoc} */
@@ -101,12 +119,26 @@ public class PaxWicketObjectOutputStream extends ObjectOutputStream {
 
     private static final class OSGiAwareOutputStream extends ObjectOutputStream {
 
-        private OSGiAwareOutputStream(OutputStream outputStream)
-            throws IOException {
+        private final ClassDescriptorDictionary dictionary;
+        private final LocatorRegistry locatorRegistry;
+
+        private OSGiAwareOutputStream(OutputStream outputStream, ClassDescriptorDictionary dictionary,
+                LocatorRegistry locatorRegistry) throws IOException {
             super(outputStream);
+            this.dictionary = dictionary;
+            this.locatorRegistry = locatorRegistry;
             enableReplaceObject(true);
         }
 
+        @Override
+        protected void writeClassDescriptor(ObjectStreamClass descriptor) throws IOException {
+            if (dictionary == null) {
+                super.writeClassDescriptor(descriptor);
+            } else {
+                dictionary.writeClass(this, descriptor.forClass());
+            }
+        }
+
         @Override
         protected Object replaceObject(Object object)
             throws IOException {
@@ -116,6 +148,9 @@ public class PaxWicketObjectOutputStream extends ObjectOutputStream {
             } else if (object instanceof Bundle) {
                 Bundle bundle = (Bundle) object;
                 return new ReplaceBundle(bundle);
+            } else if (locatorRegistry != null && object instanceof ProxyTargetLocator) {
+                // locators with equal content share one serialized form, written once and referenced afterwards
+                return locatorRegistry.intern((ProxyTargetLocator) object);
             } else {
                 return super.replaceObject(object);
             }
@@ -15,6 +15,10 @@
  */
 package org.ops4j.pax.wicket.util.serialization;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
@@ -22,38 +26,173 @@ import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 
 import org.apache.wicket.Application;
+import org.apache.wicket.ThreadContext;
 import org.apache.wicket.application.IClassResolver;
 import org.apache.wicket.protocol.http.WebApplication;
 import org.apache.wicket.serialize.java.JavaSerializer;
 import org.apache.wicket.settings.ApplicationSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * A simple wrapper for the original wicket serializer making it possible to serialize class which inject osgi
  * bundle based classes.
  *
+ * In compact mode class descriptors are replaced by the ids of a per application dictionary and the buffers used for
+ * serialization are reused per thread. Compact data can only be read within the same VM, pages written by another VM
+ * (for example by a page store persisted over a restart) are treated as missing, just like pages that refer to a class
+ * unloaded by a bundle update in the meantime. Independent of that, the locators of
+ * injected proxies may be written only once per page for all proxies with equal locators.
+ *
  * @author nmw
  * @version $Id: $Id
  */
 public class PaxWicketSerializer extends JavaSerializer {
+
+    /**
+     * Framework property that, when set to <code>true</code>, lets the applications serialize their pages in compact
+     * mode
+     */
+    public static final String COMPACT_PROPERTY = "pax.wicket.serializer.compact";
+
+    /**
+     * Framework property that, when set to <code>true</code>, lets the applications write the locators of injected
+     * proxies with equal content only once per page
+     */
+    public static final String INTERN_LOCATORS_PROPERTY = "pax.wicket.serializer.internlocators";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PaxWicketSerializer.class);
+
+    /** buffers grown beyond this size are not kept for the next page */
+    private static final int MAX_REUSED_BUFFER_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<ByteArrayOutputStream> BUFFERS = new ThreadLocal<ByteArrayOutputStream>();
+
+    private final String applicationKey;
+    private final ClassDescriptorDictionary dictionary;
+    private final LocatorRegistry locatorRegistry;
+
     /**
      * <p>Constructor for PaxWicketSerializer.</p>
      *
      * @param applicationKey a {@link java.lang.String} object.
      */
     public PaxWicketSerializer(String applicationKey) {
+        this(applicationKey, false);
+    }
+
+    /**
+     * <p>Constructor for PaxWicketSerializer.</p>
+     *
+     * @param applicationKey a {@link java.lang.String} object.
+     * @param compact <code>true</code> to write class ids instead of full class descriptors
+     */
+    public PaxWicketSerializer(String applicationKey, boolean compact) {
+        this(applicationKey, compact, false);
+    }
+
+    /**
+     * <p>Constructor for PaxWicketSerializer.</p>
+     *
+     * @param applicationKey a {@link java.lang.String} object.
+     * @param compact <code>true</code> to write class ids instead of full class descriptors
+     * @param internLocators <code>true</code> to write locators with equal content only once per page
+     */
+    public PaxWicketSerializer(String applicationKey, boolean compact, boolean internLocators) {
         super(applicationKey);
+        this.applicationKey = applicationKey;
+        dictionary = compact ? ClassDescriptorDictionary.forApplication(applicationKey) : null;
+        locatorRegistry = internLocators ? LocatorRegistry.forApplication(applicationKey) : null;
+    }
+
+    /**
+     * <p>isCompact.</p>
+     *
+     * @return <code>true</code> if this serializer writes class ids instead of full class descriptors
+     */
+    public boolean isCompact() {
+        return dictionary != null;
+    }
+
+    /**
+     * <p>isInternLocators.</p>
+     *
+     * @return <code>true</code> if this serializer writes locators with equal content only once per page
+     */
+    public boolean isInternLocators() {
+        return locatorRegistry != null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] serialize(Object object) {
+        if (dictionary == null) {
+            return super.serialize(object);
+        }
+        ByteArrayOutputStream buffer = BUFFERS.get();
+        if (buffer == null) {
+            buffer = new ByteArrayOutputStream();
+        } else {
+            BUFFERS.remove();
+        }
+        try {
+            new DataOutputStream(buffer).writeLong(dictionary.getId());
+            ObjectOutputStream out = newObjectOutputStream(buffer);
+            out.writeObject(object);
+            out.flush();
+            return buffer.toByteArray();
+        } catch (Exception e) {
+            LOGGER.error("Error serializing object " + object.getClass() + " [object=" + object + "]", e);
+            return null;
+        } finally {
+            if (buffer.size() <= MAX_REUSED_BUFFER_SIZE) {
+                buffer.reset();
+                BUFFERS.set(buffer);
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object deserialize(byte[] data) {
+        if (dictionary == null) {
+            return super.deserialize(data);
+        }
+        ThreadContext old = ThreadContext.get(false);
+        try {
+            ByteArrayInputStream in = new ByteArrayInputStream(data);
+            if (new DataInputStream(in).readLong() != dictionary.getId()) {
+                LOGGER.warn("Ignoring data written in compact mode by another instance of application {}",
+                    applicationKey);
+                return null;
+            }
+            if (ThreadContext.getApplication() == null) {
+                ThreadContext.setApplication(Application.get(applicationKey));
+            }
+            return newObjectInputStream(in).readObject();
+        } catch (ClassDescriptorDictionary.UnloadedClassException e) {
+            LOGGER.warn("Ignoring data of application {} written with class {} that has been unloaded since",
+                applicationKey, e.classname);
+            return null;
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException("Could not deserialize object from byte[]", e);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not deserialize object from byte[]", e);
+        } finally {
+            ThreadContext.restore(old);
+        }
     }
 
     /** {@inheritDoc} */
     @Override
     protected ObjectInputStream newObjectInputStream(InputStream in) throws IOException {
-        return new PaxWicketObjectInputStream(in, getClassResolver());
+        return new PaxWicketObjectInputStream(in, getClassResolver(), dictionary);
     }
 
     /** {@inheritDoc} */
     @Override
     protected ObjectOutputStream newObjectOutputStream(OutputStream out) throws IOException {
-        return new PaxWicketObjectOutputStream(out);
+        return new PaxWicketObjectOutputStream(out, dictionary, locatorRegistry);
     }
 
     private IClassResolver getClassResolver() {
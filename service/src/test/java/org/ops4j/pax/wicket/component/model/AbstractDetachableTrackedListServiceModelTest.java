@@ -0,0 +1,175 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.component.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.wicket.internal.injection.registry.FakeServiceRegistry;
+import org.ops4j.pax.wicket.internal.injection.registry.FakeServiceRegistry.Registration;
+import org.osgi.framework.BundleContext;
+
+public class AbstractDetachableTrackedListServiceModelTest {
+
+    private FakeServiceRegistry registry;
+    private BundleContext context;
+    private BundleClassLoader classLoader;
+
+    @Before
+    public void setUp() throws Exception {
+        registry = new FakeServiceRegistry();
+        context = registry.createBundleContext();
+        classLoader = new BundleClassLoader(context.getBundle(), NamedService.class);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        registry.stop(context);
+    }
+
+    @Test
+    public void testLoad_shouldListHighestRankingFirst() throws Exception {
+        register("low", -5);
+        register("high", 10);
+        register("default", 0);
+
+        NamesModel model = new NamesModel(classLoader.getServiceType(), null);
+
+        assertEquals(Arrays.asList("high", "default", "low"), model.getObject());
+    }
+
+    @Test
+    public void testLoad_shouldNotPassServicesThatWentAway() throws Exception {
+        Object first = classLoader.createService("first");
+        Object second = classLoader.createService("second");
+        registry.register(classLoader.getServiceType(), first, 0);
+        Registration secondRegistration = registry.register(classLoader.getServiceType(), second, 5);
+        NamesModel model = new NamesModel(classLoader.getServiceType(), null);
+        assertEquals(Arrays.asList("second", "first"), model.getObject());
+
+        secondRegistration.unregister();
+        model.detach();
+        model.loaded.clear();
+
+        assertEquals(Collections.singletonList("first"), model.getObject());
+        assertEquals(Collections.singletonList(first), model.loaded);
+    }
+
+    @Test
+    public void testLoad_shouldFollowNewServices() throws Exception {
+        register("first", 0);
+        NamesModel model = new NamesModel(classLoader.getServiceType(), null);
+        assertEquals(Collections.singletonList("first"), model.getObject());
+
+        register("second", 5);
+        model.detach();
+
+        assertEquals(Arrays.asList("second", "first"), model.getObject());
+    }
+
+    @Test
+    public void testLoad_shouldApplyTheFilter() throws Exception {
+        registry.register(classLoader.getServiceType(), classLoader.createService("match"), 0,
+            Collections.<String, Object> singletonMap("name", "match"));
+        registry.register(classLoader.getServiceType(), classLoader.createService("other"), 0,
+            Collections.<String, Object> singletonMap("name", "other"));
+
+        NamesModel model = new NamesModel(classLoader.getServiceType(), "(name=match)");
+
+        assertEquals(Collections.singletonList("match"), model.getObject());
+    }
+
+    @Test
+    public void testLoad_withInvalidFilter_shouldReturnNull() throws Exception {
+        register("first", 0);
+
+        NamesModel model = new NamesModel(classLoader.getServiceType(), "(name=broken");
+
+        assertNull(model.getObject());
+        assertTrue(model.loaded.isEmpty());
+        assertEquals(0, registry.getServiceListenerCount());
+    }
+
+    @Test
+    public void testLoad_withFailingService_shouldTryTheNextService() throws Exception {
+        register("failing", 10);
+        register("working", 0);
+
+        NamesModel model = new NamesModel(classLoader.getServiceType(), null);
+
+        assertEquals(Collections.singletonList("working"), model.getObject());
+        assertEquals(2, model.loaded.size());
+    }
+
+    @Test
+    public void testLoad_shouldCloseTheHandleOfAThrowawayFilterWithItsModels() throws Exception {
+        register("first", 0);
+        NamesModel throwaway = new NamesModel(classLoader.getServiceType(), "(name=throwaway)");
+        throwaway.getObject();
+        NamesModel kept = new NamesModel(classLoader.getServiceType(), "(name=kept)");
+        kept.getObject();
+        assertEquals(2, registry.getServiceListenerCount());
+
+        WeakReference<NamesModel> reference = new WeakReference<NamesModel>(throwaway);
+        throwaway = null;
+        for (int i = 0; i < 50 && registry.getServiceListenerCount() > 1; i++) {
+            System.gc();
+            Thread.sleep(20);
+            // handles without users are closed when the next handle is acquired
+            new NamesModel(classLoader.getServiceType(), "(name=kept)").getObject();
+        }
+
+        assertNull(reference.get());
+        assertEquals(1, registry.getServiceListenerCount());
+        kept.detach();
+        assertTrue(kept.getObject().isEmpty());
+    }
+
+    private void register(String name, int ranking) throws Exception {
+        registry.register(classLoader.getServiceType(), classLoader.createService(name), ranking);
+    }
+
+    static final class NamesModel extends AbstractDetachableTrackedListServiceModel<Object, String> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Object> loaded = Collections.synchronizedList(new ArrayList<Object>());
+
+        NamesModel(Class<Object> serviceType, String filter) {
+            super(serviceType, NamesModel.class, filter);
+        }
+
+        @Override
+        protected String doLoad(Object service) throws Exception {
+            loaded.add(service);
+            String name = (String) getServiceType().getMethod("getName").invoke(service);
+            if (name.equals("failing")) {
+                throw new IllegalStateException("failing service");
+            }
+            return name;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.component.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.wicket.internal.injection.registry.FakeServiceRegistry;
+import org.ops4j.pax.wicket.internal.injection.registry.FakeServiceRegistry.Registration;
+import org.osgi.framework.BundleContext;
+
+public class AbstractDetachableTrackedServiceModelTest {
+
+    private FakeServiceRegistry registry;
+    private BundleContext context;
+    private BundleClassLoader classLoader;
+
+    @Before
+    public void setUp() throws Exception {
+        registry = new FakeServiceRegistry();
+        context = registry.createBundleContext();
+        classLoader = new BundleClassLoader(context.getBundle(), NamedService.class);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        registry.stop(context);
+    }
+
+    @Test
+    public void testServiceType_shouldBeDefinedByTheBundle() throws Exception {
+        assertNotSame(NamedService.class, classLoader.getServiceType());
+        assertTrue(classLoader.getServiceType().getClassLoader() instanceof BundleClassLoader);
+    }
+
+    @Test
+    public void testLoad_shouldUseHighestRankingService() throws Exception {
+        register("low", -5);
+        register("high", 10);
+        register("default", 0);
+
+        NameModel model = new NameModel(classLoader.getServiceType());
+
+        assertEquals("high", model.getObject());
+    }
+
+    @Test
+    public void testLoad_withoutService_shouldReturnNull() throws Exception {
+        NameModel model = new NameModel(classLoader.getServiceType());
+
+        assertNull(model.getObject());
+        assertTrue(model.loaded.isEmpty());
+    }
+
+    @Test
+    public void testLoad_shouldNotPassServicesThatWentAway() throws Exception {
+        Object low = classLoader.createService("low");
+        Object high = classLoader.createService("high");
+        registry.register(classLoader.getServiceType(), low, 0);
+        Registration highRegistration = registry.register(classLoader.getServiceType(), high, 10);
+        NameModel model = new NameModel(classLoader.getServiceType());
+        assertEquals("high", model.getObject());
+
+        highRegistration.unregister();
+        model.detach();
+
+        assertEquals("low", model.getObject());
+        assertEquals(Arrays.asList(high, low), model.loaded);
+    }
+
+    @Test
+    public void testLoad_withFailingService_shouldReturnNull() throws Exception {
+        register("high", 10);
+        NameModel model = new NameModel(classLoader.getServiceType());
+        model.failing = true;
+
+        assertNull(model.getObject());
+    }
+
+    @Test
+    public void testLoad_shouldReopenAfterTheBundleStopped() throws Exception {
+        register("first", 0);
+        NameModel model = new NameModel(classLoader.getServiceType());
+        assertEquals("first", model.getObject());
+
+        registry.stop(context);
+        register("second", 10);
+        model.detach();
+
+        assertEquals("second", model.getObject());
+    }
+
+    private void register(String name, int ranking) throws Exception {
+        registry.register(classLoader.getServiceType(), classLoader.createService(name), ranking);
+    }
+
+    static final class NameModel extends AbstractDetachableTrackedServiceModel<Object, String> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Object> loaded = Collections.synchronizedList(new ArrayList<Object>());
+        private boolean failing;
+
+        NameModel(Class<Object> serviceType) {
+            super(serviceType, NameModel.class);
+        }
+
+        @Override
+        protected String doLoad(Object service) throws Exception {
+            loaded.add(service);
+            if (failing) {
+                throw new IllegalStateException("failing service");
+            }
+            return (String) getServiceType().getMethod("getName").invoke(service);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.component.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleReference;
+
+/**
+ * Stands in for the class loader of a bundle. It defines the given service interface itself, so the models find the
+ * bundle through the class loader of the service type like they do in a framework.
+ */
+final class BundleClassLoader extends ClassLoader implements BundleReference {
+
+    private final Bundle bundle;
+    private final String serviceTypeName;
+
+    BundleClassLoader(Bundle bundle, Class<?> serviceType) {
+        super(BundleClassLoader.class.getClassLoader());
+        this.bundle = bundle;
+        serviceTypeName = serviceType.getName();
+    }
+
+    public Bundle getBundle() {
+        return bundle;
+    }
+
+    /**
+     * Returns the service interface as defined by this class loader
+     */
+    @SuppressWarnings("unchecked")
+    Class<Object> getServiceType() throws ClassNotFoundException {
+        return (Class<Object>) loadClass(serviceTypeName);
+    }
+
+    /**
+     * Creates a service implementing the service interface of this class loader, whose <code>getName</code> method
+     * returns the given name
+     */
+    Object createService(final String name) throws ClassNotFoundException {
+        return Proxy.newProxyInstance(this, new Class<?>[]{ getServiceType() }, new InvocationHandler() {
+
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("equals")) {
+                    return proxy == args[0];
+                } else if (method.getName().equals("hashCode")) {
+                    return System.identityHashCode(proxy);
+                }
+                return name;
+            }
+        });
+    }
+
+    @Override
+    protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        if (!name.equals(serviceTypeName)) {
+            return super.loadClass(name, resolve);
+        }
+        Class<?> clazz = findLoadedClass(name);
+        if (clazz == null) {
+            byte[] bytes = readClass(name);
+            clazz = defineClass(name, bytes, 0, bytes.length);
+        }
+        if (resolve) {
+            resolveClass(clazz);
+        }
+        return clazz;
+    }
+
+    private byte[] readClass(String name) throws ClassNotFoundException {
+        InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class");
+        if (in == null) {
+            throw new ClassNotFoundException(name);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new ClassNotFoundException(name, e);
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // nothing left to read anyways
+            }
+        }
+    }
+}
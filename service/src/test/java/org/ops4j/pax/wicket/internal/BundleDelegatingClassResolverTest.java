@@ -0,0 +1,180 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.wicket.application.IClassResolver;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.wicket.internal.extender.ExtendedBundle;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+
+public class BundleDelegatingClassResolverTest {
+
+    private BundleContext context;
+    private ServiceRegistration<?> registration;
+    private BundleDelegatingClassResolver resolver;
+
+    @Before
+    public void setUp() throws Exception {
+        context = mock(BundleContext.class);
+        registration = mock(ServiceRegistration.class);
+        doReturn(registration).when(context).registerService(eq(IClassResolver.class), any(IClassResolver.class),
+            any(Dictionary.class));
+        resolver = new BundleDelegatingClassResolver(context, "test");
+        resolver.start();
+    }
+
+    @Test
+    public void testResolveClass_shouldLoadEachClassOnlyOnce() throws Exception {
+        Bundle bundle = createBundle("bundle.a");
+        doReturn(String.class).when(bundle).loadClass("java.lang.String");
+        resolver.addBundle(new ExtendedBundle(null, bundle));
+
+        assertSame(String.class, resolver.resolveClass("java.lang.String"));
+        assertSame(String.class, resolver.resolveClass("java.lang.String"));
+        verify(bundle, times(1)).loadClass("java.lang.String");
+    }
+
+    @Test
+    public void testResolveClass_shouldRememberMissesUntilBundlesChange() throws Exception {
+        Bundle bundleA = createBundle("bundle.a");
+        when(bundleA.loadClass("org.example.Page")).thenThrow(new ClassNotFoundException());
+        resolver.addBundle(new ExtendedBundle(null, bundleA));
+
+        assertNotResolvable("org.example.Page");
+        assertNotResolvable("org.example.Page");
+        verify(bundleA, times(1)).loadClass("org.example.Page");
+
+        Bundle bundleB = createBundle("bundle.b");
+        doReturn(Object.class).when(bundleB).loadClass("org.example.Page");
+        resolver.addBundle(new ExtendedBundle(null, bundleB));
+
+        assertSame(Object.class, resolver.resolveClass("org.example.Page"));
+        verify(registration, times(2)).setProperties(any(Dictionary.class));
+    }
+
+    @Test
+    public void testResolveClass_shouldAskBundlesProvidingThePackageOnly() throws Exception {
+        Bundle other = createBundle("bundle.other");
+        resolver.addBundle(createExtendedBundle(other, "org.example.other"));
+        Bundle provider = createBundle("bundle.provider");
+        doReturn(Object.class).when(provider).loadClass("org.example.Page");
+        resolver.addBundle(createExtendedBundle(provider, "org.example"));
+
+        assertSame(Object.class, resolver.resolveClass("org.example.Page"));
+        verify(other, never()).loadClass("org.example.Page");
+    }
+
+    @Test
+    public void testGetResources_shouldCollectResourcesOfAllBundles() throws Exception {
+        Bundle first = createBundle("bundle.first");
+        resolver.addBundle(createExtendedBundle(first, "org.example"));
+        Bundle second = createBundle("bundle.second");
+        resolver.addBundle(createExtendedBundle(second, "org.example"));
+        Bundle resourcesOnly = createBundle("bundle.resources");
+        resolver.addBundle(createExtendedBundle(resourcesOnly, "org.example.other"));
+        URL firstUrl = new URL("file:/first/org/example/Page.properties");
+        URL secondUrl = new URL("file:/second/org/example/Page.properties");
+        URL splitUrl = new URL("file:/resources/org/example/Page.properties");
+        when(first.getResources("org/example/Page.properties")).thenReturn(enumeration(firstUrl));
+        when(second.getResources("org/example/Page.properties")).thenReturn(enumeration(secondUrl));
+        when(resourcesOnly.getResources("org/example/Page.properties")).thenReturn(enumeration(splitUrl));
+        URL defaultPackageUrl = new URL("file:/first/wicket.properties");
+        when(first.getResources("wicket.properties")).thenReturn(enumeration(defaultPackageUrl));
+        URL otherDefaultPackageUrl = new URL("file:/second/wicket.properties");
+        when(second.getResources("wicket.properties")).thenReturn(enumeration(otherDefaultPackageUrl));
+
+        List<URL> resources = toList(resolver.getResources("org/example/Page.properties"));
+        List<URL> defaultPackageResources = toList(resolver.getResources("wicket.properties"));
+
+        assertEquals(3, resources.size());
+        assertEquals(new HashSet<URL>(Arrays.asList(firstUrl, secondUrl)),
+            new HashSet<URL>(resources.subList(0, 2)));
+        assertEquals(splitUrl, resources.get(2));
+        assertEquals(new HashSet<URL>(Arrays.asList(defaultPackageUrl, otherDefaultPackageUrl)),
+            new HashSet<URL>(defaultPackageResources));
+    }
+
+    @Test
+    public void testResolveClass_shouldFallBackToAllBundlesForUnknownPackages() throws Exception {
+        Bundle provider = createBundle("bundle.provider");
+        resolver.addBundle(createExtendedBundle(provider, "org.example"));
+        Bundle dynamic = createBundle("bundle.dynamic");
+        doReturn(Object.class).when(dynamic).loadClass("org.example.dynamic.Page");
+        resolver.addBundle(createExtendedBundle(dynamic));
+
+        assertSame(Object.class, resolver.resolveClass("org.example.dynamic.Page"));
+    }
+
+    private void assertNotResolvable(String classname) {
+        try {
+            resolver.resolveClass(classname);
+            fail("ClassNotFoundException expected for " + classname);
+        } catch (ClassNotFoundException e) {
+            // expected
+        }
+    }
+
+    private static Enumeration<URL> enumeration(URL url) {
+        return Collections.enumeration(Collections.singletonList(url));
+    }
+
+    private static List<URL> toList(Iterator<URL> iterator) {
+        List<URL> list = new ArrayList<URL>();
+        while (iterator.hasNext()) {
+            list.add(iterator.next());
+        }
+        return list;
+    }
+
+    private static ExtendedBundle createExtendedBundle(Bundle bundle, String... packages) {
+        ExtendedBundle extendedBundle = mock(ExtendedBundle.class);
+        when(extendedBundle.getBundle()).thenReturn(bundle);
+        when(extendedBundle.getPackages()).thenReturn(new HashSet<String>(Arrays.asList(packages)));
+        return extendedBundle;
+    }
+
+    private static Bundle createBundle(String symbolicName) {
+        Bundle bundle = mock(Bundle.class);
+        when(bundle.getSymbolicName()).thenReturn(symbolicName);
+        return bundle;
+    }
+
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.internal;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.wicket.application.IClassResolver;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.wicket.api.Constants;
+import org.ops4j.pax.wicket.internal.injection.registry.FakeServiceRegistry;
+
+public class DelegatingClassResolverTest {
+
+    private static final String CLASS_NAME = "org.example.Page";
+
+    private FakeServiceRegistry registry;
+    private DelegatingClassResolver resolver;
+
+    @Before
+    public void setUp() throws Exception {
+        registry = new FakeServiceRegistry();
+        resolver = new DelegatingClassResolver(registry.createBundleContext(), "test");
+        resolver.intialize();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        resolver.dispose();
+    }
+
+    @Test
+    public void testResolveClass_shouldNotRememberMissesOfOtherResolvers() throws Exception {
+        IClassResolver other = mock(IClassResolver.class);
+        when(other.resolveClass(CLASS_NAME)).thenThrow(new ClassNotFoundException());
+        register(other, false);
+
+        assertNotResolvable();
+        doReturn(Object.class).when(other).resolveClass(CLASS_NAME);
+
+        assertSame(Object.class, resolver.resolveClass(CLASS_NAME));
+    }
+
+    @Test
+    public void testResolveClass_shouldRememberMissesOfRevisionedResolvers() throws Exception {
+        IClassResolver bundles = mock(IClassResolver.class);
+        when(bundles.resolveClass(CLASS_NAME)).thenThrow(new ClassNotFoundException());
+        register(bundles, true);
+        IClassResolver other = mock(IClassResolver.class);
+        when(other.resolveClass(CLASS_NAME)).thenThrow(new ClassNotFoundException());
+        register(other, false);
+
+        assertNotResolvable();
+        assertNotResolvable();
+
+        verify(bundles, times(1)).resolveClass(CLASS_NAME);
+        verify(other, times(2)).resolveClass(CLASS_NAME);
+    }
+
+    @Test
+    public void testResolveClass_shouldForgetMissesWhenResolversChange() throws Exception {
+        IClassResolver bundles = mock(IClassResolver.class);
+        when(bundles.resolveClass(CLASS_NAME)).thenThrow(new ClassNotFoundException());
+        register(bundles, true);
+        assertNotResolvable();
+        assertNotResolvable();
+        verify(bundles, times(1)).resolveClass(CLASS_NAME);
+
+        IClassResolver added = mock(IClassResolver.class);
+        doReturn(Object.class).when(added).resolveClass(CLASS_NAME);
+        register(added, true);
+
+        assertSame(Object.class, resolver.resolveClass(CLASS_NAME));
+    }
+
+    private void register(IClassResolver classResolver, boolean revisioned) {
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put(Constants.APPLICATION_NAME, "test");
+        if (revisioned) {
+            properties.put(BundleDelegatingClassResolver.BUNDLES_REVISION, Long.valueOf(0));
+        }
+        registry.register(IClassResolver.class, classResolver, 0, properties);
+    }
+
+    private void assertNotResolvable() {
+        try {
+            resolver.resolveClass(CLASS_NAME);
+            fail("class must not be resolvable");
+        } catch (ClassNotFoundException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.sf.cglib.proxy.Factory;
+import net.sf.cglib.proxy.MethodInterceptor;
+import net.sf.cglib.proxy.MethodProxy;
+import net.sf.cglib.proxy.NoOp;
+
+import org.apache.wicket.IPageFactory;
+import org.apache.wicket.Page;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.protocol.http.WebApplication;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.wicket.api.Constants;
+import org.ops4j.pax.wicket.api.WebApplicationFactory;
+import org.ops4j.pax.wicket.internal.injection.registry.FakeServiceRegistry;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+public class PaxWicketApplicationFactoryTest {
+
+    private PaxWicketApplicationFactory applicationFactory;
+    private TestApplicationFactory webApplicationFactory;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        BundleContext context = new FakeServiceRegistry().createBundleContext();
+        Bundle bundle = mock(Bundle.class);
+        when(bundle.getBundleContext()).thenReturn(context);
+        ServiceReference<WebApplicationFactory<?>> reference = mock(ServiceReference.class);
+        when(reference.getProperty(Constants.APPLICATION_NAME)).thenReturn("test");
+        when(reference.getProperty(Constants.MOUNTPOINT)).thenReturn("test");
+        when(reference.getBundle()).thenReturn(bundle);
+        webApplicationFactory = new TestApplicationFactory();
+        applicationFactory =
+            PaxWicketApplicationFactory.createPaxWicketApplicationFactory(context, webApplicationFactory, reference);
+    }
+
+    @Test
+    public void testCreateApplication_shouldSubclassTheApplicationOfTheFactory() throws Exception {
+        WebApplication application = applicationFactory.createApplication(null);
+
+        assertSame(TestApplication.class, application.getClass().getSuperclass());
+        assertSame(application, webApplicationFactory.instantiated);
+        assertTrue(((Factory) application).getCallback(1) instanceof NoOp);
+    }
+
+    @Test
+    public void testCreateApplication_shouldAnswerNewPageFactoryFromTheInterceptor() throws Exception {
+        TestApplication application = (TestApplication) applicationFactory.createApplication(null);
+
+        IPageFactory pageFactory = application.callNewPageFactory();
+
+        assertTrue(pageFactory instanceof PaxWicketPageFactory);
+        assertSame(pageFactory, application.callNewPageFactory());
+    }
+
+    @Test
+    public void testCreateApplication_shouldOnlyInterceptTheLifecycleMethods() throws Exception {
+        TestApplication application = (TestApplication) applicationFactory.createApplication(null);
+        RecordingInterceptor recorder = new RecordingInterceptor();
+        ((Factory) application).setCallback(0, recorder);
+
+        assertSame(WebPage.class, application.getHomePage());
+        application.describe();
+        application.hashCode();
+        application.toString();
+        assertEquals(Collections.emptyList(), recorder.methods);
+
+        application.callInit();
+        application.callNewPageFactory();
+        application.callOnDestroy();
+        assertEquals(Arrays.asList("init", "newPageFactory", "onDestroy"), recorder.methods);
+    }
+
+    public static class TestApplication extends WebApplication {
+
+        @Override
+        public Class<? extends Page> getHomePage() {
+            return WebPage.class;
+        }
+
+        public String describe() {
+            return "test";
+        }
+
+        public void callInit() {
+            init();
+        }
+
+        public IPageFactory callNewPageFactory() {
+            return newPageFactory();
+        }
+
+        public void callOnDestroy() {
+            onDestroy();
+        }
+    }
+
+    private static final class TestApplicationFactory implements WebApplicationFactory<TestApplication> {
+
+        private TestApplication instantiated;
+
+        public Class<TestApplication> getWebApplicationClass() {
+            return TestApplication.class;
+        }
+
+        public void onInstantiation(TestApplication application) {
+            instantiated = application;
+        }
+    }
+
+    private static final class RecordingInterceptor implements MethodInterceptor {
+
+        private final List<String> methods = new ArrayList<String>();
+
+        public Object intercept(Object object, Method method, Object[] args, MethodProxy proxy) throws Throwable {
+            methods.add(method.getName());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.internal.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.Servlet;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.ops4j.pax.wicket.api.ConfigurableFilterConfig;
+import org.ops4j.pax.wicket.api.Constants;
+import org.ops4j.pax.wicket.api.FilterFactory;
+import org.ops4j.pax.wicket.internal.injection.registry.FakeServiceRegistry;
+import org.ops4j.pax.wicket.internal.injection.registry.FakeServiceRegistry.Registration;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+public class FilterDelegatorTest {
+
+    private static final String APPLICATION = "test";
+
+    private final List<String> calls = new ArrayList<String>();
+
+    private FakeServiceRegistry registry;
+    private BundleContext context;
+    private FilterDelegator delegator;
+
+    @Before
+    public void setUp() throws Exception {
+        registry = new FakeServiceRegistry();
+        context = registry.createBundleContext();
+        Servlet servlet = mock(Servlet.class);
+        when(servlet.getServletConfig()).thenReturn(mock(ServletConfig.class));
+        doAnswer(new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                calls.add("servlet");
+                return null;
+            }
+        }).when(servlet).service(any(ServletRequest.class), any(ServletResponse.class));
+        delegator = new FilterDelegator(context, APPLICATION);
+        delegator.setServlet(servlet);
+        delegator.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        delegator.stop();
+    }
+
+    @Test
+    public void testDoFilter_shouldRebuildFiltersWhenFactoriesChange() throws Exception {
+        assertEquals(Arrays.asList("servlet"), doFilter());
+
+        Registration first = register("first", 10);
+        assertEquals(Arrays.asList("first", "servlet"), doFilter());
+        assertEquals(Arrays.asList("first", "servlet"), doFilter());
+
+        Registration second = register("second", 0);
+        assertEquals(Arrays.asList("second", "first", "servlet"), doFilter());
+
+        first.unregister();
+        assertEquals(Arrays.asList("second", "servlet"), doFilter());
+
+        second.unregister();
+        assertEquals(Arrays.asList("servlet"), doFilter());
+    }
+
+    @Test
+    public void testDoFilter_shouldApplySuperFiltersFirst() throws Exception {
+        register("registered", 0);
+        Filter[] superFilter = { new RecordingFilter("super") };
+
+        delegator.doFilter(superFilter, mock(ServletRequest.class), mock(ServletResponse.class));
+
+        assertEquals(Arrays.asList("super", "registered", "servlet"), calls);
+    }
+
+    @Test
+    public void testGetFilterFactoryReferences_shouldOnlyChangeWithTrackedFactories() throws Exception {
+        FilterTrackerCustomizer customizer = new FilterTrackerCustomizer(context, APPLICATION);
+        FilterFactoryReference[] empty = customizer.getFilterFactoryReferences();
+        assertEquals(0, empty.length);
+
+        Registration registration = register("first", 0);
+        ServiceReference<FilterFactory> reference = registration.getReference();
+        FilterFactoryReference added = customizer.addingService(reference);
+        FilterFactoryReference[] afterAdd = customizer.getFilterFactoryReferences();
+        assertEquals(Arrays.asList(added), Arrays.asList(afterAdd));
+
+        customizer.removedService(reference, added);
+        FilterFactoryReference[] afterRemove = customizer.getFilterFactoryReferences();
+        assertEquals(0, afterRemove.length);
+        assertNotSame(empty, afterRemove);
+    }
+
+    @Test
+    public void testFilterChain_withList_shouldApplyFiltersInOrder() throws Exception {
+        Servlet servlet = mock(Servlet.class);
+        List<Filter> filters = Arrays.<Filter> asList(new RecordingFilter("a"), new RecordingFilter("b"));
+
+        new PAXWicketFilterChain(filters, servlet).doFilter(mock(ServletRequest.class), mock(ServletResponse.class));
+
+        assertEquals(Arrays.asList("a", "b"), calls);
+    }
+
+    private List<String> doFilter() throws Exception {
+        calls.clear();
+        delegator.doFilter(null, mock(ServletRequest.class), mock(ServletResponse.class));
+        return new ArrayList<String>(calls);
+    }
+
+    private Registration register(final String name, int ranking) {
+        FilterFactory factory = new FilterFactory() {
+            public Filter createFilter(ConfigurableFilterConfig filterConfig) throws ServletException {
+                return new RecordingFilter(name);
+            }
+        };
+        Map<String, Object> properties =
+            Collections.<String, Object> singletonMap(Constants.APPLICATION_NAME, APPLICATION);
+        return registry.register(FilterFactory.class, factory, ranking, properties);
+    }
+
+    private final class RecordingFilter implements Filter {
+
+        private final String name;
+
+        private RecordingFilter(String name) {
+            this.name = name;
+        }
+
+        public void init(FilterConfig filterConfig) throws ServletException {
+        }
+
+        public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+            calls.add(name);
+            chain.doFilter(request, response);
+        }
+
+        public void destroy() {
+        }
+    }
+}
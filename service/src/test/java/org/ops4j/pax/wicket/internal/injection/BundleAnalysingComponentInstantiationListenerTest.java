@@ -0,0 +1,136 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.internal.injection;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.inject.Inject;
+
+import org.junit.Test;
+import org.ops4j.pax.wicket.api.PaxWicketBeanInjectionSource;
+import org.osgi.framework.Bundle;
+import org.ops4j.pax.wicket.spi.ProxyTargetLocator;
+import org.ops4j.pax.wicket.spi.ProxyTargetLocatorFactory;
+import org.osgi.framework.BundleContext;
+import org.osgi.util.tracker.ServiceTracker;
+
+public class BundleAnalysingComponentInstantiationListenerTest {
+
+    @Test
+    public void testInjectionPossible_shouldOnlyMatchClassesOfTheBundle() throws Exception {
+        BundleAnalysingComponentInstantiationListener listener = createListener(
+            "file:/org/ops4j/pax/wicket/internal/injection/BundleAnalysingComponentInstantiationListenerTest.class",
+            "file:/WEB-INF/classes/org/ops4j/pax/wicket/internal/injection/BundleAnalysingComponentInstantiationListenerTest$Nested.class");
+
+        assertTrue(listener.injectionPossible(BundleAnalysingComponentInstantiationListenerTest.class));
+        assertTrue(listener.injectionPossible(Nested.class));
+        assertFalse(listener.injectionPossible(BundleAnalysingComponentInstantiationListener.class));
+        assertFalse(listener.injectionPossible(Test.class));
+    }
+
+    @Test
+    public void testInjectionPossible_withoutClasses_shouldNeverMatch() throws Exception {
+        BundleAnalysingComponentInstantiationListener listener = createListener();
+
+        assertFalse(listener.injectionPossible(BundleAnalysingComponentInstantiationListenerTest.class));
+    }
+
+    @Test
+    public void testWarmUp_shouldOnlyPrepareClassesWithFieldsToInject() throws Exception {
+        BundleAnalysingComponentInstantiationListener listener = createListener();
+
+        assertTrue(listener.warmUp(Injected.class));
+        assertFalse(listener.warmUp(Nested.class));
+        assertFalse(listener.warmUp(Runnable.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testInject_withSharedProxies_shouldShareProxyBetweenInstances() throws Exception {
+        Bundle bundle = mock(Bundle.class);
+        BundleContext bundleContext = mock(BundleContext.class);
+        when(bundleContext.getBundle()).thenReturn(bundle);
+        when(bundleContext.getProperty(BundleAnalysingComponentInstantiationListener.SHARED_PROXIES_PROPERTY))
+            .thenReturn("true");
+        ProxyTargetLocatorFactory factory = mock(ProxyTargetLocatorFactory.class);
+        when(factory.createProxyTargetLocator(any(BundleContext.class), any(Field.class), any(Class.class),
+            anyMapOf(String.class, String.class))).thenReturn(mock(ProxyTargetLocator.class));
+        ServiceTracker<ProxyTargetLocatorFactory, ProxyTargetLocatorFactory> tracker = mock(ServiceTracker.class);
+        when(tracker.getServices(any(ProxyTargetLocatorFactory[].class)))
+            .thenReturn(new ProxyTargetLocatorFactory[]{ factory });
+        BundleAnalysingComponentInstantiationListener listener = new BundleAnalysingComponentInstantiationListener(
+            bundleContext, PaxWicketBeanInjectionSource.INJECTION_SOURCE_SCAN, tracker);
+
+        SharedInjected first = new SharedInjected();
+        SharedInjected second = new SharedInjected();
+        listener.inject(first, SharedInjected.class);
+        listener.inject(second, SharedInjected.class);
+
+        assertNotNull(first.runnable);
+        assertSame(first.runnable, second.runnable);
+        when(tracker.getTrackingCount()).thenReturn(1);
+        listener.inject(second, SharedInjected.class);
+        assertNotSame(first.runnable, second.runnable);
+    }
+
+    private static BundleAnalysingComponentInstantiationListener createListener(String... entries)
+        throws Exception {
+        URL[] urls = new URL[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            urls[i] = new URL(entries[i]);
+        }
+        Bundle bundle = mock(Bundle.class);
+        BundleContext bundleContext = mock(BundleContext.class);
+        when(bundleContext.getBundle()).thenReturn(bundle);
+        when(bundle.getSymbolicName()).thenReturn("test.bundle");
+        when(bundle.findEntries("/", "*.class", true)).thenReturn(
+            entries.length == 0 ? null : Collections.enumeration(Arrays.asList(urls)));
+        return new BundleAnalysingComponentInstantiationListener(bundleContext,
+            PaxWicketBeanInjectionSource.INJECTION_SOURCE_SCAN, (InjectionReadinessGate) null);
+    }
+
+    private static class Nested {
+    }
+
+    private static class Injected {
+
+        @Inject
+        private Runnable runnable;
+
+        @Inject
+        private String name;
+    }
+
+    private static class SharedInjected {
+
+        @Inject
+        private Runnable runnable;
+    }
+
+}
@@ -0,0 +1,242 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.internal.injection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.ops4j.pax.wicket.api.Constants;
+import org.ops4j.pax.wicket.api.InjectionReadiness;
+import org.ops4j.pax.wicket.api.PaxWicketBeanAllowNull;
+import org.ops4j.pax.wicket.internal.extender.ExtendedBundle;
+import org.ops4j.pax.wicket.internal.injection.registry.FakeServiceRegistry;
+import org.ops4j.pax.wicket.internal.injection.registry.FakeServiceRegistry.Registration;
+import org.ops4j.pax.wicket.spi.ProxyTargetLocatorFactory;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+public class BundleDelegatingComponentInstanciationListenerTest {
+
+    private FakeServiceRegistry registry;
+    private BundleContext context;
+    private BundleDelegatingComponentInstanciationListener listener;
+
+    @Before
+    public void setUp() throws Exception {
+        registry = new FakeServiceRegistry();
+        context = registry.createBundleContext();
+        listener = new BundleDelegatingComponentInstanciationListener(context, "test", 0);
+        listener.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        listener.stop();
+    }
+
+    @Test
+    public void testTryInject_shouldOnlyInjectClassesOfAddedBundles() throws Exception {
+        listener.addBundle(createBundle("a", Plain.class));
+
+        assertTrue(listener.tryInject(new Plain(), Plain.class));
+        assertFalse(listener.tryInject(new Other(), Other.class));
+        try {
+            listener.inject(new Other(), Other.class);
+            fail("no bundle contains the class");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testRemoveBundle_shouldDropTheBundleAsOwner() throws Exception {
+        ExtendedBundle bundle = createBundle("a", Plain.class);
+        listener.addBundle(bundle);
+        listener.addBundle(createBundle("b", Other.class));
+        assertTrue(listener.tryInject(new Plain(), Plain.class));
+
+        listener.removeBundle(bundle);
+
+        assertFalse(listener.tryInject(new Plain(), Plain.class));
+        assertTrue(listener.tryInject(new Other(), Other.class));
+    }
+
+    @Test
+    public void testAddBundle_shouldReplaceTheOwnerOfAnUpdatedBundle() throws Exception {
+        listener.addBundle(createBundle("a", Plain.class));
+        assertTrue(listener.tryInject(new Plain(), Plain.class));
+
+        listener.addBundle(createBundle("a", Other.class));
+
+        assertFalse(listener.tryInject(new Plain(), Plain.class));
+        assertTrue(listener.tryInject(new Other(), Other.class));
+    }
+
+    @Test
+    public void testStart_shouldRegisterTheInjectionReadinessOfTheApplication() throws Exception {
+        ServiceReference<?>[] references = context.getServiceReferences(InjectionReadiness.class.getName(),
+            "(" + Constants.APPLICATION_NAME + "=test)");
+        assertEquals(1, references.length);
+        InjectionReadiness readiness = (InjectionReadiness) context.getService(references[0]);
+        assertSame(listener, readiness);
+        assertEquals("test", readiness.getApplicationName());
+        assertFalse(readiness.isInjectionReady());
+        assertEquals(0, readiness.getParkedThreads());
+
+        Registration factory = registry.register(ProxyTargetLocatorFactory.class,
+            mock(ProxyTargetLocatorFactory.class), 0);
+        assertTrue(readiness.isInjectionReady());
+        factory.unregister();
+        assertFalse(readiness.isInjectionReady());
+    }
+
+    @Test
+    public void testAddBundle_withoutWarmUp_shouldNotAnalyseTheBundle() throws Exception {
+        ExtendedBundle bundle = createBundle("a");
+
+        listener.addBundle(bundle);
+
+        verify(bundle, never()).getAllClasses();
+    }
+
+    @Test
+    public void testAddBundle_withWarmUp_shouldRegisterTheBundleAsOwner() throws Exception {
+        BundleDelegatingComponentInstanciationListener warmingUp = startWarmingUpListener();
+        try {
+            // the bundle doesn't list the class as entry, so only the warm up can make it its owner
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(1);
+
+            warmingUp.addBundle(createWarmUpBundle("a", null, release, Injected.class, Plain.class));
+            warmingUp.addBundle(createWarmUpBundle("b", done, null));
+            release.countDown();
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertTrue(warmingUp.tryInject(new Injected(), Injected.class));
+            assertFalse(warmingUp.tryInject(new Plain(), Plain.class));
+        } finally {
+            warmingUp.stop();
+        }
+    }
+
+    @Test
+    public void testAddBundle_withWarmUp_shouldDiscardTheWarmUpOfARemovedBundle() throws Exception {
+        BundleDelegatingComponentInstanciationListener warmingUp = startWarmingUpListener();
+        try {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(1);
+            ExtendedBundle bundle = createWarmUpBundle("a", started, release, Injected.class);
+
+            warmingUp.addBundle(bundle);
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            warmingUp.removeBundle(bundle);
+            warmingUp.addBundle(createWarmUpBundle("b", done, null));
+            release.countDown();
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertFalse(warmingUp.tryInject(new Injected(), Injected.class));
+        } finally {
+            warmingUp.stop();
+        }
+    }
+
+    private BundleDelegatingComponentInstanciationListener startWarmingUpListener() {
+        registry.setProperty(BundleDelegatingComponentInstanciationListener.WARM_UP_PROPERTY, "true");
+        BundleDelegatingComponentInstanciationListener warmingUp =
+            new BundleDelegatingComponentInstanciationListener(registry.createBundleContext(), "warmup", 0);
+        warmingUp.start();
+        return warmingUp;
+    }
+
+    /**
+     * Creates a bundle without class entries whose warm up signals <code>started</code> and then waits for
+     * <code>release</code> before it hands out the given classes. Warm ups run one after the other, so a bundle
+     * whose warm up has started tells that all bundles added before it are warmed up.
+     */
+    private static ExtendedBundle createWarmUpBundle(String symbolicName, final CountDownLatch started,
+            final CountDownLatch release, final Class<?>... classes) throws Exception {
+        ExtendedBundle bundle = createBundle(symbolicName);
+        when(bundle.getAllClasses()).thenAnswer(new Answer<Collection<Class<?>>>() {
+            public Collection<Class<?>> answer(InvocationOnMock invocation) throws Throwable {
+                if (started != null) {
+                    started.countDown();
+                }
+                if (release != null) {
+                    release.await(5, TimeUnit.SECONDS);
+                }
+                return Arrays.asList(classes);
+            }
+        });
+        return bundle;
+    }
+
+    static ExtendedBundle createBundle(String symbolicName, Class<?>... classes) throws Exception {
+        List<URL> entries = new ArrayList<URL>();
+        for (Class<?> clazz : classes) {
+            entries.add(new URL("file:/" + clazz.getName().replace('.', '/') + ".class"));
+        }
+        Bundle bundle = mock(Bundle.class);
+        BundleContext bundleContext = mock(BundleContext.class);
+        when(bundleContext.getBundle()).thenReturn(bundle);
+        when(bundle.getBundleContext()).thenReturn(bundleContext);
+        when(bundle.getSymbolicName()).thenReturn(symbolicName);
+        when(bundle.findEntries("/", "*.class", true)).thenReturn(
+            entries.isEmpty() ? null : Collections.enumeration(entries));
+        ExtendedBundle extendedBundle = mock(ExtendedBundle.class);
+        when(extendedBundle.getBundle()).thenReturn(bundle);
+        when(extendedBundle.getID()).thenReturn(symbolicName);
+        return extendedBundle;
+    }
+
+    private static class Plain {
+    }
+
+    private static class Other {
+    }
+
+    private static class Injected {
+
+        @Inject
+        @PaxWicketBeanAllowNull
+        private Runnable runnable;
+    }
+
+}
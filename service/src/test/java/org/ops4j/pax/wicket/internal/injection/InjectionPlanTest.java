@@ -0,0 +1,92 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.internal.injection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import javax.inject.Inject;
+
+import org.junit.Test;
+import org.ops4j.pax.wicket.api.PaxWicketBeanAllowNull;
+import org.ops4j.pax.wicket.api.PaxWicketBeanFilter;
+import org.ops4j.pax.wicket.api.PaxWicketBeanInjectionSource;
+import org.ops4j.pax.wicket.internal.injection.InjectionPlan.InjectionPoint;
+import org.ops4j.pax.wicket.internal.injection.InjectionPlan.Kind;
+import org.osgi.framework.BundleContext;
+
+public class InjectionPlanTest {
+
+    @Test
+    public void testCreate_shouldResolveAllInjectedFields() {
+        InjectionPlan plan = InjectionPlan.create(Injectable.class);
+
+        assertSame(Injectable.class, plan.getDeclaringClass());
+        assertFalse(plan.isEmpty());
+        Map<String, InjectionPoint> points = new HashMap<String, InjectionPoint>();
+        for (InjectionPoint point : plan.getInjectionPoints()) {
+            points.put(point.getField().getName(), point);
+        }
+        assertEquals(3, points.size());
+
+        InjectionPoint service = points.get("service");
+        assertEquals(Kind.PROXY, service.getKind());
+        assertSame(Runnable.class, service.getBeanType());
+        assertEquals(PaxWicketBeanInjectionSource.INJECTION_SOURCE_SERVICE_REGISTRY, service.getInjectionSource());
+        assertEquals("(name=test)", service.getFilter());
+        assertTrue(service.isAllowNull());
+
+        InjectionPoint future = points.get("future");
+        assertEquals(Kind.FUTURE, future.getKind());
+        assertSame(Runnable.class, future.getBeanType());
+        assertNull(future.getInjectionSource());
+        assertNull(future.getFilter());
+        assertFalse(future.isAllowNull());
+
+        assertEquals(Kind.BUNDLE_CONTEXT, points.get("context").getKind());
+    }
+
+    @Test
+    public void testCreate_withoutInjectedFields_shouldBeEmpty() {
+        assertTrue(InjectionPlan.create(InjectionPlanTest.class).isEmpty());
+    }
+
+    @SuppressWarnings("unused")
+    private static class Injectable {
+
+        @Inject
+        @PaxWicketBeanInjectionSource(PaxWicketBeanInjectionSource.INJECTION_SOURCE_SERVICE_REGISTRY)
+        @PaxWicketBeanFilter("(name=test)")
+        @PaxWicketBeanAllowNull
+        private Runnable service;
+
+        @Inject
+        private Future<Runnable> future;
+
+        @Inject
+        private BundleContext context;
+
+        private Runnable notInjected;
+    }
+
+}
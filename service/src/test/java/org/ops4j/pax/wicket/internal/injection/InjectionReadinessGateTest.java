@@ -0,0 +1,96 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.internal.injection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.apache.wicket.ThreadContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.ops4j.pax.wicket.spi.ProxyTargetLocatorFactory;
+import org.osgi.util.tracker.ServiceTracker;
+
+public class InjectionReadinessGateTest {
+
+    private static final ProxyTargetLocatorFactory[] NONE = new ProxyTargetLocatorFactory[0];
+
+    private ServiceTracker<ProxyTargetLocatorFactory, ProxyTargetLocatorFactory> tracker;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        tracker = mock(ServiceTracker.class);
+        when(tracker.getServices(any(ProxyTargetLocatorFactory[].class))).thenReturn(NONE);
+        when(tracker.waitForService(anyLong())).thenAnswer(new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                Thread.sleep((Long) invocation.getArguments()[0]);
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testGetFactories_withoutTimeout_shouldNotWait() throws Exception {
+        InjectionReadinessGate gate = new InjectionReadinessGate(tracker, "test", 0);
+
+        assertEquals(0, gate.getFactories().length);
+        verify(tracker, never()).waitForService(anyLong());
+    }
+
+    @Test
+    public void testGetFactories_afterDeadline_shouldNotWaitAgain() throws Exception {
+        InjectionReadinessGate gate = new InjectionReadinessGate(tracker, "test", 50);
+
+        assertEquals(0, gate.getFactories().length);
+        assertEquals(0, gate.getFactories().length);
+        verify(tracker, times(1)).waitForService(anyLong());
+        assertEquals(0, gate.getParkedThreads());
+    }
+
+    @Test
+    public void testGetFactories_whenFactoryShowsUp_shouldStartNewDeadline() throws Exception {
+        InjectionReadinessGate gate = new InjectionReadinessGate(tracker, "test", 50);
+        assertEquals(0, gate.getFactories().length);
+
+        ProxyTargetLocatorFactory[] factories = { mock(ProxyTargetLocatorFactory.class) };
+        when(tracker.getServices(any(ProxyTargetLocatorFactory[].class))).thenReturn(factories);
+        assertSame(factories, gate.getFactories());
+
+        when(tracker.getServices(any(ProxyTargetLocatorFactory[].class))).thenReturn(NONE);
+        assertEquals(0, gate.getFactories().length);
+        verify(tracker, times(2)).waitForService(anyLong());
+    }
+
+    @Test
+    public void testNotReady_outsideOfRequest_shouldBeIllegalState() {
+        InjectionReadinessGate gate = new InjectionReadinessGate(tracker, "test", 0);
+        ThreadContext.detach();
+
+        assertTrue(gate.notReady("not yet") instanceof IllegalStateException);
+    }
+
+}
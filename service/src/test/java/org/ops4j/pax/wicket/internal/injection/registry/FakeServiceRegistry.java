@@ -0,0 +1,381 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.internal.injection.registry;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.Constants;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * A minimal in memory service registry for tests of code that tracks or looks up services. Bundle contexts created
+ * by the registry register and look up services, deliver service events to their listeners and deliver a
+ * {@link BundleEvent#STOPPING} event when {@link #stop(BundleContext)} is called. Every context gets a new bundle id,
+ * so state that is kept per bundle does not leak between tests.
+ */
+public final class FakeServiceRegistry {
+
+    private static final AtomicLong BUNDLE_IDS = new AtomicLong(1000);
+
+    private final List<Registration> registrations = new ArrayList<Registration>();
+    private final Map<ServiceListener, Filter> serviceListeners = new HashMap<ServiceListener, Filter>();
+    private final Map<BundleListener, BundleContext> bundleListeners = new HashMap<BundleListener, BundleContext>();
+    private final Map<String, String> properties = new HashMap<String, String>();
+    private long serviceIds;
+
+    /**
+     * Sets a framework property returned by {@link BundleContext#getProperty(String)}
+     */
+    public void setProperty(String key, String value) {
+        properties.put(key, value);
+    }
+
+    /**
+     * Creates the context of a new bundle
+     */
+    public BundleContext createBundleContext() {
+        Bundle bundle = mock(Bundle.class);
+        BundleContext context = mock(BundleContext.class, new ContextAnswer(bundle));
+        long bundleId = BUNDLE_IDS.incrementAndGet();
+        when(bundle.getBundleId()).thenReturn(bundleId);
+        when(bundle.getSymbolicName()).thenReturn("bundle" + bundleId);
+        when(bundle.getBundleContext()).thenReturn(context);
+        return context;
+    }
+
+    /**
+     * Stops the bundle of the given context and starts it again, returning the new context of the bundle
+     */
+    public BundleContext restart(BundleContext context) {
+        stop(context);
+        Bundle bundle = context.getBundle();
+        BundleContext restarted = mock(BundleContext.class, new ContextAnswer(bundle));
+        when(bundle.getBundleContext()).thenReturn(restarted);
+        return restarted;
+    }
+
+    /**
+     * Registers a service under the given class with the given ranking
+     */
+    public Registration register(Class<?> clazz, Object service, int ranking) {
+        return register(clazz, service, ranking, Collections.<String, Object> emptyMap());
+    }
+
+    /**
+     * Registers a service under the given class with the given ranking and additional properties
+     */
+    public Registration register(Class<?> clazz, Object service, int ranking,
+            Map<String, Object> serviceProperties) {
+        Map<String, Object> ranked = new HashMap<String, Object>(serviceProperties);
+        ranked.put(Constants.SERVICE_RANKING, Integer.valueOf(ranking));
+        return register(new String[]{ clazz.getName() }, service, ranked);
+    }
+
+    private Registration register(String[] classes, Object service, Map<String, Object> serviceProperties) {
+        Hashtable<String, Object> dictionary = new Hashtable<String, Object>(serviceProperties);
+        if (!(dictionary.get(Constants.SERVICE_RANKING) instanceof Integer)) {
+            dictionary.put(Constants.SERVICE_RANKING, Integer.valueOf(0));
+        }
+        dictionary.put(Constants.OBJECTCLASS, classes);
+        Registration registration;
+        synchronized (this) {
+            dictionary.put(Constants.SERVICE_ID, Long.valueOf(++serviceIds));
+            registration = new Registration(service, dictionary);
+            registrations.add(registration);
+        }
+        fire(ServiceEvent.REGISTERED, registration);
+        return registration;
+    }
+
+    private static Map<String, Object> toMap(Dictionary<?, ?> dictionary) {
+        Map<String, Object> map = new HashMap<String, Object>();
+        if (dictionary != null) {
+            for (Enumeration<?> keys = dictionary.keys(); keys.hasMoreElements();) {
+                Object key = keys.nextElement();
+                map.put((String) key, dictionary.get(key));
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Delivers a {@link BundleEvent#STOPPING} event for the bundle of the given context to all bundle listeners
+     */
+    public void stop(BundleContext context) {
+        BundleEvent event = new BundleEvent(BundleEvent.STOPPING, context.getBundle());
+        List<BundleListener> listeners;
+        synchronized (this) {
+            listeners = new ArrayList<BundleListener>(bundleListeners.keySet());
+        }
+        for (BundleListener listener : listeners) {
+            listener.bundleChanged(event);
+        }
+    }
+
+    /**
+     * <p>getBundleListenerCount.</p>
+     *
+     * @return the number of bundle listeners currently registered by any context
+     */
+    public synchronized int getBundleListenerCount() {
+        return bundleListeners.size();
+    }
+
+    /**
+     * <p>getServiceListenerCount.</p>
+     *
+     * @return the number of service listeners currently registered by any context
+     */
+    public synchronized int getServiceListenerCount() {
+        return serviceListeners.size();
+    }
+
+    private void fire(int type, Registration registration) {
+        ServiceEvent event = new ServiceEvent(type, registration);
+        Map<ServiceListener, Filter> listeners;
+        synchronized (this) {
+            listeners = new HashMap<ServiceListener, Filter>(serviceListeners);
+        }
+        for (Map.Entry<ServiceListener, Filter> entry : listeners.entrySet()) {
+            if (entry.getValue() == null || entry.getValue().match(registration)) {
+                entry.getKey().serviceChanged(event);
+            }
+        }
+    }
+
+    private synchronized ServiceReference<?>[] getReferences(String clazz, String filter) throws Exception {
+        Filter parsed = filter == null ? null : FrameworkUtil.createFilter(filter);
+        List<ServiceReference<?>> matching = new ArrayList<ServiceReference<?>>();
+        for (Registration registration : registrations) {
+            boolean classMatches =
+                clazz == null
+                        || Arrays.asList((String[]) registration.getProperty(Constants.OBJECTCLASS))
+                            .contains(clazz);
+            if (classMatches && (parsed == null || parsed.match(registration))) {
+                matching.add(registration);
+            }
+        }
+        return matching.isEmpty() ? null : matching.toArray(new ServiceReference<?>[matching.size()]);
+    }
+
+    private final class ContextAnswer implements Answer<Object> {
+
+        private final Bundle bundle;
+
+        private ContextAnswer(Bundle bundle) {
+            this.bundle = bundle;
+        }
+
+        public Object answer(InvocationOnMock invocation) throws Throwable {
+            Method method = invocation.getMethod();
+            Object[] args = invocation.getArguments();
+            String name = method.getName();
+            if (name.equals("getBundle") && args.length == 0) {
+                return bundle;
+            } else if (name.equals("getProperty")) {
+                return properties.get(args[0]);
+            } else if (name.equals("createFilter")) {
+                return FrameworkUtil.createFilter((String) args[0]);
+            } else if (name.equals("addServiceListener")) {
+                synchronized (FakeServiceRegistry.this) {
+                    Filter filter = args.length > 1 && args[1] != null ? FrameworkUtil.createFilter((String) args[1])
+                            : null;
+                    serviceListeners.put((ServiceListener) args[0], filter);
+                }
+                return null;
+            } else if (name.equals("removeServiceListener")) {
+                synchronized (FakeServiceRegistry.this) {
+                    serviceListeners.remove(args[0]);
+                }
+                return null;
+            } else if (name.equals("addBundleListener")) {
+                synchronized (FakeServiceRegistry.this) {
+                    bundleListeners.put((BundleListener) args[0], (BundleContext) invocation.getMock());
+                }
+                return null;
+            } else if (name.equals("removeBundleListener")) {
+                synchronized (FakeServiceRegistry.this) {
+                    bundleListeners.remove(args[0]);
+                }
+                return null;
+            } else if (name.equals("getServiceReferences") || name.equals("getAllServiceReferences")) {
+                String clazz = args[0] instanceof Class ? ((Class<?>) args[0]).getName() : (String) args[0];
+                ServiceReference<?>[] references = getReferences(clazz, (String) args[1]);
+                if (args[0] instanceof Class) {
+                    return references == null ? new ArrayList<Object>() : new ArrayList<Object>(
+                        Arrays.asList(references));
+                }
+                return references;
+            } else if (name.equals("getServiceReference")) {
+                String clazz = args[0] instanceof Class ? ((Class<?>) args[0]).getName() : (String) args[0];
+                ServiceReference<?>[] references = getReferences(clazz, null);
+                if (references == null) {
+                    return null;
+                }
+                ServiceReference<?> best = references[0];
+                for (ServiceReference<?> reference : references) {
+                    if (reference.compareTo(best) > 0) {
+                        best = reference;
+                    }
+                }
+                return best;
+            } else if (name.equals("getService")) {
+                Registration registration = (Registration) args[0];
+                return registration.isRegistered() ? registration.service : null;
+            } else if (name.equals("ungetService")) {
+                return ((Registration) args[0]).isRegistered();
+            } else if (name.equals("registerService")) {
+                String[] classes;
+                if (args[0] instanceof String[]) {
+                    classes = (String[]) args[0];
+                } else {
+                    classes = new String[]{ args[0] instanceof Class ? ((Class<?>) args[0]).getName()
+                            : (String) args[0] };
+                }
+                return register(classes, args[1], toMap((Dictionary<?, ?>) args[2])).getRegistration();
+            }
+            throw new UnsupportedOperationException(name);
+        }
+    }
+
+    /**
+     * A registered service, doubling as its service reference
+     */
+    public final class Registration implements ServiceReference<Object> {
+
+        private final Object service;
+        private final Hashtable<String, Object> dictionary;
+        private final Bundle owner = mock(Bundle.class);
+        private volatile boolean registered = true;
+
+        private Registration(Object service, Hashtable<String, Object> dictionary) {
+            this.service = service;
+            this.dictionary = dictionary;
+        }
+
+        /**
+         * Changes the ranking and delivers a {@link ServiceEvent#MODIFIED} event
+         */
+        public void setRanking(int ranking) {
+            dictionary.put(Constants.SERVICE_RANKING, Integer.valueOf(ranking));
+            fire(ServiceEvent.MODIFIED, this);
+        }
+
+        /**
+         * Unregisters the service and delivers a {@link ServiceEvent#UNREGISTERING} event
+         */
+        public void unregister() {
+            fire(ServiceEvent.UNREGISTERING, this);
+            synchronized (FakeServiceRegistry.this) {
+                registrations.remove(this);
+            }
+            registered = false;
+        }
+
+        /**
+         * Returns this registration typed as reference to a service of the given type
+         */
+        @SuppressWarnings("unchecked")
+        public <S> ServiceReference<S> getReference() {
+            return (ServiceReference<S>) (ServiceReference<?>) this;
+        }
+
+        /**
+         * Returns the {@link ServiceRegistration} handed out for services registered through a bundle context
+         */
+        public ServiceRegistration<Object> getRegistration() {
+            return new ServiceRegistration<Object>() {
+
+                public ServiceReference<Object> getReference() {
+                    return Registration.this;
+                }
+
+                public void setProperties(Dictionary<String, ?> properties) {
+                    throw new UnsupportedOperationException("setProperties");
+                }
+
+                public void unregister() {
+                    Registration.this.unregister();
+                }
+            };
+        }
+
+        boolean isRegistered() {
+            return registered;
+        }
+
+        public Object getProperty(String key) {
+            for (Map.Entry<String, Object> entry : dictionary.entrySet()) {
+                if (entry.getKey().equalsIgnoreCase(key)) {
+                    return entry.getValue();
+                }
+            }
+            return null;
+        }
+
+        public String[] getPropertyKeys() {
+            return dictionary.keySet().toArray(new String[dictionary.size()]);
+        }
+
+        public Bundle getBundle() {
+            return registered ? owner : null;
+        }
+
+        public Bundle[] getUsingBundles() {
+            return null;
+        }
+
+        public boolean isAssignableTo(Bundle bundle, String className) {
+            return true;
+        }
+
+        public int compareTo(Object reference) {
+            Registration other = (Registration) reference;
+            int ranking = ((Integer) getProperty(Constants.SERVICE_RANKING)).intValue();
+            int otherRanking = ((Integer) other.getProperty(Constants.SERVICE_RANKING)).intValue();
+            if (ranking != otherRanking) {
+                return ranking < otherRanking ? -1 : 1;
+            }
+            long id = ((Long) getProperty(Constants.SERVICE_ID)).longValue();
+            long otherId = ((Long) other.getProperty(Constants.SERVICE_ID)).longValue();
+            return id == otherId ? 0 : id > otherId ? -1 : 1;
+        }
+    }
+}
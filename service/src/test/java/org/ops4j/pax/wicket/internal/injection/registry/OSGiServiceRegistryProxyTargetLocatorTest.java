@@ -0,0 +1,94 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.internal.injection.registry;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.wicket.internal.injection.registry.FakeServiceRegistry.Registration;
+import org.ops4j.pax.wicket.spi.ProxyTarget;
+import org.ops4j.pax.wicket.spi.ReleasableProxyTarget;
+import org.osgi.framework.BundleContext;
+
+public class OSGiServiceRegistryProxyTargetLocatorTest {
+
+    private FakeServiceRegistry registry;
+    private BundleContext context;
+
+    @Before
+    public void setUp() throws Exception {
+        registry = new FakeServiceRegistry();
+        registry.setProperty(OSGiServiceRegistryProxyTargetLocator.TRACK_SERVICES_PROPERTY, "true");
+        context = registry.createBundleContext();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        registry.stop(context);
+    }
+
+    @Test
+    public void testLocateProxyTarget_tracked_shouldFollowServiceEvents() throws Exception {
+        Runnable first = new Service();
+        Runnable second = new Service();
+        Registration firstRegistration = registry.register(Runnable.class, first, 0);
+        OSGiServiceRegistryProxyTargetLocator locator =
+            new OSGiServiceRegistryProxyTargetLocator(context, null, Runnable.class, getClass());
+
+        ReleasableProxyTarget target = locator.locateProxyTarget();
+        assertSame(first, target.getTarget());
+
+        registry.register(Runnable.class, second, 0);
+        firstRegistration.unregister();
+        assertSame(second, target.getTarget());
+    }
+
+    @Test
+    public void testReleaseTarget_tracked_shouldKeepTarget() throws Exception {
+        Runnable service = new Service();
+        registry.register(Runnable.class, service, 0);
+        OSGiServiceRegistryProxyTargetLocator locator =
+            new OSGiServiceRegistryProxyTargetLocator(context, null, Runnable.class, getClass());
+
+        ReleasableProxyTarget target = locator.locateProxyTarget();
+        ProxyTarget released = target.releaseTarget();
+
+        assertSame(target, released);
+        assertSame(service, released.getTarget());
+    }
+
+    @Test
+    public void testLocateProxyTarget_tracked_withoutService_shouldFail() throws Exception {
+        OSGiServiceRegistryProxyTargetLocator locator =
+            new OSGiServiceRegistryProxyTargetLocator(context, null, Runnable.class, getClass());
+        try {
+            locator.locateProxyTarget();
+            fail("no service is registered");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains(Runnable.class.getName()));
+        }
+    }
+
+    private static final class Service implements Runnable {
+
+        public void run() {
+        }
+    }
+}
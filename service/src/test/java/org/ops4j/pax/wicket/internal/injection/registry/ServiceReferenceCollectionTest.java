@@ -0,0 +1,184 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.internal.injection.registry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.wicket.internal.injection.registry.FakeServiceRegistry.Registration;
+import org.osgi.framework.BundleContext;
+
+public class ServiceReferenceCollectionTest {
+
+    private FakeServiceRegistry registry;
+    private BundleContext context;
+
+    @Before
+    public void setUp() throws Exception {
+        registry = new FakeServiceRegistry();
+        context = registry.createBundleContext();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        registry.stop(context);
+    }
+
+    @Test
+    public void testTracked_shouldIterateHighestRankingFirst() throws Exception {
+        Runnable low = new Service();
+        Runnable high = new Service();
+        Runnable middle = new Service();
+        registry.register(Runnable.class, low, -5);
+        registry.register(Runnable.class, high, 10);
+        registry.register(Runnable.class, middle, 0);
+
+        ServiceReferenceCollection<Runnable> collection = createCollection(null, true);
+
+        assertEquals(Arrays.asList(high, middle, low), toList(collection));
+        assertEquals(3, collection.size());
+        assertSame(high, collection.get(0));
+        assertSame(middle, collection.get(1));
+        assertSame(low, collection.get(2));
+    }
+
+    @Test
+    public void testTracked_shouldFollowServiceEvents() throws Exception {
+        Runnable first = new Service();
+        Runnable second = new Service();
+        Registration firstRegistration = registry.register(Runnable.class, first, 0);
+        ServiceReferenceCollection<Runnable> collection = createCollection(null, true);
+        assertEquals(Collections.singletonList(first), toList(collection));
+
+        Registration secondRegistration = registry.register(Runnable.class, second, 5);
+        assertEquals(Arrays.asList(second, first), toList(collection));
+        assertEquals(2, collection.size());
+
+        secondRegistration.setRanking(-5);
+        assertEquals(Arrays.asList(first, second), toList(collection));
+        assertSame(second, collection.get(1));
+
+        firstRegistration.unregister();
+        assertEquals(Collections.singletonList(second), toList(collection));
+        assertEquals(1, collection.size());
+
+        secondRegistration.unregister();
+        assertTrue(collection.isEmpty());
+        assertEquals(0, collection.size());
+    }
+
+    @Test
+    public void testTracked_shouldApplyTheFilter() throws Exception {
+        Runnable matching = new Service();
+        registry.register(Runnable.class, matching, 0, Collections.<String, Object> singletonMap("name", "match"));
+        registry.register(Runnable.class, new Service(), 0, Collections.<String, Object> singletonMap("name", "other"));
+
+        ServiceReferenceCollection<Runnable> collection = createCollection("(name=match)", true);
+
+        assertEquals(Collections.singletonList(matching), toList(collection));
+    }
+
+    @Test
+    public void testTracked_shouldReopenAfterTheHandleIsClosed() throws Exception {
+        Runnable first = new Service();
+        registry.register(Runnable.class, first, 0);
+        ServiceReferenceIterable<Runnable> iterable = new ServiceReferenceIterable<Runnable>(Runnable.class, null,
+            context, true);
+        ServiceReferenceCollection<Runnable> collection = new ServiceReferenceCollection<Runnable>(iterable);
+        List<Runnable> before = iterable.getTrackedServices();
+        assertEquals(Collections.singletonList(first), before);
+
+        registry.stop(context);
+        Runnable second = new Service();
+        registry.register(Runnable.class, second, 5);
+
+        assertEquals(Arrays.asList(second, first), toList(collection));
+        assertEquals(2, collection.size());
+        assertNotSame(before, iterable.getTrackedServices());
+    }
+
+    @Test
+    public void testTracked_shouldNotSupportRemoval() throws Exception {
+        registry.register(Runnable.class, new Service(), 0);
+        Iterator<Runnable> iterator = createCollection(null, true).iterator();
+        iterator.next();
+
+        try {
+            iterator.remove();
+            fail("the snapshot is immutable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testTracked_shouldShareTheSnapshotOfTheSameFilter() throws Exception {
+        registry.register(Runnable.class, new Service(), 0);
+        ServiceReferenceIterable<Runnable> first = new ServiceReferenceIterable<Runnable>(Runnable.class, null,
+            context, true);
+        ServiceReferenceIterable<Runnable> second = new ServiceReferenceIterable<Runnable>(Runnable.class, null,
+            context, true);
+
+        assertSame(first.getTrackedServices(), second.getTrackedServices());
+        assertEquals(1, registry.getServiceListenerCount());
+    }
+
+    @Test
+    public void testUntracked_shouldLookUpOnEachCall() throws Exception {
+        Runnable first = new Service();
+        registry.register(Runnable.class, first, 0);
+        ServiceReferenceCollection<Runnable> collection = createCollection(null, false);
+        assertEquals(1, collection.size());
+
+        Runnable second = new Service();
+        registry.register(Runnable.class, second, 5);
+
+        assertEquals(2, collection.size());
+        assertTrue(toList(collection).containsAll(Arrays.asList(first, second)));
+        assertEquals(0, registry.getServiceListenerCount());
+    }
+
+    private ServiceReferenceCollection<Runnable> createCollection(String filter, boolean tracked) {
+        return new ServiceReferenceCollection<Runnable>(new ServiceReferenceIterable<Runnable>(Runnable.class,
+            filter, context, tracked));
+    }
+
+    private static List<Runnable> toList(Iterable<Runnable> iterable) {
+        List<Runnable> services = new ArrayList<Runnable>();
+        for (Runnable service : iterable) {
+            services.add(service);
+        }
+        return services;
+    }
+
+    private static final class Service implements Runnable {
+
+        public void run() {
+        }
+    }
+}
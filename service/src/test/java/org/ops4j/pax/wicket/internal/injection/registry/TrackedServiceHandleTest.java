@@ -0,0 +1,228 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.internal.injection.registry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.wicket.internal.injection.registry.FakeServiceRegistry.Registration;
+import org.osgi.framework.BundleContext;
+
+public class TrackedServiceHandleTest {
+
+    private static final String FILTER = "(objectClass=" + Runnable.class.getName() + ")";
+
+    private FakeServiceRegistry registry;
+    private BundleContext context;
+
+    @Before
+    public void setUp() throws Exception {
+        registry = new FakeServiceRegistry();
+        context = registry.createBundleContext();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        registry.stop(context);
+    }
+
+    @Test
+    public void testGetService_shouldKeepTheChoiceOfASortedLookup() throws Exception {
+        Runnable high = new Service();
+        Runnable low = new Service();
+        registry.register(Runnable.class, high, 10);
+        registry.register(Runnable.class, low, 0);
+
+        TrackedServiceHandle handle = TrackedServiceHandle.getHandle(context, FILTER);
+
+        assertSame(low, handle.getService());
+        assertEquals(Arrays.asList(high, low), handle.getServices());
+    }
+
+    @Test
+    public void testGetService_shouldFollowServiceEvents() throws Exception {
+        Runnable first = new Service();
+        Runnable second = new Service();
+        Registration firstRegistration = registry.register(Runnable.class, first, 0);
+        TrackedServiceHandle handle = TrackedServiceHandle.getHandle(context, FILTER);
+        assertSame(first, handle.getService());
+
+        Registration secondRegistration = registry.register(Runnable.class, second, -1);
+        assertSame(second, handle.getService());
+        assertEquals(Arrays.asList(first, second), handle.getServices());
+
+        secondRegistration.setRanking(5);
+        assertSame(first, handle.getService());
+        assertEquals(Arrays.asList(second, first), handle.getServices());
+
+        firstRegistration.unregister();
+        assertSame(second, handle.getService());
+
+        secondRegistration.unregister();
+        assertNull(handle.getService());
+        assertEquals(Collections.emptyList(), handle.getServices());
+        assertFalse(handle.isClosed());
+    }
+
+    @Test
+    public void testGetServices_shouldBeImmutableSnapshot() throws Exception {
+        registry.register(Runnable.class, new Service(), 0);
+        TrackedServiceHandle handle = TrackedServiceHandle.getHandle(context, FILTER);
+        List<Object> snapshot = handle.getServices();
+
+        registry.register(Runnable.class, new Service(), 0);
+
+        assertEquals(1, snapshot.size());
+        assertEquals(2, handle.getServices().size());
+        try {
+            handle.getServices().clear();
+            fail("the snapshot must not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testGetHandle_shouldShareHandlesPerBundleAndFilter() throws Exception {
+        BundleContext otherContext = registry.createBundleContext();
+        try {
+            TrackedServiceHandle handle = TrackedServiceHandle.getHandle(context, FILTER);
+
+            assertSame(handle, TrackedServiceHandle.getHandle(context, FILTER));
+            assertSame(handle, TrackedServiceHandle.getHandle(context, FILTER, true));
+            assertNotSame(handle, TrackedServiceHandle.getHandle(context, FILTER, false));
+            assertNotSame(handle, TrackedServiceHandle.getHandle(otherContext, FILTER));
+            assertNotSame(handle, TrackedServiceHandle.getHandle(context, "(&" + FILTER + "(a=b))"));
+        } finally {
+            registry.stop(otherContext);
+        }
+    }
+
+    @Test
+    public void testBundleStopping_shouldCloseHandle() throws Exception {
+        Runnable service = new Service();
+        registry.register(Runnable.class, service, 0);
+        TrackedServiceHandle handle = TrackedServiceHandle.getHandle(context, FILTER);
+        assertEquals(1, registry.getServiceListenerCount());
+        assertEquals(1, registry.getBundleListenerCount());
+
+        registry.stop(context);
+
+        assertTrue(handle.isClosed());
+        assertNull(handle.getService());
+        assertTrue(handle.getServices().isEmpty());
+        assertEquals(0, registry.getServiceListenerCount());
+        assertEquals(0, registry.getBundleListenerCount());
+        TrackedServiceHandle reopened = TrackedServiceHandle.getHandle(context, FILTER);
+        assertNotSame(handle, reopened);
+        assertSame(service, reopened.getService());
+    }
+
+    @Test
+    public void testOtherBundleStopping_shouldNotCloseHandle() throws Exception {
+        BundleContext otherContext = registry.createBundleContext();
+        TrackedServiceHandle handle = TrackedServiceHandle.getHandle(context, FILTER);
+
+        registry.stop(otherContext);
+
+        assertFalse(handle.isClosed());
+    }
+
+    @Test
+    public void testGetHandle_afterRestart_shouldReplaceHandleOfTheStoppedContext() throws Exception {
+        Runnable service = new Service();
+        registry.register(Runnable.class, service, 0);
+        registry.stop(context);
+        // opened after the stopping event was delivered, so it is never closed by the bundle itself
+        TrackedServiceHandle stale = TrackedServiceHandle.getHandle(context, FILTER);
+        assertFalse(stale.isClosed());
+
+        context = registry.restart(context);
+        TrackedServiceHandle handle = TrackedServiceHandle.getHandle(context, FILTER);
+
+        assertNotSame(stale, handle);
+        assertTrue(stale.isClosed());
+        assertFalse(handle.isClosed());
+        assertSame(service, handle.getService());
+        assertSame(handle, TrackedServiceHandle.getHandle(context, FILTER));
+        assertEquals(1, registry.getServiceListenerCount());
+        assertEquals(1, registry.getBundleListenerCount());
+    }
+
+    @Test
+    public void testCloseAll_shouldCloseAllHandles() throws Exception {
+        BundleContext otherContext = registry.createBundleContext();
+        Runnable service = new Service();
+        registry.register(Runnable.class, service, 0);
+        TrackedServiceHandle handle = TrackedServiceHandle.getHandle(context, FILTER);
+        TrackedServiceHandle otherHandle = TrackedServiceHandle.getHandle(otherContext, FILTER, false);
+        assertEquals(2, registry.getServiceListenerCount());
+
+        TrackedServiceHandle.closeAll();
+
+        assertTrue(handle.isClosed());
+        assertTrue(otherHandle.isClosed());
+        assertNull(handle.getService());
+        assertEquals(0, registry.getServiceListenerCount());
+        assertEquals(0, registry.getBundleListenerCount());
+        TrackedServiceHandle reopened = TrackedServiceHandle.getHandle(context, FILTER);
+        assertNotSame(handle, reopened);
+        assertSame(service, reopened.getService());
+    }
+
+    @Test
+    public void testAcquire_shouldCloseHandleOnceAllUsersAreCollected() throws Exception {
+        Object user = new Object();
+        TrackedServiceHandle acquired = TrackedServiceHandle.acquire(context, FILTER, false, user);
+        Object pinningUser = new Object();
+        TrackedServiceHandle pinned = TrackedServiceHandle.acquire(context, FILTER, true, pinningUser);
+        assertSame(pinned, TrackedServiceHandle.getHandle(context, FILTER, true));
+        assertSame(acquired, TrackedServiceHandle.acquire(context, FILTER, false, pinningUser));
+
+        WeakReference<Object> reference = new WeakReference<Object>(user);
+        user = null;
+        pinningUser = null;
+        for (int i = 0; i < 50 && !acquired.isClosed(); i++) {
+            System.gc();
+            Thread.sleep(20);
+            // handles without users are closed when the next handle is acquired
+            TrackedServiceHandle.acquire(context, "(objectClass=" + Service.class.getName() + ")", false, this);
+        }
+
+        assertNull(reference.get());
+        assertTrue(acquired.isClosed());
+        assertFalse(pinned.isClosed());
+    }
+
+    private static final class Service implements Runnable {
+
+        public void run() {
+        }
+    }
+}
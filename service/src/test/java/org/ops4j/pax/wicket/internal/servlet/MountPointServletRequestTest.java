@@ -0,0 +1,53 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.internal.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Test;
+
+public class MountPointServletRequestTest {
+
+    @Test
+    public void testIsRootMountPoint() {
+        assertTrue(MountPointServletRequest.isRootMountPoint(""));
+        assertTrue(MountPointServletRequest.isRootMountPoint("/"));
+        assertFalse(MountPointServletRequest.isRootMountPoint("app"));
+        assertFalse(MountPointServletRequest.isRootMountPoint("/app"));
+    }
+
+    @Test
+    public void testPaths_onRootMountPoint_shouldMoveServletPathToPathInfo() {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getContextPath()).thenReturn("/context");
+        when(request.getServletPath()).thenReturn("/page/1");
+        when(request.getPathInfo()).thenReturn(null);
+        when(request.getRequestURI()).thenReturn("/context/page/1");
+
+        MountPointServletRequest wrapped = new MountPointServletRequest(request);
+
+        assertEquals("", wrapped.getContextPath());
+        assertEquals("", wrapped.getServletPath());
+        assertEquals("/page/1", wrapped.getPathInfo());
+        assertEquals("/context/page/1", wrapped.getRequestURI());
+    }
+}
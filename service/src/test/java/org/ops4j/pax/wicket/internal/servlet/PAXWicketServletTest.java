@@ -0,0 +1,108 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.internal.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Method;
+
+import javax.servlet.Filter;
+
+import net.sf.cglib.proxy.Factory;
+import net.sf.cglib.proxy.FixedValue;
+import net.sf.cglib.proxy.NoOp;
+
+import org.apache.wicket.protocol.http.WicketFilter;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.wicket.api.Constants;
+import org.ops4j.pax.wicket.api.WebApplicationFactory;
+import org.ops4j.pax.wicket.internal.PaxWicketApplicationFactory;
+import org.ops4j.pax.wicket.internal.injection.registry.FakeServiceRegistry;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+public class PAXWicketServletTest {
+
+    private PaxWicketApplicationFactory applicationFactory;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        BundleContext context = new FakeServiceRegistry().createBundleContext();
+        Bundle bundle = mock(Bundle.class);
+        when(bundle.getBundleContext()).thenReturn(context);
+        ServiceReference<WebApplicationFactory<?>> reference = mock(ServiceReference.class);
+        when(reference.getProperty(Constants.APPLICATION_NAME)).thenReturn("test");
+        when(reference.getProperty(Constants.MOUNTPOINT)).thenReturn("test");
+        when(reference.getBundle()).thenReturn(bundle);
+        applicationFactory =
+            PaxWicketApplicationFactory.createPaxWicketApplicationFactory(context,
+                mock(WebApplicationFactory.class), reference);
+    }
+
+    @Test
+    public void testCreateFilter_shouldAnswerTheApplicationFactory() throws Exception {
+        Filter filter = PAXWicketServlet.createFilter(applicationFactory);
+
+        assertSame(WicketFilter.class, filter.getClass().getSuperclass());
+        assertSame(applicationFactory, getApplicationFactory(filter));
+        assertTrue(((Factory) filter).getCallback(1) instanceof NoOp);
+    }
+
+    @Test
+    public void testCreateFilter_shouldOnlyOverrideGetApplicationFactory() throws Exception {
+        WicketFilter filter = (WicketFilter) PAXWicketServlet.createFilter(applicationFactory);
+        CountingValue counter = new CountingValue();
+        ((Factory) filter).setCallback(0, counter);
+
+        filter.setFilterPath("test");
+        assertEquals("test/", filter.getFilterPath());
+        filter.getFilterConfig();
+        filter.hashCode();
+        filter.toString();
+        assertEquals(0, counter.calls);
+
+        getApplicationFactory(filter);
+        assertEquals(1, counter.calls);
+    }
+
+    @Test
+    public void testCreateServlet_shouldWrapTheServletWithTheGeneratedFilter() throws Exception {
+        assertTrue(PAXWicketServlet.createServlet(applicationFactory) instanceof ServletCallInterceptor);
+    }
+
+    private static Object getApplicationFactory(Filter filter) throws Exception {
+        Method method = WicketFilter.class.getDeclaredMethod("getApplicationFactory");
+        method.setAccessible(true);
+        return method.invoke(filter);
+    }
+
+    private static final class CountingValue implements FixedValue {
+
+        private int calls;
+
+        public Object loadObject() {
+            calls++;
+            return null;
+        }
+    }
+}
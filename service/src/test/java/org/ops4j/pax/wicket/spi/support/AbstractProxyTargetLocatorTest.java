@@ -0,0 +1,241 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.spi.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.wicket.internal.injection.registry.FakeServiceRegistry;
+import org.ops4j.pax.wicket.internal.injection.registry.FakeServiceRegistry.Registration;
+import org.ops4j.pax.wicket.internal.injection.registry.OSGiServiceRegistryProxyTargetLocator;
+import org.ops4j.pax.wicket.spi.ProxyTarget;
+import org.osgi.framework.BundleContext;
+
+public class AbstractProxyTargetLocatorTest {
+
+    private static final String CONTAINER_BUNDLE = "container.bundle";
+
+    private FakeServiceRegistry registry;
+    private BundleContext bundleContext;
+
+    @Before
+    public void setUp() throws Exception {
+        registry = new FakeServiceRegistry();
+        registry.setProperty(OSGiServiceRegistryProxyTargetLocator.TRACK_SERVICES_PROPERTY, "true");
+        bundleContext = registry.createBundleContext();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        registry.stop(bundleContext);
+    }
+
+    @Test
+    public void testGetTarget_shouldRebindWhenTheContainerIsReplaced() throws Exception {
+        TestContainer first = new TestContainer().withBean("bean", "first");
+        Registration registration = register(first, 0);
+        ProxyTarget target = new TestLocator(bundleContext, "bean").locateProxyTarget();
+        assertEquals("first", target.getTarget());
+
+        registration.unregister();
+        TestContainer second = new TestContainer().withBean("bean", "second");
+        register(second, 0);
+
+        assertEquals("second", target.getTarget());
+        assertEquals(1, first.created);
+        assertEquals(1, second.created);
+    }
+
+    @Test
+    public void testGetTarget_withoutContainer_shouldFail() throws Exception {
+        Registration registration = register(new TestContainer().withBean("bean", "first"), 0);
+        ProxyTarget target = new TestLocator(bundleContext, "bean").locateProxyTarget();
+
+        registration.unregister();
+
+        try {
+            target.getTarget();
+            fail("the container went away");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testGetTarget_shouldCreateSingletonOncePerContainer() throws Exception {
+        TestContainer first = new TestContainer().withSingleton("bean", "first");
+        Registration registration = register(first, 0);
+        ProxyTarget target = new TestLocator(bundleContext, "bean").locateProxyTarget();
+
+        target.getTarget();
+        target.getTarget();
+        target.getTarget();
+        assertEquals(1, first.created);
+
+        registration.unregister();
+        TestContainer second = new TestContainer().withSingleton("bean", "second");
+        register(second, 0);
+
+        assertEquals("second", target.getTarget());
+        assertEquals("second", target.getTarget());
+        assertEquals(1, second.created);
+    }
+
+    @Test
+    public void testGetTarget_shouldCreatePrototypeOnEachCall() throws Exception {
+        TestContainer container = new TestContainer().withBean("bean", "prototype");
+        register(container, 0);
+        ProxyTarget target = new TestLocator(bundleContext, "bean").locateProxyTarget();
+
+        target.getTarget();
+        target.getTarget();
+        target.getTarget();
+
+        assertEquals(3, container.created);
+    }
+
+    @Test
+    public void testLocateProxyTarget_shouldFallBackToAllContainers() throws Exception {
+        // the tracked container is the one with the lowest ranking, it doesn't know the bean
+        TestContainer tracked = new TestContainer().withBean("other", "other");
+        TestContainer fallback = new TestContainer().withBean("bean", "fallback");
+        register(tracked, 0);
+        register(fallback, 5);
+
+        ProxyTarget target = new TestLocator(bundleContext, "bean").locateProxyTarget();
+
+        assertEquals("fallback", target.getTarget());
+        assertEquals(0, tracked.created);
+    }
+
+    @Test
+    public void testLocateProxyTarget_withUnknownBean_shouldFail() throws Exception {
+        register(new TestContainer().withBean("other", "other"), 0);
+
+        try {
+            new TestLocator(bundleContext, "bean").locateProxyTarget();
+            fail("no container knows the bean");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testHasApplicationContext_shouldFollowTheContainers() throws Exception {
+        TestLocator locator = new TestLocator(bundleContext, "bean");
+        assertFalse(locator.hasApplicationContext());
+
+        Registration registration = register(new TestContainer(), 0);
+        assertTrue(locator.hasApplicationContext());
+
+        registration.unregister();
+        assertFalse(locator.hasApplicationContext());
+    }
+
+    @Test
+    public void testLocateProxyTarget_withoutTracking_shouldLookUpOnEachLocate() throws Exception {
+        FakeServiceRegistry untracked = new FakeServiceRegistry();
+        BundleContext context = untracked.createBundleContext();
+        TestContainer container = new TestContainer().withSingleton("bean", "untracked");
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put(CONTAINER_BUNDLE, context.getBundle().getSymbolicName());
+        untracked.register(TestContainer.class, container, 0, properties);
+        TestLocator locator = new TestLocator(context, "bean");
+
+        assertTrue(locator.hasApplicationContext());
+        ProxyTarget target = locator.locateProxyTarget();
+        assertEquals("untracked", target.getTarget());
+        assertEquals("untracked", target.getTarget());
+
+        assertEquals(0, untracked.getServiceListenerCount());
+        assertEquals(2, container.created);
+    }
+
+    private Registration register(TestContainer container, int ranking) {
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put(CONTAINER_BUNDLE, bundleContext.getBundle().getSymbolicName());
+        return registry.register(TestContainer.class, container, ranking, properties);
+    }
+
+    public static final class TestContainer {
+
+        private final Map<String, Object> beans = new HashMap<String, Object>();
+        private final Set<String> singletons = new HashSet<String>();
+        private int created;
+
+        private TestContainer withBean(String name, Object bean) {
+            beans.put(name, bean);
+            return this;
+        }
+
+        private TestContainer withSingleton(String name, Object bean) {
+            singletons.add(name);
+            return withBean(name, bean);
+        }
+    }
+
+    private static final class TestLocator extends AbstractProxyTargetLocator<TestContainer> {
+
+        private static final long serialVersionUID = 1L;
+
+        private TestLocator(BundleContext bundleContext, String beanName) {
+            super(bundleContext, beanName, String.class, AbstractProxyTargetLocatorTest.class, Collections
+                .<String, String> emptyMap());
+        }
+
+        @Override
+        protected BeanReactor<TestContainer> createStrategy() {
+            return new BeanReactor<TestContainer>() {
+
+                public boolean containsBean(TestContainer container) {
+                    return container.beans.containsKey(getBeanName());
+                }
+
+                public Object createBean(TestContainer container) {
+                    container.created++;
+                    return container.beans.get(getBeanName());
+                }
+            };
+        }
+
+        @Override
+        protected boolean isSingleton(BeanReactor<TestContainer> strategy, TestContainer container) {
+            return container.singletons.contains(getBeanName());
+        }
+
+        @Override
+        protected String getApplicationContextFilter(String symbolicBundleName) {
+            return String.format("(&(%s=%s)(objectClass=%s))", CONTAINER_BUNDLE, symbolicBundleName,
+                TestContainer.class.getName());
+        }
+
+        @Override
+        protected Class<? extends TestContainer> getContainerClass() {
+            return TestContainer.class;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.spi.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.proxy.Factory;
+import net.sf.cglib.proxy.MethodInterceptor;
+import net.sf.cglib.proxy.MethodProxy;
+import net.sf.cglib.proxy.NoOp;
+
+import org.junit.Test;
+
+public class ComponentProxyTest {
+
+    @Test
+    public void testCallbackFilter_shouldOnlyInterceptTheMethodsTheProxyHandles() throws Exception {
+        assertEquals(ComponentProxy.INTERCEPTOR, accept("getInjectionSource"));
+        assertEquals(ComponentProxy.INTERCEPTOR, accept("getOverwrites"));
+        assertEquals(ComponentProxy.INTERCEPTOR, accept("toString"));
+        assertEquals(ComponentProxy.INTERCEPTOR, accept("hashCode"));
+        assertEquals(ComponentProxy.INTERCEPTOR, accept("equals", Object.class));
+        assertEquals(ComponentProxy.INTERCEPTOR, accept("finalize"));
+        assertEquals(ComponentProxy.PASS_THROUGH, accept("getLabel"));
+        assertEquals(ComponentProxy.PASS_THROUGH, accept("setLabel", String.class));
+        assertEquals(ComponentProxy.PASS_THROUGH, accept("getInjectionSource", String.class));
+    }
+
+    @Test
+    public void testEnhancedClass_shouldAnswerInjectionSourceAndOverwritesFromTheProxy() throws Exception {
+        Map<String, String> overwrites = Collections.singletonMap("bean", "other");
+        Subject subject = enhance(new ComponentProxy("source", overwrites));
+
+        assertEquals("source", subject.getInjectionSource());
+        assertSame(overwrites, subject.getOverwrites());
+        assertEquals("label", subject.getLabel());
+        assertTrue(((Factory) subject).getCallback(ComponentProxy.PASS_THROUGH) instanceof NoOp);
+    }
+
+    @Test
+    public void testEnhancedClass_shouldNotPassOtherMethodsThroughTheInterceptor() throws Exception {
+        Subject subject = enhance(new ComponentProxy("source", null));
+        RecordingInterceptor recorder = new RecordingInterceptor();
+        ((Factory) subject).setCallback(ComponentProxy.INTERCEPTOR, recorder);
+
+        subject.setLabel("changed");
+        assertEquals("changed", subject.getLabel());
+        assertEquals(Collections.emptyList(), recorder.methods);
+
+        subject.getInjectionSource();
+        subject.getOverwrites();
+        subject.hashCode();
+        assertEquals(3, recorder.methods.size());
+        assertEquals("getInjectionSource", recorder.methods.get(0));
+        assertEquals("getOverwrites", recorder.methods.get(1));
+        assertEquals("hashCode", recorder.methods.get(2));
+    }
+
+    private static int accept(String name, Class<?>... parameterTypes) throws Exception {
+        return ComponentProxy.CALLBACK_FILTER.accept(method(Subject.class, name, parameterTypes));
+    }
+
+    private static Method method(Class<?> type, String name, Class<?>... parameterTypes) throws Exception {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            try {
+                return current.getDeclaredMethod(name, parameterTypes);
+            } catch (NoSuchMethodException e) {
+                // look further up
+            }
+        }
+        throw new NoSuchMethodException(name);
+    }
+
+    private static Subject enhance(ComponentProxy proxy) {
+        Enhancer e = new Enhancer();
+        e.setSuperclass(Subject.class);
+        e.setCallbackTypes(ComponentProxy.CALLBACK_TYPES);
+        e.setCallbackFilter(ComponentProxy.CALLBACK_FILTER);
+        e.setCallbacks(proxy.getCallbacks());
+        return (Subject) e.create();
+    }
+
+    public static class Subject {
+
+        private String label = "label";
+
+        public String getInjectionSource() {
+            return "subject";
+        }
+
+        public String getInjectionSource(String fallback) {
+            return fallback;
+        }
+
+        public Map<String, String> getOverwrites() {
+            return null;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public void setLabel(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final class RecordingInterceptor implements MethodInterceptor {
+
+        private final List<String> methods = new ArrayList<String>();
+
+        public Object intercept(Object object, Method method, Object[] args, MethodProxy proxy) throws Throwable {
+            methods.add(method.getName());
+            return proxy.invokeSuper(object, args);
+        }
+    }
+}
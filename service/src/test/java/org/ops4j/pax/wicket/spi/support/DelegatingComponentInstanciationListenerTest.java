@@ -0,0 +1,212 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.spi.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.wicket.api.Constants;
+import org.ops4j.pax.wicket.api.PaxWicketInjector;
+import org.ops4j.pax.wicket.api.SelectivePaxWicketInjector;
+import org.ops4j.pax.wicket.internal.injection.registry.FakeServiceRegistry;
+import org.ops4j.pax.wicket.internal.injection.registry.FakeServiceRegistry.Registration;
+
+public class DelegatingComponentInstanciationListenerTest {
+
+    private static final String APPLICATION = "delegating";
+
+    private FakeServiceRegistry registry;
+    private DelegatingComponentInstanciationListener listener;
+
+    @Before
+    public void setUp() throws Exception {
+        registry = new FakeServiceRegistry();
+        listener = new DelegatingComponentInstanciationListener(registry.createBundleContext(), APPLICATION);
+        listener.intialize();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        listener.dispose();
+    }
+
+    @Test
+    public void testInject_shouldSkipLevelsWithoutInjectedFields() throws Exception {
+        RecordingInjector injector = new RecordingInjector(Leaf.class, Base.class);
+        register(injector);
+
+        listener.inject(new Leaf(), Leaf.class);
+
+        assertEquals(Arrays.<Class<?>> asList(Leaf.class, Base.class), injector.asked);
+    }
+
+    @Test
+    public void testInject_shouldRememberTheInjectorOfEachLevel() throws Exception {
+        RecordingInjector baseInjector = new RecordingInjector(Base.class);
+        RecordingInjector leafInjector = new RecordingInjector(Leaf.class);
+        register(baseInjector);
+        register(leafInjector);
+
+        listener.inject(new Leaf(), Leaf.class);
+        listener.inject(new Leaf(), Leaf.class);
+
+        assertEquals(Arrays.<Class<?>> asList(Leaf.class, Base.class, Base.class), baseInjector.asked);
+        assertEquals(Arrays.<Class<?>> asList(Leaf.class, Leaf.class), leafInjector.asked);
+        assertEquals(Arrays.<Class<?>> asList(Base.class, Base.class), baseInjector.injected);
+        assertEquals(Arrays.<Class<?>> asList(Leaf.class, Leaf.class), leafInjector.injected);
+    }
+
+    @Test
+    public void testInject_shouldAskOtherInjectorsWhenTheSelectiveInjectorFails() throws Exception {
+        RecordingInjector failing = new RecordingInjector(Leaf.class, Base.class);
+        failing.failing = true;
+        RecordingInjector injector = new RecordingInjector(Leaf.class, Base.class);
+        register(failing);
+        register(injector);
+
+        listener.inject(new Leaf(), Leaf.class);
+
+        assertEquals(Arrays.<Class<?>> asList(Leaf.class, Base.class), injector.injected);
+    }
+
+    @Test
+    public void testInject_shouldTreatIllegalStateExceptionsOfOtherInjectorsAsMiss() throws Exception {
+        LegacyInjector legacy = new LegacyInjector(Base.class);
+        RecordingInjector injector = new RecordingInjector(Leaf.class);
+        register(legacy);
+        register(injector);
+
+        listener.inject(new Leaf(), Leaf.class);
+
+        assertEquals(Arrays.<Class<?>> asList(Base.class), legacy.injected);
+        assertEquals(Arrays.<Class<?>> asList(Leaf.class), injector.injected);
+    }
+
+    @Test
+    public void testInject_shouldFollowAddedAndRemovedInjectors() throws Exception {
+        assertInjectionFails();
+
+        RecordingInjector first = new RecordingInjector(Leaf.class, Base.class);
+        Registration firstRegistration = register(first);
+        listener.inject(new Leaf(), Leaf.class);
+        RecordingInjector second = new RecordingInjector(Leaf.class, Base.class);
+        register(second);
+        firstRegistration.unregister();
+        listener.inject(new Leaf(), Leaf.class);
+
+        assertEquals(Arrays.<Class<?>> asList(Leaf.class, Base.class), first.injected);
+        assertEquals(Arrays.<Class<?>> asList(Leaf.class, Base.class), second.injected);
+    }
+
+    @Test
+    public void testInject_withoutInjectedFields_shouldNotAskInjectors() throws Exception {
+        RecordingInjector injector = new RecordingInjector(Plain.class);
+        register(injector);
+
+        listener.inject(new Plain(), Plain.class);
+
+        assertEquals(Collections.emptyList(), injector.asked);
+    }
+
+    private void assertInjectionFails() {
+        try {
+            listener.inject(new Leaf(), Leaf.class);
+            fail("no injector is available");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    private Registration register(PaxWicketInjector injector) {
+        return registry.register(PaxWicketInjector.class, injector, 0,
+            Collections.<String, Object> singletonMap(Constants.APPLICATION_NAME, APPLICATION));
+    }
+
+    private static class Plain {
+    }
+
+    private static class Base {
+
+        @Inject
+        private Runnable base;
+    }
+
+    private static class Middle extends Base {
+    }
+
+    private static class Leaf extends Middle {
+
+        @Inject
+        private Runnable leaf;
+    }
+
+    private static final class RecordingInjector implements SelectivePaxWicketInjector {
+
+        private final List<Class<?>> handled;
+        private final List<Class<?>> asked = new ArrayList<Class<?>>();
+        private final List<Class<?>> injected = new ArrayList<Class<?>>();
+        private boolean failing;
+
+        private RecordingInjector(Class<?>... handled) {
+            this.handled = Arrays.asList(handled);
+        }
+
+        public boolean tryInject(Object toInject, Class<?> toHandle) {
+            asked.add(toHandle);
+            if (!handled.contains(toHandle)) {
+                return false;
+            }
+            if (failing) {
+                throw new IllegalStateException("responsible but failing");
+            }
+            injected.add(toHandle);
+            return true;
+        }
+
+        public void inject(Object toInject, Class<?> toHandle) {
+            if (!tryInject(toInject, toHandle)) {
+                throw new IllegalStateException("not responsible");
+            }
+        }
+    }
+
+    private static final class LegacyInjector implements PaxWicketInjector {
+
+        private final List<Class<?>> handled;
+        private final List<Class<?>> injected = new ArrayList<Class<?>>();
+
+        private LegacyInjector(Class<?>... handled) {
+            this.handled = Arrays.asList(handled);
+        }
+
+        public void inject(Object toInject, Class<?> toHandle) {
+            if (!handled.contains(toHandle)) {
+                throw new IllegalStateException("not responsible");
+            }
+            injected.add(toHandle);
+        }
+    }
+}
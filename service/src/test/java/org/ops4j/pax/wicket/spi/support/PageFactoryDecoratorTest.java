@@ -0,0 +1,176 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.spi.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+import java.util.Map;
+
+import net.sf.cglib.proxy.Callback;
+import net.sf.cglib.proxy.Factory;
+import net.sf.cglib.proxy.NoOp;
+
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+
+public class PageFactoryDecoratorTest {
+
+    private WicketTester tester;
+
+    @Before
+    public void setUp() {
+        tester = new WicketTester();
+    }
+
+    @After
+    public void tearDown() {
+        tester.destroy();
+    }
+
+    @Test
+    public void testCreatePage_shouldUseTheConstructorMatchingTheParameters() throws Exception {
+        PageFactoryDecorator decorator = startDecorator("source", null);
+
+        TestPage withoutParameters = (TestPage) decorator.createPage(null);
+        TestPage withEmptyParameters = (TestPage) decorator.createPage(new PageParameters());
+        TestPage withParameters = (TestPage) decorator.createPage(new PageParameters().add("key", "value"));
+
+        assertEquals(null, withoutParameters.parameters);
+        assertEquals(null, withEmptyParameters.parameters);
+        assertEquals("value", withParameters.parameters.get("key").toString());
+    }
+
+    @Test
+    public void testCreatePage_shouldGenerateThePageClassOnce() throws Exception {
+        PageFactoryDecorator decorator = startDecorator("source", null);
+
+        WebPage first = decorator.createPage(null);
+        WebPage second = decorator.createPage(new PageParameters().add("key", "value"));
+
+        assertSame(first.getClass(), second.getClass());
+        assertSame(TestPage.class, first.getClass().getSuperclass());
+        assertSame(TestPage.class, decorator.getPageClass());
+    }
+
+    @Test
+    public void testCreatePage_shouldInstallTheCallbacksWhileTheConstructorRuns() throws Exception {
+        PageFactoryDecorator decorator = startDecorator("source", null);
+
+        TestPage page = (TestPage) decorator.createPage(null);
+
+        assertTrue(page.constructorCallback instanceof ComponentProxy);
+        assertEquals("source", page.constructorInjectionSource);
+        assertSame(page.constructorCallback, ((Factory) page).getCallback(ComponentProxy.INTERCEPTOR));
+    }
+
+    @Test
+    public void testCreatePage_shouldGiveEachPageItsOwnIdentity() throws Exception {
+        PageFactoryDecorator decorator = startDecorator("source", null);
+
+        WebPage first = decorator.createPage(null);
+        WebPage second = decorator.createPage(null);
+
+        assertNotSame(((Factory) first).getCallback(ComponentProxy.INTERCEPTOR),
+            ((Factory) second).getCallback(ComponentProxy.INTERCEPTOR));
+        assertTrue(first.hashCode() != second.hashCode());
+        assertFalse(first.equals(second));
+    }
+
+    @Test
+    public void testCreatePage_shouldBeSerializable() throws Exception {
+        PageFactoryDecorator decorator = startDecorator("source", null);
+        TestPage page = (TestPage) decorator.createPage(new PageParameters().add("key", "value"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(page);
+        out.close();
+        TestPage read =
+            (TestPage) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+        assertSame(page.getClass(), read.getClass());
+        assertTrue(((Factory) read).getCallback(ComponentProxy.INTERCEPTOR) instanceof ComponentProxy);
+        assertTrue(((Factory) read).getCallback(ComponentProxy.PASS_THROUGH) instanceof NoOp);
+        assertEquals("source", read.getInjectionSource());
+        assertEquals("label", read.getLabel());
+        assertEquals("value", read.parameters.get("key").toString());
+    }
+
+    private PageFactoryDecorator startDecorator(String injectionSource, Map<String, String> overwrites)
+        throws Exception {
+        PageFactoryDecorator decorator = new PageFactoryDecorator();
+        decorator.setBundleContext(mock(BundleContext.class));
+        decorator.setPageId("pageId");
+        decorator.setApplicationName("application");
+        decorator.setPageName("page");
+        decorator.setPageClass(pageClass());
+        decorator.setInjectionSource(injectionSource);
+        decorator.setOverwrites(overwrites == null ? Collections.<String, String> emptyMap() : overwrites);
+        decorator.start();
+        return decorator;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Class<WebPage> pageClass() {
+        return (Class) TestPage.class;
+    }
+
+    public static class TestPage extends WebPage {
+
+        private static final long serialVersionUID = 1L;
+
+        private final PageParameters parameters;
+        private final Callback constructorCallback;
+        private final String constructorInjectionSource;
+
+        public TestPage() {
+            this(null);
+        }
+
+        public TestPage(PageParameters parameters) {
+            this.parameters = parameters;
+            constructorCallback = ((Factory) this).getCallback(ComponentProxy.INTERCEPTOR);
+            constructorInjectionSource = getInjectionSource();
+        }
+
+        public String getInjectionSource() {
+            return "page";
+        }
+
+        public Map<String, String> getOverwrites() {
+            return null;
+        }
+
+        public String getLabel() {
+            return "label";
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.util.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Comparator;
+
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.Test;
+import org.ops4j.pax.wicket.spi.ProxyTarget;
+import org.ops4j.pax.wicket.spi.ProxyTargetLocator;
+import org.ops4j.pax.wicket.spi.ReleasableProxyTarget;
+
+public class LazyInitProxyFactoryTest {
+
+    @Test
+    public void testCreateProxy_forClass_shouldDelegateToTargetAndReuseProxyClass() throws Exception {
+        CountingLocator locator = new CountingLocator(new Target("target"));
+
+        Target proxy = (Target) LazyInitProxyFactory.createProxy(Target.class, locator);
+        Target other = (Target) LazyInitProxyFactory.createProxy(Target.class, locator);
+
+        assertEquals("target", proxy.getName());
+        assertEquals(1, locator.located);
+        assertSame(proxy.getClass(), other.getClass());
+        assertSame(locator, ((ILazyInitProxy) proxy).getObjectLocator());
+        assertTrue(((LazyInitProxyFactory.IWriteReplace) proxy).writeReplace()
+            instanceof LazyInitProxyFactory.ProxyReplacement);
+        proxy.hashCode();
+        proxy.toString();
+        assertFalse(proxy.equals(other));
+        assertEquals(1, locator.located);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCreateProxy_forInterface_shouldDelegateToTargetAndReuseProxyClass() throws Exception {
+        Comparator<String> comparator = new Comparator<String>() {
+            public int compare(String o1, String o2) {
+                return o1.compareTo(o2);
+            }
+        };
+        CountingLocator locator = new CountingLocator(comparator);
+
+        Comparator<String> proxy = (Comparator<String>) LazyInitProxyFactory.createProxy(Comparator.class, locator);
+        Object other = LazyInitProxyFactory.createProxy(Comparator.class, locator);
+
+        assertTrue(proxy.compare("a", "b") < 0);
+        assertEquals(1, locator.located);
+        assertSame(proxy.getClass(), other.getClass());
+        assertSame(locator, ((ILazyInitProxy) proxy).getObjectLocator());
+        proxy.hashCode();
+        proxy.toString();
+        assertFalse(proxy.equals(other));
+        assertEquals(1, locator.located);
+    }
+
+    @Test
+    public void testCreateSharedProxy_shouldOnlyKeepTargetsThatAreNotReleasable() throws Exception {
+        CountingLocator locator = new CountingLocator(new Target("target"));
+        ReleasableLocator releasableLocator = new ReleasableLocator(new Target("releasable"));
+
+        Target proxy = (Target) LazyInitProxyFactory.createSharedProxy(Target.class, locator);
+        Target releasable = (Target) LazyInitProxyFactory.createSharedProxy(Target.class, releasableLocator);
+        proxy.getName();
+        releasable.getName();
+
+        assertEquals("target", proxy.getName());
+        assertEquals(1, locator.located);
+        assertEquals("releasable", releasable.getName());
+        assertEquals(2, releasableLocator.located);
+        assertEquals(2, releasableLocator.released);
+    }
+
+    @Test
+    public void testRestoreProxy_shouldReuseProxyClassAndDelegateToTarget() throws Exception {
+        WicketTester tester = new WicketTester();
+        try {
+            NamingLocator locator = new NamingLocator("restored");
+            Target proxy = (Target) LazyInitProxyFactory.createProxy(Target.class, locator);
+
+            Target restored = (Target) restore(proxy);
+
+            assertNotSame(proxy, restored);
+            assertSame(proxy.getClass(), restored.getClass());
+            NamingLocator restoredLocator = (NamingLocator) ((ILazyInitProxy) restored).getObjectLocator();
+            assertNotSame(locator, restoredLocator);
+            assertEquals(0, restoredLocator.located);
+            restored.hashCode();
+            restored.toString();
+            assertEquals(0, restoredLocator.located);
+            assertEquals("restored", restored.getName());
+            assertEquals(1, restoredLocator.located);
+        } finally {
+            tester.destroy();
+        }
+    }
+
+    private static Object restore(Object object) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(object);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        try {
+            return in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    public static class Target {
+
+        private final String name;
+
+        public Target() {
+            this(null);
+        }
+
+        public Target(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    private static final class CountingLocator implements ProxyTargetLocator {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Object target;
+        private int located;
+
+        private CountingLocator(Object target) {
+            this.target = target;
+        }
+
+        public ProxyTarget locateProxyTarget() {
+            located++;
+            return new ProxyTarget() {
+                public Object getTarget() {
+                    return target;
+                }
+            };
+        }
+
+        public Class<?> getParent() {
+            return null;
+        }
+    }
+
+    private static final class NamingLocator implements ProxyTargetLocator {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private transient int located;
+
+        private NamingLocator(String name) {
+            this.name = name;
+        }
+
+        public ProxyTarget locateProxyTarget() {
+            located++;
+            return new ProxyTarget() {
+                public Object getTarget() {
+                    return new Target(name);
+                }
+            };
+        }
+
+        public Class<?> getParent() {
+            return null;
+        }
+    }
+
+    private static final class ReleasableLocator implements ProxyTargetLocator {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Object target;
+        private int located;
+        private int released;
+
+        private ReleasableLocator(Object target) {
+            this.target = target;
+        }
+
+        public ProxyTarget locateProxyTarget() {
+            located++;
+            return new ReleasableProxyTarget() {
+                public Object getTarget() {
+                    return target;
+                }
+
+                public ProxyTarget releaseTarget() {
+                    released++;
+                    return this;
+                }
+            };
+        }
+
+        public Class<?> getParent() {
+            return null;
+        }
+    }
+
+}
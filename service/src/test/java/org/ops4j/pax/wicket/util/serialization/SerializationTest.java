@@ -17,19 +17,36 @@ package org.ops4j.pax.wicket.util.serialization;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
 import java.io.Serializable;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Random;
 
 import org.apache.wicket.application.IClassResolver;
+import org.apache.wicket.util.tester.WicketTester;
 import org.junit.Test;
 import org.ops4j.pax.wicket.internal.EnumerationAdapter;
+import org.ops4j.pax.wicket.spi.ProxyTarget;
+import org.ops4j.pax.wicket.spi.ProxyTargetLocator;
 
 /**
  * @author edward.yakop@gmail.com
@@ -38,7 +55,221 @@ public final class SerializationTest {
 
     @Test
     public final void testSerialization() throws Throwable {
-        IClassResolver resolver = new IClassResolver()
+        IClassResolver resolver = createClassResolver();
+
+        testSerializeObject("pax-wicket", resolver);
+        testSerializeObject(1, resolver);
+
+        // Test serialialize a more complex object
+        SomeObject someObject = createSomeObject();
+        testSerializeObject(someObject, resolver);
+    }
+
+    @Test
+    public final void testCompactSerialization() throws Throwable {
+        IClassResolver resolver = createClassResolver();
+        ClassDescriptorDictionary dictionary = ClassDescriptorDictionary.forApplication("testCompactSerialization");
+        SomeObject someObject = createSomeObject();
+
+        byte[] full = serialize(someObject, (ClassDescriptorDictionary) null);
+        byte[] compact = serialize(someObject, dictionary);
+        assertTrue("compact stream should be smaller", compact.length < full.length);
+
+        assertEquals(someObject, deserialize(compact, resolver, dictionary));
+        // a second stream reuses the ids assigned by the first one
+        assertEquals(compact.length, serialize(someObject, dictionary).length);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public final void testLocatorInterning() throws Throwable {
+        IClassResolver resolver = createClassResolver();
+        LocatorRegistry registry = LocatorRegistry.forApplication("testLocatorInterning");
+        ArrayList<SomeLocator> locators = new ArrayList<SomeLocator>();
+        for (int i = 0; i < 10; i++) {
+            // locators build their filters at runtime, so equal filters are not the same string instance
+            locators.add(new SomeLocator(new String("(objectClass=org.ops4j.pax.wicket.Service)")));
+        }
+        locators.add(new SomeLocator("(objectClass=org.ops4j.pax.wicket.OtherService)"));
+
+        byte[] full = serialize(locators, (LocatorRegistry) null);
+        byte[] interned = serialize(locators, registry);
+        assertTrue("interned stream should be smaller", interned.length < full.length);
+
+        List<SomeLocator> read = (List<SomeLocator>) deserialize(interned, resolver, null);
+        assertEquals(locators.size(), read.size());
+        assertSame(read.get(0), read.get(9));
+        assertEquals("(objectClass=org.ops4j.pax.wicket.OtherService)", read.get(10).filter);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public final void testLocatorInterning_shouldSerializeEachLocatorOnce() throws Throwable {
+        IClassResolver resolver = createClassResolver();
+        LocatorRegistry registry = LocatorRegistry.forApplication("testLocatorInterning_shouldSerializeEachLocatorOnce");
+        CountingLocator locator = new CountingLocator("(objectClass=org.ops4j.pax.wicket.Service)");
+        ArrayList<CountingLocator> locators = new ArrayList<CountingLocator>();
+        locators.add(locator);
+        locators.add(locator);
+
+        serialize(locators, registry);
+        byte[] second = serialize(locators, registry);
+
+        assertEquals(1, locator.written);
+        List<CountingLocator> read = (List<CountingLocator>) deserialize(second, resolver, null);
+        assertSame(read.get(0), read.get(1));
+        assertEquals(locator.filter, read.get(0).filter);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public final void testLocatorInterning_shouldNotRelyOnEqualsOfTheLocators() throws Throwable {
+        IClassResolver resolver = createClassResolver();
+        LocatorRegistry registry = LocatorRegistry.forApplication("testLocatorInterning_shouldNotRelyOnEquals");
+        ArrayList<CountingLocator> locators = new ArrayList<CountingLocator>();
+        locators.add(new CountingLocator("(objectClass=org.ops4j.pax.wicket.Service)"));
+        locators.add(new CountingLocator("(objectClass=org.ops4j.pax.wicket.OtherService)"));
+        assertEquals(locators.get(0), locators.get(1));
+
+        List<CountingLocator> read = (List<CountingLocator>) deserialize(serialize(locators, registry), resolver, null);
+
+        assertEquals("(objectClass=org.ops4j.pax.wicket.Service)", read.get(0).filter);
+        assertEquals("(objectClass=org.ops4j.pax.wicket.OtherService)", read.get(1).filter);
+    }
+
+    @Test
+    public final void testLocatorInterning_shouldDropContentOfCollectedLocators() throws Throwable {
+        LocatorRegistry registry = LocatorRegistry.forApplication("testLocatorInterning_shouldDropContent");
+        List<Object> interned = new ArrayList<Object>();
+        for (int i = 0; i < 100; i++) {
+            interned.add(registry.intern(new SomeLocator("(objectClass=org.ops4j.pax.wicket.Service" + i + ")")));
+        }
+        assertEquals(100, registry.size());
+
+        interned = null;
+        for (int i = 0; i < 50 && registry.size() > 1; i++) {
+            System.gc();
+            Thread.sleep(20);
+            // collected locators are purged when the next one is interned
+            registry.intern(new SomeLocator("(objectClass=org.ops4j.pax.wicket.Probe)"));
+        }
+
+        assertTrue("registry should have shrunk, size " + registry.size(), registry.size() <= 1);
+    }
+
+    @Test
+    public final void testClassIdEncoding() throws Throwable {
+        int[] classIds = { 0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE };
+        ByteArrayOutputStream byteArrayOS = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(byteArrayOS);
+        for (int classId : classIds) {
+            ClassDescriptorDictionary.writeClassId(out, classId);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(byteArrayOS.toByteArray()));
+        for (int classId : classIds) {
+            assertEquals(classId, ClassDescriptorDictionary.readClassId(in));
+        }
+    }
+
+    @Test
+    public final void testClassDictionary_shouldReuseSlotOfUnloadedClass() throws Throwable {
+        ClassDescriptorDictionary dictionary =
+            ClassDescriptorDictionary.forApplication("testClassDictionary_shouldReuseSlotOfUnloadedClass");
+        byte[] unloaded = writeUnloadedClass(dictionary);
+
+        Class<?> updated = defineUnloadable();
+        ByteArrayOutputStream byteArrayOS = new ByteArrayOutputStream();
+        dictionary.writeClass(new DataOutputStream(byteArrayOS), updated);
+        byte[] written = byteArrayOS.toByteArray();
+
+        DataInputStream unloadedIn = new DataInputStream(new ByteArrayInputStream(unloaded));
+        DataInputStream writtenIn = new DataInputStream(new ByteArrayInputStream(written));
+        assertEquals("slot reused", ClassDescriptorDictionary.readClassId(unloadedIn),
+            ClassDescriptorDictionary.readClassId(writtenIn));
+        assertEquals("next generation", ClassDescriptorDictionary.readClassId(unloadedIn) + 1,
+            ClassDescriptorDictionary.readClassId(writtenIn));
+        assertSame(updated, dictionary.readClass(new DataInputStream(new ByteArrayInputStream(written))));
+        try {
+            dictionary.readClass(new DataInputStream(new ByteArrayInputStream(unloaded)));
+            fail("the class written first has been unloaded");
+        } catch (ClassDescriptorDictionary.UnloadedClassException e) {
+            assertEquals(Unloadable.class.getName(), e.classname);
+        }
+    }
+
+    @Test
+    public final void testDeserialize_withUnloadedClass_shouldReturnNull() throws Throwable {
+        WicketTester tester = new WicketTester();
+        try {
+            String applicationKey = tester.getApplication().getApplicationKey();
+            PaxWicketSerializer serializer = new PaxWicketSerializer(applicationKey, true);
+            ClassDescriptorDictionary dictionary = ClassDescriptorDictionary.forApplication(applicationKey);
+
+            ByteArrayOutputStream byteArrayOS = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(byteArrayOS);
+            out.writeLong(dictionary.getId());
+            out.writeShort(ObjectStreamConstants.STREAM_MAGIC);
+            out.writeShort(ObjectStreamConstants.STREAM_VERSION);
+            out.writeByte(ObjectStreamConstants.TC_OBJECT);
+            out.writeByte(ObjectStreamConstants.TC_CLASSDESC);
+            out.write(writeUnloadedClass(dictionary));
+
+            assertNull(serializer.deserialize(byteArrayOS.toByteArray()));
+        } finally {
+            tester.destroy();
+        }
+    }
+
+    /**
+     * Registers a class with the dictionary and returns the data written for it once the class has been unloaded
+     */
+    private static byte[] writeUnloadedClass(ClassDescriptorDictionary dictionary) throws Exception {
+        ByteArrayOutputStream byteArrayOS = new ByteArrayOutputStream();
+        ReferenceQueue<Class<?>> queue = new ReferenceQueue<Class<?>>();
+        Reference<Class<?>> reference = register(dictionary, new DataOutputStream(byteArrayOS), queue);
+        for (int i = 0; i < 50 && queue.poll() == null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull("class should have been unloaded", reference.get());
+        // the dictionary learns about the unloaded class through its own queue, give it the time to be enqueued
+        Thread.sleep(100);
+        return byteArrayOS.toByteArray();
+    }
+
+    private static Reference<Class<?>> register(ClassDescriptorDictionary dictionary, DataOutputStream out,
+            ReferenceQueue<Class<?>> queue) throws Exception {
+        Class<?> clazz = defineUnloadable();
+        dictionary.writeClass(out, clazz);
+        return new WeakReference<Class<?>>(clazz, queue);
+    }
+
+    /**
+     * Defines {@link Unloadable} in a class loader of its own, like an updated bundle would load it again
+     */
+    private static Class<?> defineUnloadable() throws Exception {
+        InputStream in = SerializationTest.class.getResourceAsStream("SerializationTest$Unloadable.class");
+        final byte[] bytes;
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                out.write(buffer, 0, read);
+            }
+            bytes = out.toByteArray();
+        } finally {
+            in.close();
+        }
+        return new ClassLoader(SerializationTest.class.getClassLoader()) {
+
+            private Class<?> define() {
+                return defineClass(Unloadable.class.getName(), bytes, 0, bytes.length);
+            }
+        }.define();
+    }
+
+    private IClassResolver createClassResolver() {
+        return new IClassResolver()
         {
 
             public Class<?> resolveClass(String classname)
@@ -70,13 +301,6 @@ public final class SerializationTest {
                 throw new UnsupportedOperationException("This method should NOT BE CALLED!");
             }
         };
-
-        testSerializeObject("pax-wicket", resolver);
-        testSerializeObject(1, resolver);
-
-        // Test serialialize a more complex object
-        SomeObject someObject = createSomeObject();
-        testSerializeObject(someObject, resolver);
     }
 
     private SomeObject createSomeObject() {
@@ -108,6 +332,86 @@ public final class SerializationTest {
         assertEquals(objectToSerialize, object);
     }
 
+    private byte[] serialize(Object object, ClassDescriptorDictionary dictionary) throws IOException {
+        ByteArrayOutputStream byteArrayOS = new ByteArrayOutputStream();
+        PaxWicketObjectOutputStream out = new PaxWicketObjectOutputStream(byteArrayOS, dictionary);
+        out.writeObject(object);
+        out.flush();
+        return byteArrayOS.toByteArray();
+    }
+
+    private byte[] serialize(Object object, LocatorRegistry registry) throws IOException {
+        ByteArrayOutputStream byteArrayOS = new ByteArrayOutputStream();
+        PaxWicketObjectOutputStream out = new PaxWicketObjectOutputStream(byteArrayOS, null, registry);
+        out.writeObject(object);
+        out.flush();
+        return byteArrayOS.toByteArray();
+    }
+
+    private Object deserialize(byte[] data, IClassResolver resolver, ClassDescriptorDictionary dictionary)
+        throws IOException, ClassNotFoundException {
+        return new PaxWicketObjectInputStream(new ByteArrayInputStream(data), resolver, dictionary).readObject();
+    }
+
+    public static class SomeLocator implements ProxyTargetLocator {
+        private static final long serialVersionUID = 1L;
+
+        private final String filter;
+
+        public SomeLocator(String filter) {
+            this.filter = filter;
+        }
+
+        public ProxyTarget locateProxyTarget() {
+            throw new UnsupportedOperationException();
+        }
+
+        public Class<?> getParent() {
+            return null;
+        }
+    }
+
+    /**
+     * Counts how often it is serialized and claims to be equal to every other instance
+     */
+    public static class CountingLocator implements ProxyTargetLocator {
+        private static final long serialVersionUID = 1L;
+
+        private final String filter;
+        private transient int written;
+
+        public CountingLocator(String filter) {
+            this.filter = filter;
+        }
+
+        public ProxyTarget locateProxyTarget() {
+            throw new UnsupportedOperationException();
+        }
+
+        public Class<?> getParent() {
+            return null;
+        }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            written++;
+            out.defaultWriteObject();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof CountingLocator;
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+    }
+
+    public static class Unloadable implements Serializable {
+        private static final long serialVersionUID = 1L;
+    }
+
     public static class SomeObject
             implements Serializable {
         private static final long serialVersionUID = 1L;
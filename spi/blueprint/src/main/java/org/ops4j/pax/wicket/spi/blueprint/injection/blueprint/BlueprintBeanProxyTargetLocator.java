@@ -26,6 +26,8 @@ import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.service.blueprint.container.BlueprintContainer;
 import org.osgi.service.blueprint.container.NoSuchComponentException;
+import org.osgi.service.blueprint.reflect.BeanMetadata;
+import org.osgi.service.blueprint.reflect.ComponentMetadata;
 public class BlueprintBeanProxyTargetLocator extends AbstractProxyTargetLocator<BlueprintContainer> {
 
     private static final long serialVersionUID = 7855320656221559137L;
@@ -56,6 +58,12 @@ public class BlueprintBeanProxyTargetLocator extends AbstractProxyTargetLocator<
         return new BlueprintBeanReactor(overwrites.get(getBeanName()));
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected boolean isSingleton(BeanReactor<BlueprintContainer> strategy, BlueprintContainer blueprintContainer) {
+        return ((BlueprintBeanReactor) strategy).isSingleton();
+    }
+
     /** {@inheritDoc} */
     @Override
     protected String getApplicationContextFilter(String symbolicBundleName) {
@@ -63,10 +71,16 @@ public class BlueprintBeanProxyTargetLocator extends AbstractProxyTargetLocator<
             Constants.OBJECTCLASS, BlueprintContainer.class.getName());
     }
 
+    /**
+     * Checks the existence of a component by its metadata, so no instance is created before it is actually needed.
+     * The instance is created once per reactor and container; for singletons and references this is the instance the
+     * container hands out anyway, a prototype is bound to the proxy like before.
+     */
     private static class BlueprintBeanReactor implements BeanReactor<BlueprintContainer> {
 
         private final String beanName;
-        private Object bean;
+        private ComponentMetadata metadata;
+        private volatile Object bean;
 
         public BlueprintBeanReactor(String beanName) {
             this.beanName = beanName;
@@ -74,7 +88,7 @@ public class BlueprintBeanProxyTargetLocator extends AbstractProxyTargetLocator<
 
         public boolean containsBean(BlueprintContainer blueprintContainer) {
             try {
-                bean = blueprintContainer.getComponentInstance(beanName);
+                metadata = blueprintContainer.getComponentMetadata(beanName);
             } catch (NoSuchComponentException e) {
                 return false;
             }
@@ -82,10 +96,26 @@ public class BlueprintBeanProxyTargetLocator extends AbstractProxyTargetLocator<
         }
 
         public Object createBean(BlueprintContainer blueprintContainer) {
-            if (bean == null) {
+            if (metadata == null) {
                 throw new IllegalStateException("Contains bean method must be called successfully first");
             }
-            return bean;
+            Object instance = bean;
+            if (instance == null) {
+                synchronized (this) {
+                    instance = bean;
+                    if (instance == null) {
+                        instance = blueprintContainer.getComponentInstance(beanName);
+                        bean = instance;
+                    }
+                }
+            }
+            return instance;
+        }
+
+        private boolean isSingleton() {
+            // beans without an explicit scope are singletons, components other than beans are singletons too
+            return !(metadata instanceof BeanMetadata)
+                    || !BeanMetadata.SCOPE_PROTOTYPE.equals(((BeanMetadata) metadata).getScope());
         }
 
     }
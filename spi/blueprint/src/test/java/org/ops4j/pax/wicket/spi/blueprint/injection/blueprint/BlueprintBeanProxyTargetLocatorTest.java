@@ -0,0 +1,167 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.spi.blueprint.injection.blueprint;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.ops4j.pax.wicket.internal.injection.registry.OSGiServiceRegistryProxyTargetLocator;
+import org.ops4j.pax.wicket.spi.ProxyTarget;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.blueprint.container.BlueprintContainer;
+import org.osgi.service.blueprint.container.NoSuchComponentException;
+import org.osgi.service.blueprint.reflect.BeanMetadata;
+import org.osgi.service.blueprint.reflect.ReferenceMetadata;
+
+public class BlueprintBeanProxyTargetLocatorTest {
+
+    private static final AtomicLong BUNDLE_IDS = new AtomicLong(3000);
+
+    private BlueprintContainer container;
+    private BundleContext bundleContext;
+
+    @Before
+    public void setUp() throws Exception {
+        container = mock(BlueprintContainer.class);
+        when(container.getComponentMetadata(anyString())).thenThrow(new NoSuchComponentException("unknown"));
+        when(container.getComponentInstance(anyString())).thenAnswer(new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return new Object();
+            }
+        });
+        bundleContext = createBundleContext(container);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ArgumentCaptor<BundleListener> listeners = ArgumentCaptor.forClass(BundleListener.class);
+        verify(bundleContext).addBundleListener(listeners.capture());
+        listeners.getValue().bundleChanged(new BundleEvent(BundleEvent.STOPPING, bundleContext.getBundle()));
+    }
+
+    @Test
+    public void testLocateProxyTarget_shouldNotCreatePrototype() throws Exception {
+        registerBean("bean", BeanMetadata.SCOPE_PROTOTYPE);
+
+        locate("bean");
+
+        verify(container, never()).getComponentInstance("bean");
+    }
+
+    @Test
+    public void testGetTarget_withPrototype_shouldBindInstanceToTheProxy() throws Exception {
+        registerBean("bean", BeanMetadata.SCOPE_PROTOTYPE);
+        ProxyTarget target = locate("bean");
+
+        Object first = target.getTarget();
+        Object second = target.getTarget();
+        Object other = locate("bean").getTarget();
+
+        assertSame(first, second);
+        assertNotSame(first, other);
+        verify(container, times(2)).getComponentInstance("bean");
+    }
+
+    @Test
+    public void testGetTarget_withSingleton_shouldBindOncePerContainer() throws Exception {
+        registerBean("bean", BeanMetadata.SCOPE_SINGLETON);
+        ProxyTarget target = locate("bean");
+
+        assertSame(target.getTarget(), target.getTarget());
+        verify(container, times(1)).getComponentInstance("bean");
+    }
+
+    @Test
+    public void testGetTarget_withoutScope_shouldBindOncePerContainer() throws Exception {
+        registerBean("bean", null);
+        ProxyTarget target = locate("bean");
+
+        assertSame(target.getTarget(), target.getTarget());
+        verify(container, times(1)).getComponentInstance("bean");
+    }
+
+    @Test
+    public void testGetTarget_withReference_shouldBindOncePerContainer() throws Exception {
+        doReturn(mock(ReferenceMetadata.class)).when(container).getComponentMetadata("reference");
+        ProxyTarget target = locate("reference");
+
+        assertSame(target.getTarget(), target.getTarget());
+        verify(container, times(1)).getComponentInstance("reference");
+    }
+
+    @Test
+    public void testLocateProxyTarget_withUnknownComponent_shouldFail() throws Exception {
+        try {
+            locate("bean");
+            fail("the container doesn't know the component");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        verify(container, never()).getComponentInstance("bean");
+    }
+
+    private void registerBean(String id, String scope) {
+        BeanMetadata metadata = mock(BeanMetadata.class);
+        when(metadata.getScope()).thenReturn(scope);
+        doReturn(metadata).when(container).getComponentMetadata(id);
+    }
+
+    private ProxyTarget locate(String beanName) {
+        return new BlueprintBeanProxyTargetLocator(bundleContext, beanName, Object.class, getClass(),
+            Collections.<String, String> emptyMap()).locateProxyTarget();
+    }
+
+    private static BundleContext createBundleContext(Object container) throws Exception {
+        Bundle bundle = mock(Bundle.class);
+        when(bundle.getBundleId()).thenReturn(BUNDLE_IDS.incrementAndGet());
+        when(bundle.getSymbolicName()).thenReturn("test.bundle");
+        BundleContext context = mock(BundleContext.class);
+        when(context.getBundle()).thenReturn(bundle);
+        when(context.getProperty(OSGiServiceRegistryProxyTargetLocator.TRACK_SERVICES_PROPERTY)).thenReturn("true");
+        when(context.createFilter(anyString())).thenAnswer(new Answer<Filter>() {
+            public Filter answer(InvocationOnMock invocation) throws Throwable {
+                return FrameworkUtil.createFilter((String) invocation.getArguments()[0]);
+            }
+        });
+        ServiceReference<?> reference = mock(ServiceReference.class);
+        when(context.getServiceReferences(anyString(), anyString())).thenReturn(new ServiceReference<?>[]{ reference });
+        when(context.getService(reference)).thenReturn(container);
+        return context;
+    }
+}
@@ -25,7 +25,9 @@ import org.ops4j.pax.wicket.spi.support.AbstractProxyTargetLocator;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
 public class SpringBeanProxyTargetLocator extends AbstractProxyTargetLocator<ApplicationContext> {
 
     private static final long serialVersionUID = 3688782411985692696L;
@@ -48,41 +50,76 @@ public class SpringBeanProxyTargetLocator extends AbstractProxyTargetLocator<App
     @Override
     protected BeanReactor<ApplicationContext> createStrategy() {
         if (getBeanName().isEmpty()) {
-            return new AbstractProxyTargetLocator.BeanReactor<ApplicationContext>() {
-                public boolean containsBean(ApplicationContext applicationContext) {
-                    try {
-                        applicationContext.getBean(beanType);
-                    } catch (NoSuchBeanDefinitionException e) {
-                        return false;
-                    }
-                    return true;
-                }
-
-                public Object createBean(ApplicationContext applicationContext) {
-                    return applicationContext.getBean(beanType);
-                }
-            };
+            return new SpringBeanReactor(null);
         }
         if (overwrites == null || overwrites.size() == 0 || !overwrites.containsKey(getBeanName())) {
-            return new AbstractProxyTargetLocator.BeanReactor<ApplicationContext>() {
-                public boolean containsBean(ApplicationContext applicationContext) {
-                    return applicationContext.containsBean(getBeanName());
-                }
+            return new SpringBeanReactor(getBeanName());
+        }
+        return new SpringBeanReactor(overwrites.get(getBeanName()));
+    }
 
-                public Object createBean(ApplicationContext applicationContext) {
-                    return applicationContext.getBean(getBeanName(), beanType);
-                }
-            };
+    /** {@inheritDoc} */
+    @Override
+    protected boolean isSingleton(BeanReactor<ApplicationContext> strategy, ApplicationContext applicationContext) {
+        return ((SpringBeanReactor) strategy).isSingleton(applicationContext);
+    }
+
+    /**
+     * Looks up a bean by name or, if no name is given, by type. A bean found by type is looked up by its name
+     * afterwards, so a single lookup is done per bean created.
+     */
+    private final class SpringBeanReactor implements BeanReactor<ApplicationContext> {
+
+        private String beanName;
+
+        private SpringBeanReactor(String beanName) {
+            this.beanName = beanName;
+        }
+
+        public boolean containsBean(ApplicationContext applicationContext) {
+            if (beanName != null) {
+                return applicationContext.containsBean(beanName);
+            }
+            String[] names = applicationContext.getBeanNamesForType(beanType);
+            if (names.length == 1) {
+                beanName = names[0];
+                return true;
+            }
+            // none or several candidates, let the context decide (e.g. for a primary bean)
+            try {
+                applicationContext.getBean(beanType);
+            } catch (NoSuchBeanDefinitionException e) {
+                return false;
+            }
+            return true;
         }
-        return new AbstractProxyTargetLocator.BeanReactor<ApplicationContext>() {
-            public boolean containsBean(ApplicationContext applicationContext) {
-                return applicationContext.containsBean(overwrites.get(getBeanName()));
+
+        public Object createBean(ApplicationContext applicationContext) {
+            if (beanName == null) {
+                return applicationContext.getBean(beanType);
             }
+            return applicationContext.getBean(beanName, beanType);
+        }
 
-            public Object createBean(ApplicationContext applicationContext) {
-                return applicationContext.getBean(overwrites.get(getBeanName()), beanType);
+        /**
+         * Reads the scope from the bean definition. Beans of other scopes are created for every call; singleton
+         * definitions are confirmed by the context since a singleton factory bean might still create a new product on
+         * every lookup.
+         */
+        private boolean isSingleton(ApplicationContext applicationContext) {
+            if (beanName == null) {
+                return false;
             }
-        };
+            if (applicationContext instanceof ConfigurableApplicationContext) {
+                ConfigurableListableBeanFactory beanFactory =
+                    ((ConfigurableApplicationContext) applicationContext).getBeanFactory();
+                if (beanFactory.containsBeanDefinition(beanName)
+                        && !beanFactory.getBeanDefinition(beanName).isSingleton()) {
+                    return false;
+                }
+            }
+            return applicationContext.isSingleton(beanName);
+        }
     }
 
     /** {@inheritDoc} */
@@ -0,0 +1,256 @@
+/**
+ * Copyright OPS4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.wicket.spi.springdm.injection.spring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.ops4j.pax.wicket.internal.injection.registry.OSGiServiceRegistryProxyTargetLocator;
+import org.ops4j.pax.wicket.spi.ProxyTarget;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceReference;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.support.GenericApplicationContext;
+
+public class SpringBeanProxyTargetLocatorTest {
+
+    private static final AtomicLong BUNDLE_IDS = new AtomicLong(2000);
+
+    private CountingApplicationContext applicationContext;
+    private BundleContext bundleContext;
+
+    @Before
+    public void setUp() throws Exception {
+        Counted.INSTANCES.set(0);
+        applicationContext = new CountingApplicationContext();
+        bundleContext = createBundleContext(applicationContext);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ArgumentCaptor<BundleListener> listeners = ArgumentCaptor.forClass(BundleListener.class);
+        verify(bundleContext).addBundleListener(listeners.capture());
+        listeners.getValue().bundleChanged(new BundleEvent(BundleEvent.STOPPING, bundleContext.getBundle()));
+        applicationContext.close();
+    }
+
+    @Test
+    public void testLocateProxyTarget_shouldNotCreatePrototype() throws Exception {
+        register("bean", Counted.class, BeanDefinition.SCOPE_PROTOTYPE);
+
+        locate("bean", Counted.class);
+
+        assertEquals(0, Counted.INSTANCES.get());
+        assertEquals(0, applicationContext.lookups.get());
+    }
+
+    @Test
+    public void testGetTarget_withPrototype_shouldLookUpOnEachCall() throws Exception {
+        register("bean", Counted.class, BeanDefinition.SCOPE_PROTOTYPE);
+        ProxyTarget target = locate("bean", Counted.class);
+
+        Object first = target.getTarget();
+        Object second = target.getTarget();
+
+        assertNotSame(first, second);
+        assertEquals(2, Counted.INSTANCES.get());
+        assertEquals(2, applicationContext.lookups.get());
+    }
+
+    @Test
+    public void testGetTarget_withSingleton_shouldBindOncePerContainer() throws Exception {
+        register("bean", Counted.class, BeanDefinition.SCOPE_SINGLETON);
+        ProxyTarget target = locate("bean", Counted.class);
+
+        Object first = target.getTarget();
+        Object second = target.getTarget();
+
+        assertSame(first, second);
+        assertEquals(1, Counted.INSTANCES.get());
+        assertEquals(1, applicationContext.lookups.get());
+    }
+
+    @Test
+    public void testGetTarget_withSingletonDefinitionOfPrototypeFactoryBean_shouldLookUpOnEachCall() throws Exception {
+        register("bean", PrototypeFactoryBean.class, BeanDefinition.SCOPE_SINGLETON);
+        ProxyTarget target = locate("bean", Counted.class);
+
+        Object first = target.getTarget();
+        Object second = target.getTarget();
+
+        assertNotSame(first, second);
+        assertEquals(2, applicationContext.lookups.get());
+    }
+
+    @Test
+    public void testGetTarget_withPrototypeDefinitionOfSingletonFactoryBean_shouldLookUpOnEachCall() throws Exception {
+        register("bean", SingletonFactoryBean.class, BeanDefinition.SCOPE_PROTOTYPE);
+        ProxyTarget target = locate("bean", Counted.class);
+
+        target.getTarget();
+        target.getTarget();
+
+        assertEquals(2, applicationContext.lookups.get());
+    }
+
+    @Test
+    public void testGetTarget_byType_shouldLookUpByUniqueName() throws Exception {
+        register("bean", Counted.class, BeanDefinition.SCOPE_PROTOTYPE);
+        ProxyTarget target = locate("", Counted.class);
+        assertEquals(0, Counted.INSTANCES.get());
+
+        target.getTarget();
+        target.getTarget();
+
+        assertEquals(2, applicationContext.lookups.get());
+        assertEquals(0, applicationContext.typeLookups.get());
+    }
+
+    @Test
+    public void testGetTarget_byType_withSingleton_shouldBindOncePerContainer() throws Exception {
+        register("bean", Counted.class, BeanDefinition.SCOPE_SINGLETON);
+        ProxyTarget target = locate("", Counted.class);
+
+        assertSame(target.getTarget(), target.getTarget());
+        assertEquals(1, applicationContext.lookups.get());
+        assertEquals(0, applicationContext.typeLookups.get());
+    }
+
+    @Test
+    public void testLocateProxyTarget_withUnknownBean_shouldFail() throws Exception {
+        register("other", Counted.class, BeanDefinition.SCOPE_SINGLETON);
+
+        try {
+            locate("bean", Counted.class);
+            fail("the context doesn't know the bean");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    private void register(String name, Class<?> beanClass, String scope) {
+        RootBeanDefinition definition = new RootBeanDefinition(beanClass);
+        definition.setScope(scope);
+        applicationContext.registerBeanDefinition(name, definition);
+    }
+
+    private ProxyTarget locate(String beanName, Class<?> beanType) {
+        applicationContext.refresh();
+        return new SpringBeanProxyTargetLocator(bundleContext, beanName, beanType, getClass(),
+            Collections.<String, String> emptyMap()).locateProxyTarget();
+    }
+
+    private static BundleContext createBundleContext(Object container) throws Exception {
+        Bundle bundle = mock(Bundle.class);
+        when(bundle.getBundleId()).thenReturn(BUNDLE_IDS.incrementAndGet());
+        when(bundle.getSymbolicName()).thenReturn("test.bundle");
+        BundleContext context = mock(BundleContext.class);
+        when(context.getBundle()).thenReturn(bundle);
+        when(context.getProperty(OSGiServiceRegistryProxyTargetLocator.TRACK_SERVICES_PROPERTY)).thenReturn("true");
+        when(context.createFilter(anyString())).thenAnswer(new Answer<Filter>() {
+            public Filter answer(InvocationOnMock invocation) throws Throwable {
+                return FrameworkUtil.createFilter((String) invocation.getArguments()[0]);
+            }
+        });
+        ServiceReference<?> reference = mock(ServiceReference.class);
+        when(context.getServiceReferences(anyString(), anyString())).thenReturn(new ServiceReference<?>[]{ reference });
+        when(context.getService(reference)).thenReturn(container);
+        return context;
+    }
+
+    private static final class CountingApplicationContext extends GenericApplicationContext {
+
+        private final AtomicInteger lookups = new AtomicInteger();
+        private final AtomicInteger typeLookups = new AtomicInteger();
+
+        @Override
+        public <T> T getBean(String name, Class<T> requiredType) throws BeansException {
+            lookups.incrementAndGet();
+            return super.getBean(name, requiredType);
+        }
+
+        @Override
+        public <T> T getBean(Class<T> requiredType) throws BeansException {
+            typeLookups.incrementAndGet();
+            return super.getBean(requiredType);
+        }
+    }
+
+    public static class Counted {
+
+        private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+        public Counted() {
+            INSTANCES.incrementAndGet();
+        }
+    }
+
+    public static class PrototypeFactoryBean implements FactoryBean<Counted> {
+
+        public Counted getObject() {
+            return new Counted();
+        }
+
+        public Class<?> getObjectType() {
+            return Counted.class;
+        }
+
+        public boolean isSingleton() {
+            return false;
+        }
+    }
+
+    public static class SingletonFactoryBean implements FactoryBean<Counted> {
+
+        private final Counted product = new Counted();
+
+        public Counted getObject() {
+            return product;
+        }
+
+        public Class<?> getObjectType() {
+            return Counted.class;
+        }
+
+        public boolean isSingleton() {
+            return true;
+        }
+    }
+}